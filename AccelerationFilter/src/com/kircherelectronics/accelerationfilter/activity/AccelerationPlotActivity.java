@@ -1,18 +1,11 @@
 package com.kircherelectronics.accelerationfilter.activity;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.util.Calendar;
-
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.Dialog;
-import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.hardware.Sensor;
@@ -31,6 +24,7 @@ import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnTouchListener;
+import android.view.ViewConfiguration;
 import android.view.Window;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -38,15 +32,40 @@ import android.widget.Toast;
 
 import com.androidplot.xy.XYPlot;
 import com.kircherelectronics.accelerationfilter.R;
+import com.kircherelectronics.accelerationfilter.dialog.AllanDialog;
 import com.kircherelectronics.accelerationfilter.dialog.FilterSettingsDialog;
+import com.kircherelectronics.accelerationfilter.dialog.LogSettingsDialog;
+import com.kircherelectronics.accelerationfilter.dialog.MetricsDialog;
+import com.kircherelectronics.accelerationfilter.dialog.NoiseSettingsDialog;
 import com.kircherelectronics.accelerationfilter.dialog.SensorSettingsDialog;
 import com.kircherelectronics.accelerationfilter.filter.LowPassFilter;
 import com.kircherelectronics.accelerationfilter.filter.MeanFilter;
+import com.kircherelectronics.accelerationfilter.logger.AsciiNumberFormat;
+import com.kircherelectronics.accelerationfilter.logger.AsyncLogWriter;
+import com.kircherelectronics.accelerationfilter.logger.BinaryLogFormat;
+import com.kircherelectronics.accelerationfilter.logger.BinaryLogWriter;
+import com.kircherelectronics.accelerationfilter.logger.CompressedLogWriter;
+import com.kircherelectronics.accelerationfilter.logger.CsvLogWriter;
+import com.kircherelectronics.accelerationfilter.logger.LogFiles;
+import com.kircherelectronics.accelerationfilter.logger.LogRecovery;
+import com.kircherelectronics.accelerationfilter.logger.LogRetention;
+import com.kircherelectronics.accelerationfilter.logger.LogSchema;
+import com.kircherelectronics.accelerationfilter.logger.SegmentedLogWriter;
+import com.kircherelectronics.accelerationfilter.logger.SessionLogWriter;
+import com.kircherelectronics.accelerationfilter.metrics.LatencyTracker;
+import com.kircherelectronics.accelerationfilter.metrics.MetricsReporter;
 import com.kircherelectronics.accelerationfilter.plot.DynamicBarPlot;
 import com.kircherelectronics.accelerationfilter.plot.DynamicLinePlot;
 import com.kircherelectronics.accelerationfilter.plot.PlotColor;
 import com.kircherelectronics.accelerationfilter.plot.PlotPrefCallback;
+import com.kircherelectronics.accelerationfilter.plot.PlotRefreshScheduler;
 import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
+import com.kircherelectronics.accelerationfilter.sensor.MultiSensorCapture;
+import com.kircherelectronics.accelerationfilter.sensor.SensorHub;
+import com.kircherelectronics.accelerationfilter.sensor.SensorStream;
+import com.kircherelectronics.accelerationfilter.statistics.AllanVariance;
+import com.kircherelectronics.accelerationfilter.statistics.NoiseMetrics;
+import com.kircherelectronics.accelerationfilter.statistics.NoiseQuantiles;
 
 /*
  * Acceleration Filter
@@ -92,18 +111,31 @@ import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
  * @version %I%, %G%
  */
 public class AccelerationPlotActivity extends Activity implements
-		SensorEventListener, Runnable, OnTouchListener, PlotPrefCallback
+		SensorEventListener, OnTouchListener, PlotPrefCallback,
+		MetricsReporter, MultiSensorCapture.Listener
 {
 
 	private static final String tag = AccelerationPlotActivity.class
 			.getSimpleName();
 
-	// Only noise below this threshold will be plotted
-	private final static float MAX_NOISE_THRESHOLD = 0.1f;
+	// The number of sensor samples the RMS amplitude, peak-to-peak amplitude
+	// and crest factor of the noise are measured over
+	private final static int NOISE_METRICS_WINDOW = 180;
+
+	// The quantiles of the noise that can be plotted instead of the RMS
+	// amplitude
+	private final static double[] NOISE_QUANTILES = new double[]
+	{ 0.5, 0.95, 0.99 };
+
+	// The noise quantiles are measured from a moving average of about 20
+	// samples
+	private final static double NOISE_BASELINE_ALPHA = 2.0 / (20 + 1);
+
+	// The number of sensor samples the noise quantiles are estimated over
+	private final static int NOISE_QUANTILE_WINDOW = 1024;
 
-	// The size of the sample window that determines RMS Amplitude Noise
-	// (standard deviation)
-	public static int STD_DEV_SAMPLE_WINDOW = 20;
+	// The number of Allan variance cluster sizes, the largest is 2^14 samples
+	private final static int ALLAN_LEVELS = 15;
 
 	// Plot keys for the acceleration plot
 	private final static int PLOT_ACCEL_X_AXIS_KEY = 0;
@@ -120,16 +152,52 @@ public class AccelerationPlotActivity extends Activity implements
 	private final static int PLOT_MEAN_Y_AXIS_KEY = 7;
 	private final static int PLOT_MEAN_Z_AXIS_KEY = 8;
 
-	// Plot keys for the noise bar plot
-	private final static int BAR_PLOT_ACCEL_KEY = 0;
-	private final static int BAR_PLOT_LPF_KEY = 1;
-	private final static int BAR_PLOT_MEAN_KEY = 2;
+	// Stage keys for the noise metrics, the noise of an axis is the channel
+	// stage * 3 + axis
+	private final static int NOISE_ACCEL_KEY = 0;
+	private final static int NOISE_LPF_KEY = 1;
+	private final static int NOISE_MEAN_KEY = 2;
+
+	// The statistics the noise bars can show
+	private final static int NOISE_BAR_RMS = 0;
+	private final static int NOISE_BAR_QUANTILE = 1;
+	private final static int NOISE_BAR_PEAK_TO_PEAK = 2;
+	private final static int NOISE_BAR_CREST_FACTOR = 3;
+
+	// The number of samples kept of each captured sensor
+	private final static int MULTI_SENSOR_CAPACITY = 256;
+
+	// The longest an acceleration sample waits for the gyroscope and
+	// magnetometer in milliseconds
+	private final static long MULTI_SENSOR_JOIN_TIMEOUT = 100;
+
+	// The most values a log record can hold
+	private final static int MAX_LOG_COLUMNS = 16;
 
-	private boolean dataReady = false;
+	// The number of log records that can wait for the log writer thread
+	private final static int LOG_QUEUE_CAPACITY = 4096;
+
+	// How often the log is synced to storage in milliseconds
+	private final static long LOG_SYNC_INTERVAL = 1000;
+
+	// The least time between two log records when not every sensor event is
+	// logged, in nanoseconds
+	private final static long LOG_DECIMATION_INTERVAL = 50 * 1000000L;
+
+	// The least time between two updates of the plots and outputs in
+	// milliseconds
+	private final static long PLOT_REFRESH_INTERVAL = 100;
 
 	// Indicate if the output should be logged to a .csv file
 	private boolean logData = false;
 
+	// Indicate if every sensor event is logged instead of the newest output
+	private boolean logCaptureAll = true;
+
+	// Indicate if the gyroscope and magnetometer are captured with the
+	// accelerometer
+	private boolean multiSensorActive = false;
+
 	// Indicate if the AndDev LPF should be plotted
 	private boolean lpfActive = false;
 
@@ -138,17 +206,22 @@ public class AccelerationPlotActivity extends Activity implements
 
 	private boolean invertAxisActive = false;
 
+	// Indicate if the render metrics should be drawn over the plots
+	private boolean metricsOverlayActive = false;
+
 	private boolean plotLPFReady = false;
 	private boolean plotMeanReady = false;
 
-	private boolean run = false;
-
-	private double dStdDevMeanZAxis = 0;
-
 	// Touch to zoom constants for the dynamicPlot
 	private float distance = 0;
 	private float zoom = 1.2f;
 
+	// Touch to zoom and scroll the time axis of the dynamicPlot
+	private float distanceX = 0;
+	private float lastTouchX = Float.NaN;
+	private float lastTouchY = Float.NaN;
+	private long lastTapTime = 0;
+
 	private float lpfTimeConstant = 1;
 	private float meanFilterTimeConstant = 1;
 
@@ -157,8 +230,14 @@ public class AccelerationPlotActivity extends Activity implements
 	private float[] lpfOutput = new float[3];
 	private float[] meanFilterOutput = new float[3];
 
-	// The generation of the log output
-	private int generation = 0;
+	// The gyroscope and magnetometer values joined to the acceleration
+	private float[] joinedValues = new float[6];
+
+	// The number of joined values written to the log
+	private int logJoinedCount = 0;
+
+	// Reused to hand each record to the log
+	private float[] logValues = new float[MAX_LOG_COLUMNS];
 
 	// Color keys for the acceleration plot
 	private int plotAccelXAxisColor;
@@ -175,44 +254,79 @@ public class AccelerationPlotActivity extends Activity implements
 	private int plotMeanYAxisColor;
 	private int plotMeanZAxisColor;
 
-	// Log output time stamp
-	private long logTime = 0;
-
 	// Decimal formats for the UI outputs
-	private DecimalFormat df;
+	private AsciiNumberFormat df;
+
+	// The acceleration text is formatted into one of two buffers per axis
+	// and the buffers are swapped each update, since a TextView keeps the
+	// array it was given.
+	private char[][][] accelerationText;
+
+	private int accelerationTextBuffer = 0;
 
 	private DynamicBarPlot barPlot;
 	// Graph plot for the UI outputs
 	private DynamicLinePlot dynamicPlot;
 
-	// Handler for the UI plots so everything plots smoothly
+	// Handler to post results from background threads to the UI
 	private Handler handler;
 
 	// Icon to indicate logging is active
 	private ImageView iconLogger;
 
+	// Sensor to screen latency instrumentation
+	private LatencyTracker latencyTracker;
+
 	// Low-Pass Filter
 	private LowPassFilter lpf;
 
 	// Mean filter
 	private MeanFilter meanFilter;
 
+	private LogSettingsDialog logSettingsDialog;
+
+	private MetricsDialog metricsDialog;
+
 	// Plot colors
 	private PlotColor color;
 
-	private Runnable runnable;
+	// Refreshes the plots and outputs on display frames when data changed
+	private PlotRefreshScheduler refreshScheduler;
+
+	// Shares the accelerometer registration with the other consumers
+	private SensorHub sensorHub;
 
-	// Sensor manager to access the accelerometer sensor
-	private SensorManager sensorManager;
+	// Captures the gyroscope and magnetometer joined to the accelerometer
+	private MultiSensorCapture multiSensorCapture;
 
 	private FilterSettingsDialog settingsDialog;
 
-	// RMS Noise levels
-	private DescriptiveStatistics stdDevMaginitudeAccel;
-	private DescriptiveStatistics stdDevMaginitude;
-	private DescriptiveStatistics stdDevMaginitudeMean;
+	// RMS, peak-to-peak and crest factor of the noise of every axis, updated
+	// with every sensor sample
+	private NoiseMetrics noiseMetrics;
+
+	// The noise metrics the bars are drawn from
+	private NoiseMetrics.Snapshot noiseSnapshot;
+
+	// Noise quantiles of every axis, updated with every sensor sample
+	private NoiseQuantiles[] noiseQuantiles;
+
+	// The statistic the noise bars show
+	private int noiseStatistic = NOISE_BAR_RMS;
+
+	// The index of the plotted noise quantile
+	private int noiseQuantile = 0;
+
+	// The noise channel of each bar
+	private int[] noiseBarChannels = new int[9];
+
+	private NoiseSettingsDialog noiseSettingsDialog;
 
-	private DescriptiveStatistics stdDevMaginitudeMeanZAxis;
+	// Allan variance of each acceleration axis, updated with every sensor
+	// sample
+	private AllanVariance[] allanVariance;
+
+	private AllanDialog allanDialog;
 
 	private SensorSettingsDialog sensorSettingsDialog;
 
@@ -234,15 +348,38 @@ public class AccelerationPlotActivity extends Activity implements
 
 	private String frequencySelection;
 
+	private String logFormat;
+
+	// Log segment limits in bytes and milliseconds, 0 for no limit
+	private long logSegmentSize;
+	private long logSegmentDuration;
+
+	// Log directory budget in bytes and milliseconds, 0 for no limit
+	private long logRetentionSize;
+	private long logRetentionAge;
+
+	// Reused for the metrics overlay text
+	private StringBuilder overlayText;
+
 	// Output log
-	private String log;
+	private AsyncLogWriter logWriter;
+
+	// The segments of the output log or null if it is not segmented
+	private SegmentedLogWriter logSegments;
+
+	private String[] logColumns = new String[MAX_LOG_COLUMNS];
 
 	// Acceleration UI outputs
 	private TextView xAxis;
 	private TextView yAxis;
 	private TextView zAxis;
 
-	private Thread thread;
+	// Render metrics overlays
+	private TextView barPlotOverlay;
+	private TextView dynamicPlotOverlay;
+
+	// The sensor time stamp of the last log record
+	private long lastLogTimestamp;
 
 	@Override
 	public void onCreate(Bundle savedInstanceState)
@@ -260,28 +397,33 @@ public class AccelerationPlotActivity extends Activity implements
 
 		initStatistics();
 
+		initMetrics();
+
 		initFilters();
 
 		initColor();
 
 		initPlots();
 
-		sensorManager = (SensorManager) this
-				.getSystemService(Context.SENSOR_SERVICE);
+		sensorHub = SensorHub.getInstance(this);
+
+		multiSensorCapture = new MultiSensorCapture(sensorHub, new int[]
+		{ Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE,
+				Sensor.TYPE_MAGNETIC_FIELD }, new String[]
+		{ "Accel", "Gyro", "Mag" }, MULTI_SENSOR_CAPACITY,
+				MultiSensorCapture.JOIN_INTERPOLATE,
+				MULTI_SENSOR_JOIN_TIMEOUT, this);
 
 		handler = new Handler();
 
-		runnable = new Runnable()
-		{
-			@Override
-			public void run()
-			{
-				handler.postDelayed(this, 100);
+		initRefreshScheduler();
 
-				plotData();
-				updateAccelerationText();
-			}
-		};
+		// Only on a fresh launch, a log being closed after a configuration
+		// change is still in use.
+		if (savedInstanceState == null)
+		{
+			recoverLogs();
+		}
 	}
 
 	@Override
@@ -289,23 +431,19 @@ public class AccelerationPlotActivity extends Activity implements
 	{
 		super.onPause();
 
-		sensorManager.unregisterListener(this);
+		sensorHub.unsubscribe(this);
+		multiSensorCapture.stop();
 
 		if (logData)
 		{
-			writeLogToFile();
-		}
-
-		if (run && thread != null)
-		{
-			run = false;
+			logData = false;
 
-			thread.interrupt();
+			iconLogger.setVisibility(View.INVISIBLE);
 
-			thread = null;
+			writeLogToFile();
 		}
 
-		handler.removeCallbacks(runnable);
+		refreshScheduler.stop();
 	}
 
 	@Override
@@ -315,21 +453,27 @@ public class AccelerationPlotActivity extends Activity implements
 
 		readPrefs();
 		readSensorPrefs();
+		readMetricsPrefs();
+		readNoisePrefs();
 
 		// Reset the filters
 		lpf.reset();
 		meanFilter.reset();
 
-		thread = new Thread(this);
+		noiseMetrics.reset();
 
-		if (!run)
+		for (int i = 0; i < noiseQuantiles.length; i++)
 		{
-			run = true;
+			noiseQuantiles[i].reset();
+		}
 
-			thread.start();
+		// The sample rate may change while paused.
+		for (int i = 0; i < allanVariance.length; i++)
+		{
+			allanVariance[i].reset();
 		}
 
-		handler.post(runnable);
+		refreshScheduler.start();
 
 		updateSensorDelay();
 	}
@@ -343,8 +487,33 @@ public class AccelerationPlotActivity extends Activity implements
 	@Override
 	public void onSensorChanged(SensorEvent event)
 	{
+		onAccelerationChanged(event.timestamp, event.values);
+	}
+
+	@Override
+	public void onJoinedSample(long timestamp, float[] values, int count)
+	{
+		// The acceleration comes first, then the other sensors.
+		System.arraycopy(values, 3, joinedValues, 0,
+				Math.min(count - 3, joinedValues.length));
+
+		onAccelerationChanged(timestamp, values);
+	}
+
+	/**
+	 * Run a sample through the filters, statistics and log.
+	 * 
+	 * @param timestamp
+	 *            The sensor time stamp of the sample in nanoseconds.
+	 * @param values
+	 *            The acceleration of the sample in the first three values.
+	 */
+	private void onAccelerationChanged(long timestamp, float[] values)
+	{
+		latencyTracker.onSampleReceived(timestamp);
+
 		// Get a local copy of the sensor values
-		System.arraycopy(event.values, 0, acceleration, 0, event.values.length);
+		System.arraycopy(values, 0, acceleration, 0, 3);
 
 		if (invertAxisActive)
 		{
@@ -353,21 +522,43 @@ public class AccelerationPlotActivity extends Activity implements
 			acceleration[2] = -acceleration[2];
 		}
 
+		addNoiseSample(NOISE_ACCEL_KEY, acceleration);
+
+		for (int i = 0; i < allanVariance.length; i++)
+		{
+			allanVariance[i].add(timestamp, acceleration[i]);
+		}
+
 		if (lpfActive)
 		{
 			lpfOutput = lpf.addSamples(acceleration);
+
+			addNoiseSample(NOISE_LPF_KEY, lpfOutput);
 		}
 		if (meanFilterActive)
 		{
 			meanFilterOutput = meanFilter.filterFloat(acceleration);
 
-			stdDevMaginitudeMeanZAxis.addValue(meanFilterOutput[2]);
+			addNoiseSample(NOISE_MEAN_KEY, meanFilterOutput);
+		}
+
+		latencyTracker.onFilterComplete();
+
+		// Log every event exactly once with its own time stamp, or only the
+		// newest output every LOG_DECIMATION_INTERVAL. The log writer thread
+		// sleeps until a record is queued and writes the queue in batches.
+		boolean logDue = logCaptureAll
+				|| timestamp - lastLogTimestamp >= LOG_DECIMATION_INTERVAL;
 
-			this.dStdDevMeanZAxis = stdDevMaginitudeMeanZAxis
-					.getStandardDeviation();
+		if (logData && logDue)
+		{
+			lastLogTimestamp = timestamp;
+
+			writeLogRecord(timestamp);
 		}
 
-		dataReady = true;
+		// Any number of samples between two frames cause one refresh.
+		refreshScheduler.invalidateAll();
 	}
 
 	@Override
@@ -415,11 +606,27 @@ public class AccelerationPlotActivity extends Activity implements
 			showSensorSettingsDialog();
 			return true;
 
+		case R.id.action_settings_log:
+			showLogSettingsDialog();
+			return true;
+
+		case R.id.action_settings_noise:
+			showNoiseSettingsDialog();
+			return true;
+
 			// Log the data
 		case R.id.menu_settings_help:
 			showHelpDialog();
 			return true;
 
+		case R.id.action_metrics:
+			showMetricsDialog();
+			return true;
+
+		case R.id.action_allan:
+			showAllanDialog();
+			return true;
+
 		default:
 			return super.onOptionsItemSelected(item);
 		}
@@ -446,7 +653,9 @@ public class AccelerationPlotActivity extends Activity implements
 	}
 
 	/**
-	 * Pinch to zoom.
+	 * Pinch vertically to zoom the range and horizontally to zoom the time
+	 * axis. Drag sideways to scroll back through the history and double tap
+	 * to return to the newest values.
 	 */
 	@Override
 	public boolean onTouch(View v, MotionEvent e)
@@ -455,9 +664,37 @@ public class AccelerationPlotActivity extends Activity implements
 		// and other input controls.
 		float newDist = 0;
 
-		switch (e.getAction())
+		switch (e.getAction() & MotionEvent.ACTION_MASK)
 		{
 
+		case MotionEvent.ACTION_DOWN:
+
+			if (e.getEventTime() - lastTapTime < ViewConfiguration
+					.getDoubleTapTimeout())
+			{
+				dynamicPlot.resetView();
+				dynamicPlot.draw();
+			}
+
+			lastTapTime = e.getEventTime();
+
+			lastTouchX = e.getX();
+			lastTouchY = e.getY();
+
+			break;
+
+		case MotionEvent.ACTION_POINTER_DOWN:
+		case MotionEvent.ACTION_POINTER_UP:
+
+			// Start over whenever a finger is added or lifted.
+			distance = 0;
+			distanceX = 0;
+
+			lastTouchX = Float.NaN;
+			lastTouchY = Float.NaN;
+
+			break;
+
 		case MotionEvent.ACTION_MOVE:
 
 			// pinch to zoom
@@ -466,6 +703,7 @@ public class AccelerationPlotActivity extends Activity implements
 				if (distance == 0)
 				{
 					distance = fingerDist(e);
+					distanceX = Math.abs(e.getX(0) - e.getX(1));
 				}
 
 				newDist = fingerDist(e);
@@ -476,34 +714,89 @@ public class AccelerationPlotActivity extends Activity implements
 				dynamicPlot.setMinRange(-zoom * Math.log(zoom));
 
 				distance = newDist;
+
+				float newDistX = Math.abs(e.getX(0) - e.getX(1));
+
+				if (distanceX > 0 && newDistX > 0)
+				{
+					dynamicPlot.zoomTime(distanceX / newDistX);
+					dynamicPlot.draw();
+				}
+
+				distanceX = newDistX;
+			}
+			else if (e.getPointerCount() == 1)
+			{
+				if (Float.isNaN(lastTouchX))
+				{
+					lastTouchX = e.getX();
+					lastTouchY = e.getY();
+				}
+
+				float dx = e.getX() - lastTouchX;
+				float dy = e.getY() - lastTouchY;
+
+				lastTouchX = e.getX();
+				lastTouchY = e.getY();
+
+				// Leave vertical drags to the ScrollView.
+				if (Math.abs(dx) > Math.abs(dy) && v.getWidth() > 0)
+				{
+					dynamicPlot.scrollTime(dx / v.getWidth());
+					dynamicPlot.draw();
+
+					return true;
+				}
 			}
 		}
 
 		return false;
 	}
 
-	/**
-	 * Output and logs are run on their own thread to keep the UI from hanging
-	 * and the output smooth.
-	 */
 	@Override
-	public void run()
+	public void writeMetricsReport(StringBuilder report)
 	{
-		while (run && !Thread.currentThread().isInterrupted())
+		latencyTracker.writeReport(report);
+
+		report.append('\n');
+		dynamicPlot.writeReport(report);
+
+		report.append('\n');
+		barPlot.writeReport(report);
+
+		report.append('\n');
+		refreshScheduler.writeReport(report);
+
+		report.append('\n');
+		sensorHub.writeReport(report);
+
+		if (multiSensorActive)
 		{
-			try
-			{
-				Thread.sleep(50);
-			}
-			catch (InterruptedException e)
-			{
-				e.printStackTrace();
-			}
+			report.append('\n');
+			multiSensorCapture.writeReport(report);
+		}
 
-			logData();
+		if (logWriter != null)
+		{
+			report.append('\n');
+			logWriter.writeReport(report);
 		}
+	}
+
+	@Override
+	public void resetMetrics()
+	{
+		latencyTracker.reset();
+
+		dynamicPlot.getFrameTimeTracker().reset();
+		barPlot.getFrameTimeTracker().reset();
 
-		Thread.currentThread().interrupt();
+		refreshScheduler.reset();
+
+		if (logWriter != null)
+		{
+			logWriter.reset();
+		}
 	}
 
 	@Override
@@ -511,6 +804,8 @@ public class AccelerationPlotActivity extends Activity implements
 	{
 		readPrefs();
 		readSensorPrefs();
+		readMetricsPrefs();
+		readNoisePrefs();
 		checkLPFActive();
 		checkMeanActive();
 
@@ -531,6 +826,96 @@ public class AccelerationPlotActivity extends Activity implements
 		this.frequencySelection = prefs.getString(
 				PrefUtils.SENSOR_FREQUENCY_PREF,
 				PrefUtils.SENSOR_FREQUENCY_FAST);
+
+		this.multiSensorActive = prefs.getBoolean(
+				PrefUtils.SENSOR_MULTI_CAPTURE_PREF, false);
+	}
+
+	/**
+	 * Read in the current log preferences.
+	 */
+	private void readLogPrefs()
+	{
+		SharedPreferences prefs = this.getSharedPreferences(
+				PrefUtils.LOG_PREFS, Activity.MODE_PRIVATE);
+
+		this.logFormat = prefs.getString(PrefUtils.LOG_FORMAT_PREF,
+				PrefUtils.LOG_FORMAT_CSV);
+
+		this.logCaptureAll = prefs.getBoolean(PrefUtils.LOG_CAPTURE_ALL_PREF,
+				true);
+
+		this.logSegmentSize = prefs.getLong(PrefUtils.LOG_SEGMENT_SIZE_PREF, 0);
+		this.logSegmentDuration = prefs.getLong(
+				PrefUtils.LOG_SEGMENT_DURATION_PREF, 0);
+
+		this.logRetentionSize = prefs.getLong(
+				PrefUtils.LOG_RETENTION_SIZE_PREF, 0);
+		this.logRetentionAge = prefs.getLong(PrefUtils.LOG_RETENTION_AGE_PREF,
+				0);
+	}
+
+	/**
+	 * Read in the current metrics preferences.
+	 */
+	private void readMetricsPrefs()
+	{
+		SharedPreferences prefs = this.getSharedPreferences(
+				PrefUtils.METRICS_PREFS, Activity.MODE_PRIVATE);
+
+		this.metricsOverlayActive = prefs.getBoolean(
+				PrefUtils.METRICS_OVERLAY_ACTIVE, false);
+
+		int visibility = metricsOverlayActive ? View.VISIBLE : View.GONE;
+
+		dynamicPlotOverlay.setVisibility(visibility);
+		barPlotOverlay.setVisibility(visibility);
+	}
+
+	/**
+	 * Read in the current noise preferences.
+	 */
+	private void readNoisePrefs()
+	{
+		SharedPreferences prefs = this.getSharedPreferences(
+				PrefUtils.NOISE_PREFS, Activity.MODE_PRIVATE);
+
+		String statistic = prefs.getString(PrefUtils.NOISE_STATISTIC_PREF,
+				PrefUtils.NOISE_STATISTIC_STD_DEV);
+
+		if (statistic.equals(PrefUtils.NOISE_STATISTIC_P50))
+		{
+			noiseStatistic = NOISE_BAR_QUANTILE;
+			noiseQuantile = 0;
+			barPlot.setRangeLabel("Median Noise");
+		}
+		else if (statistic.equals(PrefUtils.NOISE_STATISTIC_P95))
+		{
+			noiseStatistic = NOISE_BAR_QUANTILE;
+			noiseQuantile = 1;
+			barPlot.setRangeLabel("95th Percentile Noise");
+		}
+		else if (statistic.equals(PrefUtils.NOISE_STATISTIC_P99))
+		{
+			noiseStatistic = NOISE_BAR_QUANTILE;
+			noiseQuantile = 2;
+			barPlot.setRangeLabel("99th Percentile Noise");
+		}
+		else if (statistic.equals(PrefUtils.NOISE_STATISTIC_PEAK_TO_PEAK))
+		{
+			noiseStatistic = NOISE_BAR_PEAK_TO_PEAK;
+			barPlot.setRangeLabel("Peak-to-Peak Amplitude");
+		}
+		else if (statistic.equals(PrefUtils.NOISE_STATISTIC_CREST_FACTOR))
+		{
+			noiseStatistic = NOISE_BAR_CREST_FACTOR;
+			barPlot.setRangeLabel("Crest Factor");
+		}
+		else
+		{
+			noiseStatistic = NOISE_BAR_RMS;
+			barPlot.setRangeLabel("RMS Amplitude");
+		}
 	}
 
 	/**
@@ -612,6 +997,8 @@ public class AccelerationPlotActivity extends Activity implements
 					plotLPFZAxisColor);
 
 			plotLPFReady = true;
+
+			updateNoiseBars();
 		}
 	}
 
@@ -630,6 +1017,8 @@ public class AccelerationPlotActivity extends Activity implements
 					plotMeanZAxisColor);
 
 			plotMeanReady = true;
+
+			updateNoiseBars();
 		}
 	}
 
@@ -676,6 +1065,14 @@ public class AccelerationPlotActivity extends Activity implements
 		iconLogger.setVisibility(View.INVISIBLE);
 	}
 
+	/**
+	 * Initialize the performance instrumentation.
+	 */
+	private void initMetrics()
+	{
+		latencyTracker = new LatencyTracker();
+	}
+
 	/**
 	 * Initialize the available filters.
 	 */
@@ -700,6 +1097,7 @@ public class AccelerationPlotActivity extends Activity implements
 		XYPlot plot = (XYPlot) findViewById(R.id.plot_sensor);
 		plot.setTitle("Acceleration");
 		dynamicPlot = new DynamicLinePlot(plot);
+		dynamicPlot.setLatencyTracker(latencyTracker);
 		dynamicPlot.setMaxRange(21);
 		dynamicPlot.setMinRange(-21);
 
@@ -709,9 +1107,16 @@ public class AccelerationPlotActivity extends Activity implements
 
 		barPlot = new DynamicBarPlot(noiseLevelsPlot, "Sensor Noise");
 
+		overlayText = new StringBuilder();
+
+		dynamicPlotOverlay = (TextView) findViewById(R.id.overlay_plot_sensor);
+		barPlotOverlay = (TextView) findViewById(R.id.overlay_plot_noise);
+
 		addAccelerationPlot();
 		addLPFPlot();
 		addMeanFilterPlot();
+
+		updateNoiseBars();
 	}
 
 	/**
@@ -719,18 +1124,25 @@ public class AccelerationPlotActivity extends Activity implements
 	 */
 	private void initStatistics()
 	{
-		// Create the RMS Noise calculations
-		stdDevMaginitudeAccel = new DescriptiveStatistics();
-		stdDevMaginitudeAccel.setWindowSize(STD_DEV_SAMPLE_WINDOW);
+		// Create the noise calculations for the raw acceleration and both
+		// filters
+		noiseMetrics = new NoiseMetrics(3, 3, NOISE_METRICS_WINDOW);
+		noiseSnapshot = noiseMetrics.createSnapshot();
+
+		noiseQuantiles = new NoiseQuantiles[9];
 
-		stdDevMaginitude = new DescriptiveStatistics();
-		stdDevMaginitude.setWindowSize(STD_DEV_SAMPLE_WINDOW);
+		for (int i = 0; i < noiseQuantiles.length; i++)
+		{
+			noiseQuantiles[i] = new NoiseQuantiles(NOISE_QUANTILES,
+					NOISE_BASELINE_ALPHA, NOISE_QUANTILE_WINDOW);
+		}
 
-		stdDevMaginitudeMean = new DescriptiveStatistics();
-		stdDevMaginitudeMean.setWindowSize(STD_DEV_SAMPLE_WINDOW);
+		allanVariance = new AllanVariance[3];
 
-		stdDevMaginitudeMeanZAxis = new DescriptiveStatistics();
-		stdDevMaginitudeMeanZAxis.setWindowSize(180);
+		for (int i = 0; i < allanVariance.length; i++)
+		{
+			allanVariance[i] = new AllanVariance(ALLAN_LEVELS);
+		}
 	}
 
 	/**
@@ -739,7 +1151,9 @@ public class AccelerationPlotActivity extends Activity implements
 	private void initTextOutputs()
 	{
 		// Format the UI outputs so they look nice
-		df = new DecimalFormat("#.##");
+		df = new AsciiNumberFormat(2, true);
+
+		accelerationText = new char[2][3][AsciiNumberFormat.MAX_LENGTH];
 
 		// Create the acceleration UI outputs
 		xAxis = (TextView) findViewById(R.id.value_x_axis);
@@ -748,13 +1162,45 @@ public class AccelerationPlotActivity extends Activity implements
 	}
 
 	/**
-	 * Plot the output data in the UI.
+	 * Redraw the line plot, the bar plot and the text outputs each at most
+	 * every PLOT_REFRESH_INTERVAL and only after new sensor data arrived. The
+	 * plots are separate targets so one does not wait on the other.
 	 */
-	private void plotData()
+	private void initRefreshScheduler()
 	{
-		updateGraphPlot();
+		refreshScheduler = new PlotRefreshScheduler();
+
+		refreshScheduler.addTarget("Line", new PlotRefreshScheduler.Target()
+		{
+			@Override
+			public void onRefresh()
+			{
+				updateGraphPlot();
+			}
+		}, PLOT_REFRESH_INTERVAL);
+
+		refreshScheduler.addTarget("Bar", new PlotRefreshScheduler.Target()
+		{
+			@Override
+			public void onRefresh()
+			{
+				updateBarPlot();
+			}
+		}, PLOT_REFRESH_INTERVAL);
+
+		refreshScheduler.addTarget("Text", new PlotRefreshScheduler.Target()
+		{
+			@Override
+			public void onRefresh()
+			{
+				updateAccelerationText();
 
-		updateBarPlot();
+				if (metricsOverlayActive)
+				{
+					updateMetricsOverlay();
+				}
+			}
+		}, PLOT_REFRESH_INTERVAL);
 	}
 
 	/**
@@ -769,6 +1215,9 @@ public class AccelerationPlotActivity extends Activity implements
 			removeGraphPlot(PLOT_MEAN_X_AXIS_KEY);
 			removeGraphPlot(PLOT_MEAN_Y_AXIS_KEY);
 			removeGraphPlot(PLOT_MEAN_Z_AXIS_KEY);
+
+			resetNoise(NOISE_MEAN_KEY);
+			updateNoiseBars();
 		}
 	}
 
@@ -784,6 +1233,9 @@ public class AccelerationPlotActivity extends Activity implements
 			removeGraphPlot(PLOT_LPF_X_AXIS_KEY);
 			removeGraphPlot(PLOT_LPF_Y_AXIS_KEY);
 			removeGraphPlot(PLOT_LPF_Z_AXIS_KEY);
+
+			resetNoise(NOISE_LPF_KEY);
+			updateNoiseBars();
 		}
 	}
 
@@ -826,6 +1278,98 @@ public class AccelerationPlotActivity extends Activity implements
 		sensorSettingsDialog.show();
 	}
 
+	/**
+	 * Finalize any logs left unfinished by a previous session that was killed.
+	 * The logs are recovered on their own thread.
+	 */
+	private void recoverLogs()
+	{
+		new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final int recovered = LogRecovery.recoverAll(LogFiles
+						.getLogDirectory());
+
+				if (recovered > 0)
+				{
+					handler.post(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							Toast.makeText(AccelerationPlotActivity.this,
+									"Recovered " + recovered + " logs",
+									Toast.LENGTH_SHORT).show();
+						}
+					});
+				}
+			}
+		}).start();
+	}
+
+	/**
+	 * Show the log settings dialog.
+	 */
+	private void showLogSettingsDialog()
+	{
+		if (logSettingsDialog == null)
+		{
+			logSettingsDialog = new LogSettingsDialog(this);
+			logSettingsDialog.setCancelable(true);
+			logSettingsDialog.setCanceledOnTouchOutside(true);
+		}
+
+		logSettingsDialog.show();
+	}
+
+	/**
+	 * Show the metrics dialog.
+	 */
+	private void showMetricsDialog()
+	{
+		if (metricsDialog == null)
+		{
+			metricsDialog = new MetricsDialog(this, this, this);
+			metricsDialog.setCancelable(true);
+			metricsDialog.setCanceledOnTouchOutside(true);
+		}
+
+		metricsDialog.show();
+	}
+
+	/**
+	 * Show the Allan deviation dialog.
+	 */
+	private void showAllanDialog()
+	{
+		if (allanDialog == null)
+		{
+			allanDialog = new AllanDialog(this, allanVariance, new String[]
+			{ "X", "Y", "Z" });
+			allanDialog.setCancelable(true);
+			allanDialog.setCanceledOnTouchOutside(true);
+		}
+
+		allanDialog.show();
+	}
+
+	/**
+	 * Show the noise settings dialog.
+	 */
+	private void showNoiseSettingsDialog()
+	{
+		if (noiseSettingsDialog == null)
+		{
+			noiseSettingsDialog = new NoiseSettingsDialog(this, this);
+			noiseSettingsDialog.setCancelable(true);
+			noiseSettingsDialog.setCanceledOnTouchOutside(true);
+		}
+
+		noiseSettingsDialog.show();
+	}
+
 	/**
 	 * Show a settings dialog.
 	 */
@@ -842,176 +1386,372 @@ public class AccelerationPlotActivity extends Activity implements
 	}
 
 	/**
-	 * Begin logging data to an external .csv file.
+	 * Create a log writer for the selected log format. When segments are
+	 * enabled the writer splits the log by size and duration and keeps the log
+	 * directory within the retention budget.
 	 */
-	private void startDataLog()
+	private SessionLogWriter createLogWriter(LogRetention retention)
 	{
-		if (logData == false)
-		{
-			generation = 0;
+		final String format = logFormat;
 
-			stdDevMaginitudeMeanZAxis.clear();
+		logSegments = null;
 
-			CharSequence text = "Logging Data";
-			int duration = Toast.LENGTH_SHORT;
+		if (logSegmentSize <= 0 && logSegmentDuration <= 0)
+		{
+			return createLogWriter(format);
+		}
 
-			Toast toast = Toast.makeText(this, text, duration);
-			toast.show();
+		// Segments are created on a background thread, so the factory must
+		// not touch the preferences.
+		logSegments = new SegmentedLogWriter(
+				new SegmentedLogWriter.WriterFactory()
+				{
+					@Override
+					public SessionLogWriter createWriter()
+					{
+						return createLogWriter(format);
+					}
 
-			String headers = "Generation" + ",";
+					@Override
+					public String getExtension()
+					{
+						return getLogExtension(format);
+					}
+				}, logSegmentSize, logSegmentDuration * 1000000L, retention);
 
-			headers += "Timestamp" + ",";
+		return logSegments;
+	}
 
-			headers += this.plotAccelXAxisTitle + ",";
+	/**
+	 * Create a log writer for a log format.
+	 */
+	private static SessionLogWriter createLogWriter(String format)
+	{
+		if (format.equals(PrefUtils.LOG_FORMAT_BINARY))
+		{
+			return new BinaryLogWriter();
+		}
 
-			headers += this.plotAccelYAxisTitle + ",";
+		if (format.equals(PrefUtils.LOG_FORMAT_COMPRESSED))
+		{
+			return new CompressedLogWriter();
+		}
 
-			headers += this.plotAccelZAxisTitle + ",";
+		return new CsvLogWriter();
+	}
 
-			if (lpfActive)
-			{
-				headers += this.plotLPFXAxisTitle + ",";
+	/**
+	 * Get the file extension of a log format.
+	 */
+	private static String getLogExtension(String format)
+	{
+		if (format.equals(PrefUtils.LOG_FORMAT_BINARY)
+				|| format.equals(PrefUtils.LOG_FORMAT_COMPRESSED))
+		{
+			return BinaryLogFormat.EXTENSION;
+		}
 
-				headers += this.plotLPFYAxisTitle + ",";
+		return LogFiles.CSV_EXTENSION;
+	}
 
-				headers += this.plotLPFZAxisTitle + ",";
+	/**
+	 * Delete the oldest logs until the log directory is within the budget. The
+	 * directory is walked on its own thread.
+	 */
+	private void enforceLogRetention(final LogRetention retention)
+	{
+		new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				retention.enforce();
 			}
+		}).start();
+	}
 
-			if (meanFilterActive)
-			{
-				headers += this.plotMeanXAxisTitle + ",";
+	/**
+	 * Get a description of each active stage of the filter pipeline.
+	 */
+	private String[] getLogStages()
+	{
+		int count = 0;
 
-				headers += this.plotMeanYAxisTitle + ",";
+		SensorStream[] streams = multiSensorCapture.getStreams();
 
-				headers += this.plotMeanZAxisTitle + ",";
+		String[] stages = new String[4 + streams.length];
 
-				headers += this.plotStdDevMeanZAxisTitle + ",";
-			}
+		stages[count++] = "Accelerometer(" + frequencySelection + ")";
 
-			log = headers;
+		if (invertAxisActive)
+		{
+			stages[count++] = "Invert";
+		}
 
-			log += System.getProperty("line.separator");
+		if (multiSensorActive)
+		{
+			String joinMode = "Nearest";
 
-			iconLogger.setVisibility(View.VISIBLE);
+			if (multiSensorCapture.getJoinMode()
+					== MultiSensorCapture.JOIN_INTERPOLATE)
+			{
+				joinMode = "Interpolated";
+			}
 
-			logData = true;
+			// The primary stream is the accelerometer itself.
+			for (int i = 1; i < streams.length; i++)
+			{
+				stages[count++] = streams[i].getName() + "(" + joinMode + ")";
+			}
 		}
-		else
+
+		if (lpfActive)
 		{
-			iconLogger.setVisibility(View.INVISIBLE);
+			stages[count++] = "LowPassFilter(" + lpfTimeConstant + ")";
+		}
 
-			logData = false;
-			writeLogToFile();
+		if (meanFilterActive)
+		{
+			stages[count++] = "MeanFilter(" + meanFilterTimeConstant + ")";
 		}
+
+		String[] active = new String[count];
+		System.arraycopy(stages, 0, active, 0, count);
+
+		return active;
 	}
 
 	/**
-	 * Log output data to an external .csv file.
+	 * Begin logging data to an external log file.
 	 */
-	private void logData()
+	private void startDataLog()
 	{
-		if (logData && dataReady)
+		if (logData == false)
 		{
-			if (generation == 0)
-			{
-				logTime = System.currentTimeMillis();
-			}
+			resetNoise(NOISE_MEAN_KEY);
+
+			lastLogTimestamp = 0;
 
-			log += generation++ + ",";
-			log += df.format((System.currentTimeMillis() - logTime) / 1000.0f)
-					+ ",";
+			readLogPrefs();
 
-			log += acceleration[0] + ",";
-			log += acceleration[1] + ",";
-			log += acceleration[2] + ",";
+			LogRetention retention = new LogRetention(
+					LogFiles.getLogDirectory(), logRetentionSize,
+					logRetentionAge);
+
+			// Storage I/O happens on the log writer thread. A record that
+			// does not fit in the queue is dropped and counted rather than
+			// stalling the producer.
+			logWriter = new AsyncLogWriter(createLogWriter(retention),
+					LOG_QUEUE_CAPACITY, AsyncLogWriter.OVERFLOW_DROP_NEWEST,
+					LOG_SYNC_INTERVAL);
+
+			int count = 0;
+
+			logColumns[count++] = this.plotAccelXAxisTitle;
+			logColumns[count++] = this.plotAccelYAxisTitle;
+			logColumns[count++] = this.plotAccelZAxisTitle;
 
 			if (lpfActive)
 			{
-				log += lpfOutput[0] + ",";
-				log += lpfOutput[1] + ",";
-				log += lpfOutput[2] + ",";
+				logColumns[count++] = this.plotLPFXAxisTitle;
+				logColumns[count++] = this.plotLPFYAxisTitle;
+				logColumns[count++] = this.plotLPFZAxisTitle;
 			}
 
 			if (meanFilterActive)
 			{
-				log += meanFilterOutput[0] + ",";
-				log += meanFilterOutput[1] + ",";
-				log += meanFilterOutput[2] + ",";
-				log += this.dStdDevMeanZAxis + ",";
+				logColumns[count++] = this.plotMeanXAxisTitle;
+				logColumns[count++] = this.plotMeanYAxisTitle;
+				logColumns[count++] = this.plotMeanZAxisTitle;
+				logColumns[count++] = this.plotStdDevMeanZAxisTitle;
+			}
+
+			logJoinedCount = 0;
+
+			if (multiSensorActive)
+			{
+				SensorStream[] streams = multiSensorCapture.getStreams();
+
+				for (int i = 1; i < streams.length; i++)
+				{
+					logColumns[count++] = streams[i].getName() + "-X";
+					logColumns[count++] = streams[i].getName() + "-Y";
+					logColumns[count++] = streams[i].getName() + "-Z";
+
+					logJoinedCount += 3;
+				}
 			}
 
-			log += System.getProperty("line.separator");
+			String[] columns = new String[count];
+			System.arraycopy(logColumns, 0, columns, 0, count);
 
-			dataReady = false;
+			try
+			{
+				logWriter.open(
+						LogFiles.createLogFile(logWriter.getExtension()),
+						new LogSchema(getLogStages(), columns));
+			}
+			catch (IOException e)
+			{
+				Toast.makeText(this, e.toString(), Toast.LENGTH_SHORT).show();
+
+				return;
+			}
+
+			// Only now the new log has a journal that keeps it from being
+			// deleted. A segmented log enforces the budget itself.
+			if (logSegments == null)
+			{
+				enforceLogRetention(retention);
+			}
+
+			CharSequence text = "Logging Data";
+			int duration = Toast.LENGTH_SHORT;
+
+			Toast toast = Toast.makeText(this, text, duration);
+			toast.show();
+
+			iconLogger.setVisibility(View.VISIBLE);
+
+			logData = true;
+		}
+		else
+		{
+			iconLogger.setVisibility(View.INVISIBLE);
+
+			logData = false;
+			writeLogToFile();
 		}
 	}
 
 	/**
-	 * Write the logged data out to a persisted file.
+	 * Write the current acceleration and filter outputs to the log.
+	 * 
+	 * @param timestamp
+	 *            The time stamp of the record in nanoseconds.
 	 */
-	private void writeLogToFile()
+	private void writeLogRecord(long timestamp)
 	{
-		Calendar c = Calendar.getInstance();
-		String filename = "AccelerationFilter-" + c.get(Calendar.YEAR) + "-"
-				+ (c.get(Calendar.MONTH) + 1) + "-"
-				+ c.get(Calendar.DAY_OF_MONTH) + "-" + c.get(Calendar.HOUR)
-				+ "-" + c.get(Calendar.MINUTE) + "-" + c.get(Calendar.SECOND)
-				+ ".csv";
+		int count = 0;
+
+		logValues[count++] = acceleration[0];
+		logValues[count++] = acceleration[1];
+		logValues[count++] = acceleration[2];
 
-		File dir = new File(Environment.getExternalStorageDirectory()
-				+ File.separator + "AccelerationFilter" + File.separator
-				+ "Logs");
-		if (!dir.exists())
+		if (lpfActive)
 		{
-			dir.mkdirs();
+			logValues[count++] = lpfOutput[0];
+			logValues[count++] = lpfOutput[1];
+			logValues[count++] = lpfOutput[2];
 		}
 
-		File file = new File(dir, filename);
-
-		FileOutputStream fos;
-		byte[] data = log.getBytes();
-		try
+		if (meanFilterActive)
 		{
-			fos = new FileOutputStream(file);
-			fos.write(data);
-			fos.flush();
-			fos.close();
-
-			CharSequence text = "Log Saved";
-			int duration = Toast.LENGTH_SHORT;
-
-			Toast toast = Toast.makeText(this, text, duration);
-			toast.show();
+			logValues[count++] = meanFilterOutput[0];
+			logValues[count++] = meanFilterOutput[1];
+			logValues[count++] = meanFilterOutput[2];
+			logValues[count++] = (float) noiseMetrics.getRms(NOISE_MEAN_KEY, 2);
 		}
-		catch (FileNotFoundException e)
+
+		for (int i = 0; i < logJoinedCount; i++)
 		{
-			CharSequence text = e.toString();
-			int duration = Toast.LENGTH_SHORT;
+			logValues[count++] = joinedValues[i];
+		}
 
-			Toast toast = Toast.makeText(this, text, duration);
-			toast.show();
+		try
+		{
+			logWriter.writeRecord(timestamp, logValues, count);
 		}
 		catch (IOException e)
 		{
-			// handle exception
+			logData = false;
+
+			iconLogger.setVisibility(View.INVISIBLE);
+
+			writeLogToFile();
+
+			Toast.makeText(this, e.toString(), Toast.LENGTH_SHORT).show();
 		}
-		finally
+	}
+
+	/**
+	 * Finish writing the log and make it visible to other applications. The
+	 * queued records are drained and the file is closed off the UI thread.
+	 */
+	private void writeLogToFile()
+	{
+		final SessionLogWriter writer = logWriter;
+		final SegmentedLogWriter segments = logSegments;
+
+		new Thread(new Runnable()
 		{
-			// Update the MediaStore so we can view the file without rebooting.
-			// Note that it appears that the ACTION_MEDIA_MOUNTED approach is
-			// now blocked for non-system apps on Android 4.4.
-			MediaScannerConnection.scanFile(this, new String[]
-			{ file.getPath() }, null,
-					new MediaScannerConnection.OnScanCompletedListener()
+			@Override
+			public void run()
+			{
+				CharSequence text = "Log Saved";
+
+				try
+				{
+					writer.close();
+				}
+				catch (IOException e)
+				{
+					text = e.toString();
+				}
+
+				final CharSequence result = text;
+
+				handler.post(new Runnable()
+				{
+					@Override
+					public void run()
 					{
-						@Override
-						public void onScanCompleted(final String path,
-								final Uri uri)
+						if (segments != null)
 						{
-
+							showLogSaved(segments.getSegmentFiles(), result);
 						}
-					});
+						else
+						{
+							showLogSaved(new File[]
+							{ writer.getFile() }, result);
+						}
+					}
+				});
+			}
+		}).start();
+	}
+
+	/**
+	 * Let the user know the log was written and make it visible to other
+	 * applications.
+	 */
+	private void showLogSaved(File[] files, CharSequence text)
+	{
+		int duration = Toast.LENGTH_SHORT;
+
+		Toast toast = Toast.makeText(this, text, duration);
+		toast.show();
+
+		// Update the MediaStore so we can view the file without rebooting.
+		// Note that it appears that the ACTION_MEDIA_MOUNTED approach is
+		// now blocked for non-system apps on Android 4.4.
+		String[] paths = new String[files.length];
+
+		for (int i = 0; i < files.length; i++)
+		{
+			paths[i] = files[i].getPath();
 		}
+
+		MediaScannerConnection.scanFile(this, paths, null,
+				new MediaScannerConnection.OnScanCompletedListener()
+				{
+					@Override
+					public void onScanCompleted(final String path,
+							final Uri uri)
+					{
+
+					}
+				});
 	}
 
 	/**
@@ -1038,10 +1778,28 @@ public class AccelerationPlotActivity extends Activity implements
 	 */
 	private void updateAccelerationText()
 	{
+		accelerationTextBuffer ^= 1;
+
+		char[][] text = accelerationText[accelerationTextBuffer];
+
 		// Update the view with the new acceleration data
-		xAxis.setText(df.format(acceleration[0]));
-		yAxis.setText(df.format(acceleration[1]));
-		zAxis.setText(df.format(acceleration[2]));
+		xAxis.setText(text[0], 0, df.format(acceleration[0], text[0], 0));
+		yAxis.setText(text[1], 0, df.format(acceleration[1], text[1], 0));
+		zAxis.setText(text[2], 0, df.format(acceleration[2], text[2], 0));
+	}
+
+	/**
+	 * Update the render metrics drawn over the plots.
+	 */
+	private void updateMetricsOverlay()
+	{
+		overlayText.setLength(0);
+		dynamicPlot.getFrameTimeTracker().writeSummary(overlayText);
+		dynamicPlotOverlay.setText(overlayText);
+
+		overlayText.setLength(0);
+		barPlot.getFrameTimeTracker().writeSummary(overlayText);
+		barPlotOverlay.setText(overlayText);
 	}
 
 	/**
@@ -1075,61 +1833,108 @@ public class AccelerationPlotActivity extends Activity implements
 	 */
 	private void updateBarPlot()
 	{
-		Number[] seriesNumbers = new Number[3];
+		noiseMetrics.getSnapshot(noiseSnapshot);
 
-		stdDevMaginitudeAccel.addValue(Math.sqrt(Math.pow(acceleration[0], 2)
-				+ Math.pow(acceleration[1], 2) + Math.pow(acceleration[2], 2)));
+		for (int i = 0; i < barPlot.getBarCount(); i++)
+		{
+			barPlot.setValue(i, getNoiseLevel(noiseBarChannels[i]));
+		}
 
-		double var = stdDevMaginitudeAccel.getStandardDeviation();
+		barPlot.draw();
+	}
 
-		if (var > MAX_NOISE_THRESHOLD)
+	/**
+	 * Get the plotted noise level of an axis from the latest snapshot, the
+	 * selected statistic.
+	 * 
+	 * @param channel
+	 *            The noise channel of the axis.
+	 */
+	private double getNoiseLevel(int channel)
+	{
+		switch (noiseStatistic)
 		{
-			var = MAX_NOISE_THRESHOLD;
+		case NOISE_BAR_QUANTILE:
+			return noiseQuantiles[channel].getQuantile(noiseQuantile);
+		case NOISE_BAR_PEAK_TO_PEAK:
+			return noiseSnapshot.peakToPeak[channel];
+		case NOISE_BAR_CREST_FACTOR:
+			return noiseSnapshot.crestFactor[channel];
+		default:
+			return noiseSnapshot.rms[channel];
 		}
+	}
 
-		seriesNumbers[BAR_PLOT_ACCEL_KEY] = var;
+	/**
+	 * Add a sample of a stage to the noise statistics.
+	 * 
+	 * @param stage
+	 *            The noise key of the stage.
+	 * @param values
+	 *            The value of each axis.
+	 */
+	private void addNoiseSample(int stage, float[] values)
+	{
+		noiseMetrics.add(stage, values);
 
-		if (plotLPFReady)
+		for (int i = 0; i < 3; i++)
 		{
-			stdDevMaginitude.addValue(Math.sqrt(Math.pow(lpfOutput[0], 2)
-					+ Math.pow(lpfOutput[1], 2) + Math.pow(lpfOutput[2], 2)));
-
-			var = stdDevMaginitude.getStandardDeviation();
+			noiseQuantiles[stage * 3 + i].add(values[i]);
+		}
+	}
 
-			if (var > MAX_NOISE_THRESHOLD)
-			{
-				var = MAX_NOISE_THRESHOLD;
-			}
+	/**
+	 * Forget the noise of a stage.
+	 * 
+	 * @param stage
+	 *            The noise key of the stage.
+	 */
+	private void resetNoise(int stage)
+	{
+		noiseMetrics.reset(stage);
 
-			seriesNumbers[BAR_PLOT_LPF_KEY] = var;
-		}
-		if (!plotLPFReady)
+		for (int i = 0; i < 3; i++)
 		{
-			seriesNumbers[BAR_PLOT_LPF_KEY] = 0;
+			noiseQuantiles[stage * 3 + i].reset();
 		}
+	}
 
-		if (plotMeanReady)
+	/**
+	 * Add a noise bar for every axis of every plotted output.
+	 */
+	private void updateNoiseBars()
+	{
+		if (barPlot == null)
 		{
-			stdDevMaginitudeMean.addValue(Math.abs(meanFilterOutput[0])
-					+ Math.abs(meanFilterOutput[1])
-					+ Math.abs(meanFilterOutput[2]));
+			return;
+		}
 
-			var = stdDevMaginitudeMean.getStandardDeviation();
+		barPlot.clearBars();
 
-			if (var > MAX_NOISE_THRESHOLD)
-			{
-				var = MAX_NOISE_THRESHOLD;
-			}
+		addNoiseBars(NOISE_ACCEL_KEY, plotAccelXAxisTitle,
+				plotAccelYAxisTitle, plotAccelZAxisTitle);
 
-			seriesNumbers[BAR_PLOT_MEAN_KEY] = var;
+		if (plotLPFReady)
+		{
+			addNoiseBars(NOISE_LPF_KEY, plotLPFXAxisTitle, plotLPFYAxisTitle,
+					plotLPFZAxisTitle);
 		}
 
-		if (!plotMeanReady)
+		if (plotMeanReady)
 		{
-			seriesNumbers[BAR_PLOT_MEAN_KEY] = 0;
+			addNoiseBars(NOISE_MEAN_KEY, plotMeanXAxisTitle,
+					plotMeanYAxisTitle, plotMeanZAxisTitle);
 		}
+	}
 
-		barPlot.onDataAvailable(seriesNumbers);
+	/**
+	 * Add a noise bar for each axis of a stage.
+	 */
+	private void addNoiseBars(int stage, String x, String y, String z)
+	{
+		noiseBarChannels[barPlot.addBar(x)] = stage * 3;
+		noiseBarChannels[barPlot.addBar(y)] = stage * 3 + 1;
+		noiseBarChannels[barPlot.addBar(z)] = stage * 3 + 2;
 	}
 
 	/**
@@ -1144,34 +1949,13 @@ public class AccelerationPlotActivity extends Activity implements
 		switch (position)
 		{
 		case 0:
-
-			sensorManager.unregisterListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-
-			// Register for sensor updates.
-			sensorManager.registerListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-					SensorManager.SENSOR_DELAY_NORMAL);
+			registerSensors(SensorManager.SENSOR_DELAY_NORMAL);
 			break;
 		case 1:
-
-			sensorManager.unregisterListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-
-			// Register for sensor updates.
-			sensorManager.registerListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-					SensorManager.SENSOR_DELAY_GAME);
+			registerSensors(SensorManager.SENSOR_DELAY_GAME);
 			break;
 		case 2:
-
-			sensorManager.unregisterListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-
-			// Register for sensor updates.
-			sensorManager.registerListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-					SensorManager.SENSOR_DELAY_FASTEST);
+			registerSensors(SensorManager.SENSOR_DELAY_FASTEST);
 			break;
 		}
 
@@ -1179,6 +1963,29 @@ public class AccelerationPlotActivity extends Activity implements
 		meanFilter.reset();
 	}
 
+	/**
+	 * Subscribe to the accelerometer, or to every captured sensor when the
+	 * gyroscope and magnetometer are joined to it.
+	 * 
+	 * @param delay
+	 *            The SensorManager delay.
+	 */
+	private void registerSensors(int delay)
+	{
+		sensorHub.unsubscribe(this);
+		multiSensorCapture.stop();
+
+		if (multiSensorActive)
+		{
+			multiSensorCapture.start(delay, null);
+		}
+		else
+		{
+			// Register for sensor updates.
+			sensorHub.subscribe(this, Sensor.TYPE_ACCELEROMETER, delay, null);
+		}
+	}
+
 	/**
 	 * Updates the sensor delay based on the user preference. 0 = slow, 1 =
 	 * medium, 2 = fast.
@@ -2,7 +2,6 @@ package com.kircherelectronics.accelerationfilter.activity;
 
 import android.app.Activity;
 import android.app.Dialog;
-import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.hardware.Sensor;
@@ -10,6 +9,8 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -17,11 +18,13 @@ import android.view.Window;
 
 import com.kircherelectronics.accelerationfilter.R;
 import com.kircherelectronics.accelerationfilter.dialog.FilterSettingsDialog;
+import com.kircherelectronics.accelerationfilter.dialog.VectorSettingsDialog;
 import com.kircherelectronics.accelerationfilter.filter.LowPassFilter;
 import com.kircherelectronics.accelerationfilter.filter.MeanFilter;
 import com.kircherelectronics.accelerationfilter.plot.PlotPrefCallback;
 import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
-import com.kircherelectronics.accelerationfilter.view.AccelerationVectorView;
+import com.kircherelectronics.accelerationfilter.sensor.SensorHub;
+import com.kircherelectronics.accelerationfilter.view.AccelerationVectorSurfaceView;
 
 /**
  * Draws a two dimensional vector of the acceleration sensors measurements.
@@ -32,6 +35,9 @@ import com.kircherelectronics.accelerationfilter.view.AccelerationVectorView;
 public class AccelerationVectorActivity extends Activity implements
 		SensorEventListener, PlotPrefCallback
 {
+	// The filter flags and the filters are only used on the sensor thread,
+	// preference changes are posted to it.
+
 	// Indicate if the Wiki LPF should be plotted
 	private boolean lpfActive = false;
 
@@ -40,14 +46,16 @@ public class AccelerationVectorActivity extends Activity implements
 	
 	private boolean invertAxisActive = false;
 
-	private float lpfTimeConstant = 1;
-	private float meanFilterTimeConstant = 1;
-
 	private float[] acceleration = new float[3];
 	private float[] lpfOutput = new float[3];
 	private float[] meanFilterOutput = new float[3];
 
-	private AccelerationVectorView view;
+	private AccelerationVectorSurfaceView view;
+
+	// Sensor events are delivered on their own thread so the gauge keeps
+	// getting samples while the UI thread is busy
+	private HandlerThread sensorThread;
+	private Handler sensorHandler;
 
 	// Low-Pass Filter
 	private LowPassFilter lpf;
@@ -55,11 +63,13 @@ public class AccelerationVectorActivity extends Activity implements
 	// Mean filter
 	private MeanFilter meanFilter;
 
-	// Sensor manager to access the accelerometer sensor
-	private SensorManager sensorManager;
+	// Shares the accelerometer registration with the other consumers
+	private SensorHub sensorHub;
 
 	private FilterSettingsDialog settingsDialog;
 
+	private VectorSettingsDialog vectorSettingsDialog;
+
 	@Override
 	public void onCreate(Bundle savedInstanceState)
 	{
@@ -67,22 +77,23 @@ public class AccelerationVectorActivity extends Activity implements
 
 		setContentView(R.layout.acceleration_vector_activity);
 
-		view = (AccelerationVectorView) findViewById(R.id.vector_acceleration);
+		view = (AccelerationVectorSurfaceView) this
+				.findViewById(R.id.vector_acceleration);
 
-		sensorManager = (SensorManager) this
-				.getSystemService(Context.SENSOR_SERVICE);
+		sensorThread = new HandlerThread("VectorSensor");
+		sensorThread.start();
+
+		sensorHandler = new Handler(sensorThread.getLooper());
+
+		sensorHub = SensorHub.getInstance(this);
 
-		readPrefs();
 		initFilters();
 	}
 
 	@Override
 	public void checkPlotPrefs()
 	{
-		readPrefs();
-
-		lpf.setTimeConstant(this.lpfTimeConstant);
-		meanFilter.setTimeConstant(this.meanFilterTimeConstant);
+		readPrefs(false);
 	}
 
 	@Override
@@ -130,7 +141,7 @@ public class AccelerationVectorActivity extends Activity implements
 	{
 		super.onPause();
 
-		sensorManager.unregisterListener(this);
+		sensorHub.unsubscribe(this);
 	}
 
 	@Override
@@ -138,16 +149,20 @@ public class AccelerationVectorActivity extends Activity implements
 	{
 		super.onResume();
 
-		readPrefs();
-
-		// Reset the filters
-		lpf.reset();
-		meanFilter.reset();
+		// Reset the filters before the first sample of the new subscription.
+		readPrefs(true);
 
 		// Register for sensor updates.
-		sensorManager.registerListener(this,
-				sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-				SensorManager.SENSOR_DELAY_FASTEST);
+		sensorHub.subscribe(this, Sensor.TYPE_ACCELEROMETER,
+				SensorManager.SENSOR_DELAY_FASTEST, sensorHandler);
+	}
+
+	@Override
+	public void onDestroy()
+	{
+		super.onDestroy();
+
+		sensorThread.quit();
 	}
 
 	@Override
@@ -178,6 +193,11 @@ public class AccelerationVectorActivity extends Activity implements
 			showSettingsDialog();
 			return true;
 
+			// Show the trail and heatmap settings
+		case R.id.menu_settings_vector:
+			showVectorSettingsDialog();
+			return true;
+
 			// Log the data
 		case R.id.menu_settings_help:
 			showHelpDialog();
@@ -194,29 +214,61 @@ public class AccelerationVectorActivity extends Activity implements
 	private void initFilters()
 	{
 		lpf = new LowPassFilter();
-		lpf.setTimeConstant(this.lpfTimeConstant);
-
 		meanFilter = new MeanFilter();
-		meanFilter.setTimeConstant(this.meanFilterTimeConstant);
 	}
 
 	/**
-	 * Read in the current user preferences.
+	 * Read in the current user preferences. The filter preferences are
+	 * applied on the sensor thread, after the samples already queued on it,
+	 * so a sample never sees half of a change.
+	 * 
+	 * @param resetFilters
+	 *            Reset the filters after the preferences are applied.
 	 */
-	private void readPrefs()
+	private void readPrefs(final boolean resetFilters)
 	{
 		SharedPreferences prefs = this.getSharedPreferences(
 				PrefUtils.FILTER_PREFS, Activity.MODE_PRIVATE);
 
-		this.lpfActive = prefs.getBoolean(PrefUtils.LPF_ACTIVE_PREF, false);
-		this.meanFilterActive = prefs.getBoolean(
+		final boolean lpfPref = prefs.getBoolean(PrefUtils.LPF_ACTIVE_PREF,
+				false);
+		final boolean meanFilterPref = prefs.getBoolean(
 				PrefUtils.MEAN_FILTER_ACTIVE_PREF, false);
-		this.invertAxisActive = prefs.getBoolean(
+		final boolean invertAxisPref = prefs.getBoolean(
 				PrefUtils.INVERT_AXIS_ACTIVE, false);
 
-		this.lpfTimeConstant = prefs.getFloat(PrefUtils.LPF_TIME_CONSTANT, 1);
-		this.meanFilterTimeConstant = prefs.getFloat(
+		final float lpfTimeConstant = prefs.getFloat(
+				PrefUtils.LPF_TIME_CONSTANT, 1);
+		final float meanFilterTimeConstant = prefs.getFloat(
 				PrefUtils.MEAN_FILTER_TIME_CONSTANT, 1);
+
+		sensorHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				lpfActive = lpfPref;
+				meanFilterActive = meanFilterPref;
+				invertAxisActive = invertAxisPref;
+
+				lpf.setTimeConstant(lpfTimeConstant);
+				meanFilter.setTimeConstant(meanFilterTimeConstant);
+
+				if (resetFilters)
+				{
+					lpf.reset();
+					meanFilter.reset();
+				}
+			}
+		});
+
+		SharedPreferences vectorPrefs = this.getSharedPreferences(
+				PrefUtils.VECTOR_PREFS, Activity.MODE_PRIVATE);
+
+		view.setTrailEnabled(vectorPrefs.getBoolean(
+				PrefUtils.VECTOR_TRAIL_ACTIVE, false));
+		view.setHeatmapEnabled(vectorPrefs.getBoolean(
+				PrefUtils.VECTOR_HEATMAP_ACTIVE, false));
 	}
 
 	private void showHelpDialog()
@@ -248,6 +300,21 @@ public class AccelerationVectorActivity extends Activity implements
 		settingsDialog.show();
 	}
 
+	/**
+	 * Show the trail and heatmap settings dialog.
+	 */
+	private void showVectorSettingsDialog()
+	{
+		if (vectorSettingsDialog == null)
+		{
+			vectorSettingsDialog = new VectorSettingsDialog(this, view, this);
+			vectorSettingsDialog.setCancelable(true);
+			vectorSettingsDialog.setCanceledOnTouchOutside(true);
+		}
+
+		vectorSettingsDialog.show();
+	}
+
 	@Override
 	public void onAccuracyChanged(Sensor arg0, int arg1)
 	{
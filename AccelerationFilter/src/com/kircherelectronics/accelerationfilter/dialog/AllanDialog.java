@@ -0,0 +1,288 @@
+package com.kircherelectronics.accelerationfilter.dialog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Handler;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.kircherelectronics.accelerationfilter.R;
+import com.kircherelectronics.accelerationfilter.logger.LogFiles;
+import com.kircherelectronics.accelerationfilter.statistics.AllanVariance;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A dialog that shows the Allan deviation of each axis of the acceleration
+ * sensor while it is running and can save it to an external .csv file.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class AllanDialog extends Dialog implements Runnable
+{
+	private Button buttonAccept;
+	private Button buttonReset;
+	private Button buttonSave;
+
+	// Handler to refresh the table and report the saved file
+	private Handler handler;
+
+	// The Allan variance of each axis
+	private final AllanVariance[] axes;
+	private final String[] axisNames;
+
+	private StringBuilder report;
+
+	private TextView reportTextView;
+
+	/**
+	 * Create a dialog.
+	 *
+	 * @param context
+	 *            The context.
+	 * @param axes
+	 *            The Allan variance of each axis, with the same number of
+	 *            levels.
+	 * @param axisNames
+	 *            The name of each axis.
+	 */
+	public AllanDialog(Context context, AllanVariance[] axes,
+			String[] axisNames)
+	{
+		super(context);
+
+		this.axes = axes;
+		this.axisNames = axisNames;
+
+		this.setTitle("Allan Deviation");
+
+		handler = new Handler();
+
+		report = new StringBuilder();
+
+		LayoutInflater inflater = getLayoutInflater();
+
+		View allanView = inflater.inflate(R.layout.allan_dialog_view, null,
+				false);
+
+		reportTextView = (TextView) allanView
+				.findViewById(R.id.value_allan_report);
+
+		buttonReset = (Button) allanView.findViewById(R.id.button_reset);
+
+		buttonReset.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				for (int i = 0; i < AllanDialog.this.axes.length; i++)
+				{
+					AllanDialog.this.axes[i].reset();
+				}
+			}
+		});
+
+		buttonSave = (Button) allanView.findViewById(R.id.button_save);
+
+		buttonSave.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				writeCsvToFile();
+			}
+		});
+
+		buttonAccept = (Button) allanView.findViewById(R.id.button_accept);
+
+		buttonAccept.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				AllanDialog.this.dismiss();
+			}
+		});
+
+		this.setContentView(allanView);
+	}
+
+	@Override
+	public void onStart()
+	{
+		super.onStart();
+
+		handler.post(this);
+	}
+
+	@Override
+	public void onStop()
+	{
+		super.onStop();
+
+		handler.removeCallbacks(this);
+	}
+
+	@Override
+	public void run()
+	{
+		handler.postDelayed(this, 1000);
+
+		updateReport();
+
+		reportTextView.setText(report);
+	}
+
+	/**
+	 * Rebuild the table of the Allan deviation by averaging time.
+	 */
+	private void updateReport()
+	{
+		report.setLength(0);
+
+		report.append("Samples: ");
+		report.append(axes[0].getCount());
+		report.append(String.format(Locale.US, ", %.1f Hz\n\n",
+				rate(axes[0].getSamplePeriod())));
+
+		report.append(String.format(Locale.US, "%9s", "Tau (s)"));
+
+		for (int i = 0; i < axisNames.length; i++)
+		{
+			report.append(String.format(Locale.US, " %10s", axisNames[i]));
+		}
+
+		report.append('\n');
+
+		for (int level = 0; level < axes[0].getLevelCount(); level++)
+		{
+			if (axes[0].getTermCount(level) == 0)
+			{
+				break;
+			}
+
+			report.append(String.format(Locale.US, "%9.3f",
+					axes[0].getTau(level)));
+
+			for (int i = 0; i < axes.length; i++)
+			{
+				report.append(String.format(Locale.US, " %10.3e",
+						axes[i].getDeviation(level)));
+			}
+
+			report.append('\n');
+		}
+	}
+
+	/**
+	 * Write every level out to a persisted .csv file. The levels are read on
+	 * the UI thread, like the table, and the file is written on a worker
+	 * thread.
+	 */
+	private void writeCsvToFile()
+	{
+		final StringBuilder csv = new StringBuilder();
+
+		csv.append("tau,cluster,terms");
+
+		for (int i = 0; i < axisNames.length; i++)
+		{
+			csv.append(',');
+			csv.append(axisNames[i]);
+		}
+
+		csv.append('\n');
+
+		for (int level = 0; level < axes[0].getLevelCount(); level++)
+		{
+			if (axes[0].getTermCount(level) == 0)
+			{
+				break;
+			}
+
+			csv.append(axes[0].getTau(level));
+			csv.append(',');
+			csv.append(AllanVariance.getClusterSize(level));
+			csv.append(',');
+			csv.append(axes[0].getTermCount(level));
+
+			for (int i = 0; i < axes.length; i++)
+			{
+				csv.append(',');
+				csv.append(axes[i].getDeviation(level));
+			}
+
+			csv.append('\n');
+		}
+
+		buttonSave.setEnabled(false);
+
+		new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				File file = LogFiles.createLogFile("Allan",
+						LogFiles.CSV_EXTENSION);
+
+				CharSequence text = "Allan Deviation Saved";
+
+				try
+				{
+					FileOutputStream fos = new FileOutputStream(file);
+					fos.write(csv.toString().getBytes());
+					fos.flush();
+					fos.close();
+				}
+				catch (IOException e)
+				{
+					text = e.toString();
+				}
+
+				final CharSequence message = text;
+
+				handler.post(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						buttonSave.setEnabled(true);
+
+						Toast.makeText(getContext(), message,
+								Toast.LENGTH_SHORT).show();
+					}
+				});
+			}
+		}).start();
+	}
+
+	private static double rate(double period)
+	{
+		return (period > 0) ? 1 / period : 0;
+	}
+}
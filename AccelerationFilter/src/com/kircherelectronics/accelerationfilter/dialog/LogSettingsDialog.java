@@ -0,0 +1,362 @@
+package com.kircherelectronics.accelerationfilter.dialog;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemSelectedListener;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.Spinner;
+import android.widget.Toast;
+
+import com.kircherelectronics.accelerationfilter.R;
+import com.kircherelectronics.accelerationfilter.logger.BinaryLogFormat;
+import com.kircherelectronics.accelerationfilter.logger.CsvConverter;
+import com.kircherelectronics.accelerationfilter.logger.LogFiles;
+import com.kircherelectronics.accelerationfilter.logger.LogJournal;
+import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A dialog for the data log settings. Allows the user to select the format of
+ * new logs, whether every sample is logged, when a log is split into segments,
+ * how much storage old logs may take and to convert binary logs into .csv
+ * files.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogSettingsDialog extends Dialog implements
+		OnItemSelectedListener
+{
+	private static final String tag = LogSettingsDialog.class.getSimpleName();
+
+	// The formats in the same order as the spinner entries
+	private static final String[] LOG_FORMATS = new String[]
+	{ PrefUtils.LOG_FORMAT_CSV, PrefUtils.LOG_FORMAT_BINARY,
+			PrefUtils.LOG_FORMAT_COMPRESSED };
+
+	// The limits in the same order as the spinner entries, 0 for no limit
+	private static final long[] SEGMENT_SIZES = new long[]
+	{ 0, 16L << 20, 64L << 20, 256L << 20 };
+
+	private static final long[] SEGMENT_DURATIONS = new long[]
+	{ 0, 10 * 60 * 1000L, 30 * 60 * 1000L, 60 * 60 * 1000L };
+
+	private static final long[] RETENTION_SIZES = new long[]
+	{ 0, 256L << 20, 1L << 30, 4L << 30 };
+
+	private static final long[] RETENTION_AGES = new long[]
+	{ 0, 7 * 24 * 60 * 60 * 1000L, 30 * 24 * 60 * 60 * 1000L };
+
+	private Button buttonAccept;
+	private Button buttonExport;
+
+	private CheckBox checkBoxCaptureAll;
+
+	// Handler to report the result of an export on the UI thread
+	private Handler handler;
+
+	private Spinner formatSpinner;
+	private Spinner segmentSizeSpinner;
+	private Spinner segmentDurationSpinner;
+	private Spinner retentionSizeSpinner;
+	private Spinner retentionAgeSpinner;
+
+	private String formatSelection;
+
+	private long segmentSize;
+	private long segmentDuration;
+	private long retentionSize;
+	private long retentionAge;
+
+	private boolean captureAll;
+
+	public LogSettingsDialog(Context context)
+	{
+		super(context);
+
+		this.setTitle("Log");
+
+		handler = new Handler();
+
+		LayoutInflater inflater = getLayoutInflater();
+
+		View settingsView = inflater.inflate(R.layout.log_dialog_view, null,
+				false);
+
+		formatSpinner = (Spinner) settingsView
+				.findViewById(R.id.log_format_spinner);
+
+		segmentSizeSpinner = (Spinner) settingsView
+				.findViewById(R.id.log_segment_size_spinner);
+
+		segmentDurationSpinner = (Spinner) settingsView
+				.findViewById(R.id.log_segment_duration_spinner);
+
+		retentionSizeSpinner = (Spinner) settingsView
+				.findViewById(R.id.log_retention_size_spinner);
+
+		retentionAgeSpinner = (Spinner) settingsView
+				.findViewById(R.id.log_retention_age_spinner);
+
+		checkBoxCaptureAll = (CheckBox) settingsView
+				.findViewById(R.id.check_box_capture_all);
+
+		checkBoxCaptureAll.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				captureAll = checkBoxCaptureAll.isChecked();
+
+				writeLogPrefs();
+			}
+		});
+
+		buttonExport = (Button) settingsView
+				.findViewById(R.id.button_export_csv);
+
+		buttonExport.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				exportCsv();
+			}
+		});
+
+		buttonAccept = (Button) settingsView.findViewById(R.id.button_accept);
+
+		buttonAccept.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				LogSettingsDialog.this.dismiss();
+			}
+		});
+
+		this.setContentView(settingsView);
+	}
+
+	@Override
+	public void onStart()
+	{
+		super.onStart();
+
+		readLogPrefs();
+
+		for (int i = 0; i < LOG_FORMATS.length; i++)
+		{
+			if (formatSelection.equals(LOG_FORMATS[i]))
+			{
+				formatSpinner.setSelection(i);
+			}
+		}
+
+		formatSpinner.setOnItemSelectedListener(this);
+
+		segmentSizeSpinner.setSelection(indexOf(SEGMENT_SIZES, segmentSize));
+		segmentSizeSpinner.setOnItemSelectedListener(this);
+
+		segmentDurationSpinner.setSelection(indexOf(SEGMENT_DURATIONS,
+				segmentDuration));
+		segmentDurationSpinner.setOnItemSelectedListener(this);
+
+		retentionSizeSpinner.setSelection(indexOf(RETENTION_SIZES,
+				retentionSize));
+		retentionSizeSpinner.setOnItemSelectedListener(this);
+
+		retentionAgeSpinner.setSelection(indexOf(RETENTION_AGES, retentionAge));
+		retentionAgeSpinner.setOnItemSelectedListener(this);
+
+		checkBoxCaptureAll.setChecked(captureAll);
+	}
+
+	@Override
+	public void onStop()
+	{
+		super.onStop();
+
+		writeLogPrefs();
+	}
+
+	@Override
+	public void onItemSelected(AdapterView<?> parent, View view, int position,
+			long id)
+	{
+		switch (parent.getId())
+		{
+		case R.id.log_format_spinner:
+			formatSelection = LOG_FORMATS[position];
+			break;
+		case R.id.log_segment_size_spinner:
+			segmentSize = SEGMENT_SIZES[position];
+			break;
+		case R.id.log_segment_duration_spinner:
+			segmentDuration = SEGMENT_DURATIONS[position];
+			break;
+		case R.id.log_retention_size_spinner:
+			retentionSize = RETENTION_SIZES[position];
+			break;
+		case R.id.log_retention_age_spinner:
+			retentionAge = RETENTION_AGES[position];
+			break;
+		}
+
+		writeLogPrefs();
+	}
+
+	@Override
+	public void onNothingSelected(AdapterView<?> parent)
+	{
+
+	}
+
+	/**
+	 * Find the spinner entry of a limit. A limit that is not one of the entries
+	 * selects the first entry.
+	 */
+	private static int indexOf(long[] values, long value)
+	{
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i] == value)
+			{
+				return i;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Convert every binary log that does not have a .csv file yet. The
+	 * conversion runs on its own thread since the logs can be large.
+	 */
+	private void exportCsv()
+	{
+		buttonExport.setEnabled(false);
+
+		new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int converted = 0;
+				String error = null;
+
+				File[] files = LogFiles.getLogDirectory().listFiles();
+
+				for (int i = 0; files != null && i < files.length; i++)
+				{
+					// Skip logs that are still open or need to be recovered.
+					if (!files[i].getName().endsWith(BinaryLogFormat.EXTENSION)
+							|| CsvConverter.getCsvFile(files[i]).exists()
+							|| LogJournal.getJournalFile(files[i]).exists())
+					{
+						continue;
+					}
+
+					try
+					{
+						CsvConverter.convert(files[i]);
+
+						converted++;
+					}
+					catch (IOException e)
+					{
+						Log.e(tag, "Could not convert " + files[i], e);
+
+						error = e.toString();
+					}
+				}
+
+				final CharSequence text = (error != null) ? error : "Exported "
+						+ converted + " logs";
+
+				handler.post(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						buttonExport.setEnabled(true);
+
+						Toast.makeText(getContext(), text, Toast.LENGTH_SHORT)
+								.show();
+					}
+				});
+			}
+		}).start();
+	}
+
+	/**
+	 * Read in the current user preferences.
+	 */
+	private void readLogPrefs()
+	{
+		SharedPreferences prefs = this.getContext().getSharedPreferences(
+				PrefUtils.LOG_PREFS, Activity.MODE_PRIVATE);
+
+		this.formatSelection = prefs.getString(PrefUtils.LOG_FORMAT_PREF,
+				PrefUtils.LOG_FORMAT_CSV);
+
+		this.captureAll = prefs.getBoolean(PrefUtils.LOG_CAPTURE_ALL_PREF,
+				true);
+
+		this.segmentSize = prefs.getLong(PrefUtils.LOG_SEGMENT_SIZE_PREF, 0);
+		this.segmentDuration = prefs.getLong(
+				PrefUtils.LOG_SEGMENT_DURATION_PREF, 0);
+
+		this.retentionSize = prefs.getLong(PrefUtils.LOG_RETENTION_SIZE_PREF,
+				0);
+		this.retentionAge = prefs.getLong(PrefUtils.LOG_RETENTION_AGE_PREF, 0);
+	}
+
+	/**
+	 * Write the preferences.
+	 */
+	private void writeLogPrefs()
+	{
+		SharedPreferences.Editor editor = this
+				.getContext()
+				.getSharedPreferences(PrefUtils.LOG_PREFS,
+						Activity.MODE_PRIVATE).edit();
+
+		editor.putString(PrefUtils.LOG_FORMAT_PREF, formatSelection);
+		editor.putBoolean(PrefUtils.LOG_CAPTURE_ALL_PREF, captureAll);
+		editor.putLong(PrefUtils.LOG_SEGMENT_SIZE_PREF, segmentSize);
+		editor.putLong(PrefUtils.LOG_SEGMENT_DURATION_PREF, segmentDuration);
+		editor.putLong(PrefUtils.LOG_RETENTION_SIZE_PREF, retentionSize);
+		editor.putLong(PrefUtils.LOG_RETENTION_AGE_PREF, retentionAge);
+
+		editor.commit();
+	}
+}
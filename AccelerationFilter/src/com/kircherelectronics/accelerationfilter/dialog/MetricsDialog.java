@@ -0,0 +1,260 @@
+package com.kircherelectronics.accelerationfilter.dialog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Environment;
+import android.os.Handler;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.kircherelectronics.accelerationfilter.R;
+import com.kircherelectronics.accelerationfilter.metrics.MetricsReporter;
+import com.kircherelectronics.accelerationfilter.plot.PlotPrefCallback;
+import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A dialog that shows the performance metrics of the application while it is
+ * running and can save them to an external .txt file.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class MetricsDialog extends Dialog implements Runnable
+{
+	private static final String tag = MetricsDialog.class.getSimpleName();
+
+	private Button buttonAccept;
+	private Button buttonReset;
+	private Button buttonSave;
+
+	private CheckBox checkBoxOverlayActive;
+
+	private final PlotPrefCallback callback;
+
+	// Handler to refresh the report while the dialog is visible
+	private Handler handler;
+
+	private final MetricsReporter reporter;
+
+	private StringBuilder report;
+
+	private TextView reportTextView;
+
+	/**
+	 * Create a dialog.
+	 *
+	 * @param context
+	 *            The context.
+	 * @param reporter
+	 *            The source of the metrics.
+	 * @param callback
+	 *            Notified when the overlay preference changes.
+	 */
+	public MetricsDialog(Context context, MetricsReporter reporter,
+			PlotPrefCallback callback)
+	{
+		super(context);
+
+		this.reporter = reporter;
+		this.callback = callback;
+
+		this.setTitle("Metrics");
+
+		report = new StringBuilder();
+
+		LayoutInflater inflater = getLayoutInflater();
+
+		View metricsView = inflater.inflate(R.layout.metrics_dialog_view,
+				null, false);
+
+		reportTextView = (TextView) metricsView
+				.findViewById(R.id.value_metrics_report);
+
+		checkBoxOverlayActive = (CheckBox) metricsView
+				.findViewById(R.id.check_box_metrics_overlay);
+
+		checkBoxOverlayActive.setChecked(readOverlayPref());
+
+		checkBoxOverlayActive.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				writeOverlayPref(checkBoxOverlayActive.isChecked());
+
+				MetricsDialog.this.callback.checkPlotPrefs();
+			}
+		});
+
+		buttonReset = (Button) metricsView.findViewById(R.id.button_reset);
+
+		buttonReset.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				MetricsDialog.this.reporter.resetMetrics();
+			}
+		});
+
+		buttonSave = (Button) metricsView.findViewById(R.id.button_save);
+
+		buttonSave.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				writeReportToFile();
+			}
+		});
+
+		buttonAccept = (Button) metricsView.findViewById(R.id.button_accept);
+
+		buttonAccept.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				MetricsDialog.this.dismiss();
+			}
+		});
+
+		this.setContentView(metricsView);
+	}
+
+	@Override
+	public void onStart()
+	{
+		super.onStart();
+
+		handler = new Handler();
+
+		handler.post(this);
+	}
+
+	@Override
+	public void onStop()
+	{
+		super.onStop();
+
+		handler.removeCallbacks(this);
+
+		handler = null;
+	}
+
+	@Override
+	public void run()
+	{
+		handler.postDelayed(this, 500);
+
+		updateReport();
+
+		reportTextView.setText(report);
+	}
+
+	/**
+	 * Read in the overlay preference.
+	 */
+	private boolean readOverlayPref()
+	{
+		SharedPreferences prefs = this.getContext().getSharedPreferences(
+				PrefUtils.METRICS_PREFS, Activity.MODE_PRIVATE);
+
+		return prefs.getBoolean(PrefUtils.METRICS_OVERLAY_ACTIVE, false);
+	}
+
+	/**
+	 * Write the overlay preference.
+	 */
+	private void writeOverlayPref(boolean overlayActive)
+	{
+		SharedPreferences.Editor editor = this
+				.getContext()
+				.getSharedPreferences(PrefUtils.METRICS_PREFS,
+						Activity.MODE_PRIVATE).edit();
+
+		editor.putBoolean(PrefUtils.METRICS_OVERLAY_ACTIVE, overlayActive);
+
+		editor.commit();
+	}
+
+	/**
+	 * Rebuild the report from the reporter.
+	 */
+	private void updateReport()
+	{
+		report.setLength(0);
+
+		reporter.writeMetricsReport(report);
+	}
+
+	/**
+	 * Write the current report out to a persisted file.
+	 */
+	private void writeReportToFile()
+	{
+		updateReport();
+
+		Calendar c = Calendar.getInstance();
+		String filename = "Metrics-" + c.get(Calendar.YEAR) + "-"
+				+ (c.get(Calendar.MONTH) + 1) + "-"
+				+ c.get(Calendar.DAY_OF_MONTH) + "-" + c.get(Calendar.HOUR)
+				+ "-" + c.get(Calendar.MINUTE) + "-" + c.get(Calendar.SECOND)
+				+ ".txt";
+
+		File dir = new File(Environment.getExternalStorageDirectory()
+				+ File.separator + "AccelerationFilter" + File.separator
+				+ "Metrics");
+		if (!dir.exists())
+		{
+			dir.mkdirs();
+		}
+
+		File file = new File(dir, filename);
+
+		CharSequence text = "Metrics Saved";
+
+		try
+		{
+			FileOutputStream fos = new FileOutputStream(file);
+			fos.write(report.toString().getBytes());
+			fos.flush();
+			fos.close();
+		}
+		catch (IOException e)
+		{
+			text = e.toString();
+		}
+
+		Toast.makeText(getContext(), text, Toast.LENGTH_SHORT).show();
+	}
+}
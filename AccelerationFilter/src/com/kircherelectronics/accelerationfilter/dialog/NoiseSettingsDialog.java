@@ -0,0 +1,162 @@
+package com.kircherelectronics.accelerationfilter.dialog;
+
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.AdapterView.OnItemSelectedListener;
+import android.widget.Button;
+import android.widget.Spinner;
+
+import com.kircherelectronics.accelerationfilter.R;
+import com.kircherelectronics.accelerationfilter.plot.PlotPrefCallback;
+import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A dialog that selects the statistic the noise bars show, the RMS amplitude,
+ * a streaming quantile, the peak-to-peak amplitude or the crest factor of the
+ * noise.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class NoiseSettingsDialog extends Dialog implements
+		OnItemSelectedListener
+{
+	// The statistics in the same order as the spinner entries
+	private static final String[] NOISE_STATISTICS = new String[]
+	{ PrefUtils.NOISE_STATISTIC_STD_DEV, PrefUtils.NOISE_STATISTIC_P50,
+			PrefUtils.NOISE_STATISTIC_P95, PrefUtils.NOISE_STATISTIC_P99,
+			PrefUtils.NOISE_STATISTIC_PEAK_TO_PEAK,
+			PrefUtils.NOISE_STATISTIC_CREST_FACTOR };
+
+	private Button buttonAccept;
+
+	private final PlotPrefCallback callback;
+
+	private Spinner statisticSpinner;
+
+	private String statisticSelection;
+
+	/**
+	 * Create a dialog.
+	 *
+	 * @param context
+	 *            The context.
+	 * @param callback
+	 *            Notified when the preferences change.
+	 */
+	public NoiseSettingsDialog(Context context, PlotPrefCallback callback)
+	{
+		super(context);
+
+		this.callback = callback;
+
+		this.setTitle("Noise");
+
+		LayoutInflater inflater = getLayoutInflater();
+
+		View settingsView = inflater.inflate(R.layout.noise_dialog_view, null,
+				false);
+
+		statisticSpinner = (Spinner) settingsView
+				.findViewById(R.id.noise_statistic_spinner);
+
+		buttonAccept = (Button) settingsView.findViewById(R.id.button_accept);
+
+		buttonAccept.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				NoiseSettingsDialog.this.dismiss();
+			}
+		});
+
+		this.setContentView(settingsView);
+	}
+
+	@Override
+	public void onStart()
+	{
+		super.onStart();
+
+		readNoisePrefs();
+
+		for (int i = 0; i < NOISE_STATISTICS.length; i++)
+		{
+			if (statisticSelection.equals(NOISE_STATISTICS[i]))
+			{
+				statisticSpinner.setSelection(i);
+			}
+		}
+
+		statisticSpinner.setOnItemSelectedListener(this);
+	}
+
+	@Override
+	public void onItemSelected(AdapterView<?> parent, View view, int position,
+			long id)
+	{
+		statisticSelection = NOISE_STATISTICS[position];
+
+		writeNoisePrefs();
+
+		callback.checkPlotPrefs();
+	}
+
+	@Override
+	public void onNothingSelected(AdapterView<?> parent)
+	{
+
+	}
+
+	/**
+	 * Read in the current user preferences.
+	 */
+	private void readNoisePrefs()
+	{
+		SharedPreferences prefs = this.getContext().getSharedPreferences(
+				PrefUtils.NOISE_PREFS, Activity.MODE_PRIVATE);
+
+		this.statisticSelection = prefs.getString(
+				PrefUtils.NOISE_STATISTIC_PREF,
+				PrefUtils.NOISE_STATISTIC_STD_DEV);
+	}
+
+	/**
+	 * Write the preferences.
+	 */
+	private void writeNoisePrefs()
+	{
+		SharedPreferences.Editor editor = this
+				.getContext()
+				.getSharedPreferences(PrefUtils.NOISE_PREFS,
+						Activity.MODE_PRIVATE).edit();
+
+		editor.putString(PrefUtils.NOISE_STATISTIC_PREF, statisticSelection);
+
+		editor.commit();
+	}
+}
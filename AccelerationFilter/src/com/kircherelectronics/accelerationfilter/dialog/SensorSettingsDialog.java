@@ -16,12 +16,14 @@ import android.view.View;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemSelectedListener;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.Spinner;
 import android.widget.TextView;
 
 import com.kircherelectronics.accelerationfilter.R;
 import com.kircherelectronics.accelerationfilter.plot.PlotPrefCallback;
 import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
+import com.kircherelectronics.accelerationfilter.sensor.SensorHub;
 
 /*
  * Acceleration Filter
@@ -54,14 +56,20 @@ public class SensorSettingsDialog extends Dialog implements
 
 	private int count = 0;
 
+	// Indicate if the gyroscope and magnetometer are captured
+	private boolean multiSensorActive = false;
+
 	private Button buttonAccept;
 
+	private CheckBox checkBoxMultiSensor;
+
 	private DecimalFormat df;
 
 	private final PlotPrefCallback callback;
 
-	// Sensor manager to access the accelerometer sensor
-	private SensorManager sensorManager;
+	// Shares the accelerometer registration of the activity, so measuring
+	// the rate does not add a second registration
+	private SensorHub sensorHub;
 
 	private String frequencySelection;
 
@@ -82,9 +90,7 @@ public class SensorSettingsDialog extends Dialog implements
 
 		df = new DecimalFormat("#.##");
 
-		// Get the sensor manager ready
-		sensorManager = (SensorManager) this.getContext().getSystemService(
-				Context.SENSOR_SERVICE);
+		sensorHub = SensorHub.getInstance(context);
 
 		LayoutInflater inflater = getLayoutInflater();
 
@@ -99,6 +105,22 @@ public class SensorSettingsDialog extends Dialog implements
 
 		frequencySpinner.setOnItemSelectedListener(this);
 
+		checkBoxMultiSensor = (CheckBox) settingsView
+				.findViewById(R.id.check_box_multi_sensor);
+
+		checkBoxMultiSensor.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				multiSensorActive = checkBoxMultiSensor.isChecked();
+
+				writeSensorPrefs();
+
+				SensorSettingsDialog.this.callback.checkPlotPrefs();
+			}
+		});
+
 		buttonAccept = (Button) settingsView.findViewById(R.id.button_accept);
 
 		buttonAccept.setOnClickListener(new View.OnClickListener()
@@ -118,7 +140,7 @@ public class SensorSettingsDialog extends Dialog implements
 	{
 		super.onStop();
 
-		sensorManager.unregisterListener(this);
+		sensorHub.unsubscribe(this);
 		writeSensorPrefs();
 		handler.removeCallbacks(this);
 
@@ -131,6 +153,8 @@ public class SensorSettingsDialog extends Dialog implements
 
 		readSensorPrefs();
 
+		checkBoxMultiSensor.setChecked(multiSensorActive);
+
 		if (frequencySelection.equals(PrefUtils.SENSOR_FREQUENCY_SLOW))
 		{
 			frequencySpinner.setSelection(0);
@@ -165,6 +189,9 @@ public class SensorSettingsDialog extends Dialog implements
 		this.frequencySelection = prefs.getString(
 				PrefUtils.SENSOR_FREQUENCY_PREF,
 				PrefUtils.SENSOR_FREQUENCY_FAST);
+
+		this.multiSensorActive = prefs.getBoolean(
+				PrefUtils.SENSOR_MULTI_CAPTURE_PREF, false);
 	}
 
 	/**
@@ -196,6 +223,9 @@ public class SensorSettingsDialog extends Dialog implements
 					PrefUtils.SENSOR_FREQUENCY_FAST);
 		}
 
+		editor.putBoolean(PrefUtils.SENSOR_MULTI_CAPTURE_PREF,
+				multiSensorActive);
+
 		editor.commit();
 	}
 
@@ -247,37 +277,19 @@ public class SensorSettingsDialog extends Dialog implements
 
 			this.frequencySelection = PrefUtils.SENSOR_FREQUENCY_SLOW;
 
-			sensorManager.unregisterListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-
-			// Register for sensor updates.
-			sensorManager.registerListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-					SensorManager.SENSOR_DELAY_NORMAL);
+			subscribe(SensorManager.SENSOR_DELAY_NORMAL);
 			break;
 		case 1:
 
 			this.frequencySelection = PrefUtils.SENSOR_FREQUENCY_MEDIUM;
 
-			sensorManager.unregisterListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-
-			// Register for sensor updates.
-			sensorManager.registerListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-					SensorManager.SENSOR_DELAY_GAME);
+			subscribe(SensorManager.SENSOR_DELAY_GAME);
 			break;
 		case 2:
 
 			this.frequencySelection = PrefUtils.SENSOR_FREQUENCY_FAST;
 
-			sensorManager.unregisterListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-
-			// Register for sensor updates.
-			sensorManager.registerListener(this,
-					sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-					SensorManager.SENSOR_DELAY_FASTEST);
+			subscribe(SensorManager.SENSOR_DELAY_FASTEST);
 			break;
 
 		}
@@ -287,6 +299,18 @@ public class SensorSettingsDialog extends Dialog implements
 		startTime = 0;
 	}
 
+	/**
+	 * Subscribe to the accelerometer at a delay. The activity subscribes at
+	 * the same delay, so the events of one registration are counted.
+	 */
+	private void subscribe(int delay)
+	{
+		sensorHub.unsubscribe(this);
+
+		// Register for sensor updates.
+		sensorHub.subscribe(this, Sensor.TYPE_ACCELEROMETER, delay, null);
+	}
+
 	@Override
 	public void onNothingSelected(AdapterView<?> parent)
 	{
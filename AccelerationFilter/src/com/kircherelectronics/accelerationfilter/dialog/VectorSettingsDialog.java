@@ -0,0 +1,148 @@
+package com.kircherelectronics.accelerationfilter.dialog;
+
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+
+import com.kircherelectronics.accelerationfilter.R;
+import com.kircherelectronics.accelerationfilter.plot.PlotPrefCallback;
+import com.kircherelectronics.accelerationfilter.prefs.PrefUtils;
+import com.kircherelectronics.accelerationfilter.view.AccelerationVectorSurfaceView;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A dialog that turns the trail and the heatmap of the vector gauge on and off
+ * and clears them.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class VectorSettingsDialog extends Dialog
+{
+	private Button buttonAccept;
+	private Button buttonClear;
+
+	private CheckBox checkBoxTrailActive;
+	private CheckBox checkBoxHeatmapActive;
+
+	private final PlotPrefCallback callback;
+
+	private final AccelerationVectorSurfaceView view;
+
+	/**
+	 * Create a dialog.
+	 *
+	 * @param context
+	 *            The context.
+	 * @param view
+	 *            The gauge that is cleared.
+	 * @param callback
+	 *            Notified when the preferences change.
+	 */
+	public VectorSettingsDialog(Context context,
+			AccelerationVectorSurfaceView view, PlotPrefCallback callback)
+	{
+		super(context);
+
+		this.view = view;
+		this.callback = callback;
+
+		this.setTitle("Display");
+
+		LayoutInflater inflater = getLayoutInflater();
+
+		View settingsView = inflater.inflate(R.layout.vector_dialog_view,
+				null, false);
+
+		checkBoxTrailActive = (CheckBox) settingsView
+				.findViewById(R.id.check_box_vector_trail);
+		checkBoxHeatmapActive = (CheckBox) settingsView
+				.findViewById(R.id.check_box_vector_heatmap);
+
+		SharedPreferences prefs = getContext().getSharedPreferences(
+				PrefUtils.VECTOR_PREFS, Activity.MODE_PRIVATE);
+
+		checkBoxTrailActive.setChecked(prefs.getBoolean(
+				PrefUtils.VECTOR_TRAIL_ACTIVE, false));
+		checkBoxHeatmapActive.setChecked(prefs.getBoolean(
+				PrefUtils.VECTOR_HEATMAP_ACTIVE, false));
+
+		View.OnClickListener checkListener = new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				writePrefs();
+
+				VectorSettingsDialog.this.callback.checkPlotPrefs();
+			}
+		};
+
+		checkBoxTrailActive.setOnClickListener(checkListener);
+		checkBoxHeatmapActive.setOnClickListener(checkListener);
+
+		buttonClear = (Button) settingsView.findViewById(R.id.button_clear);
+
+		buttonClear.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				VectorSettingsDialog.this.view.clearHistory();
+			}
+		});
+
+		buttonAccept = (Button) settingsView.findViewById(R.id.button_accept);
+
+		buttonAccept.setOnClickListener(new View.OnClickListener()
+		{
+			@Override
+			public void onClick(View v)
+			{
+				VectorSettingsDialog.this.dismiss();
+			}
+		});
+
+		this.setContentView(settingsView);
+	}
+
+	/**
+	 * Write the preferences.
+	 */
+	private void writePrefs()
+	{
+		SharedPreferences.Editor editor = this
+				.getContext()
+				.getSharedPreferences(PrefUtils.VECTOR_PREFS,
+						Activity.MODE_PRIVATE).edit();
+
+		editor.putBoolean(PrefUtils.VECTOR_TRAIL_ACTIVE,
+				checkBoxTrailActive.isChecked());
+		editor.putBoolean(PrefUtils.VECTOR_HEATMAP_ACTIVE,
+				checkBoxHeatmapActive.isChecked());
+
+		editor.commit();
+	}
+}
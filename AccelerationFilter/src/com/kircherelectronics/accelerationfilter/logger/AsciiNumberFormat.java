@@ -0,0 +1,233 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Formats numbers as ASCII straight into byte or char arrays with a fixed
+ * number of decimals. Unlike DecimalFormat and Float.toString() nothing is
+ * allocated, so it can be used for every sample of the sensor.
+ *
+ * The value is rounded half up to the number of decimals. Trailing zeros can be
+ * trimmed, so with two decimals 1.50 is written as 1.5 and 2.00 as 2, the same
+ * as a "#.##" DecimalFormat. Values too large to scale into a long are written
+ * with Double.toString(), which does allocate.
+ *
+ * An instance holds a scratch buffer, so it must not be shared between
+ * threads.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class AsciiNumberFormat
+{
+	// The most chars a formatted number takes.
+	public final static int MAX_LENGTH = 32;
+
+	private final static int MAX_DECIMALS = 9;
+
+	// Scaled values at or above this are written with Double.toString().
+	private final static double MAX_SCALED = 1e18;
+
+	private final boolean trimZeros;
+
+	private final int decimals;
+
+	private final long scale;
+
+	private final char[] scratch = new char[MAX_LENGTH];
+
+	/**
+	 * Initialize a new AsciiNumberFormat.
+	 *
+	 * @param decimals
+	 *            The number of decimals, at most 9.
+	 * @param trimZeros
+	 *            Drop trailing zeros and a trailing decimal point.
+	 */
+	public AsciiNumberFormat(int decimals, boolean trimZeros)
+	{
+		this.decimals = Math.max(0, Math.min(decimals, MAX_DECIMALS));
+		this.trimZeros = trimZeros;
+
+		long scale = 1;
+
+		for (int i = 0; i < this.decimals; i++)
+		{
+			scale *= 10;
+		}
+
+		this.scale = scale;
+	}
+
+	/**
+	 * Format a value into a byte array.
+	 *
+	 * @param value
+	 *            The value.
+	 * @param dst
+	 *            The array to write to, with room for MAX_LENGTH bytes.
+	 * @param offset
+	 *            The offset to write at.
+	 * @return The offset after the number.
+	 */
+	public int format(double value, byte[] dst, int offset)
+	{
+		int length = format(value);
+
+		for (int i = 0; i < length; i++)
+		{
+			dst[offset++] = (byte) scratch[i];
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Format a value into a char array.
+	 *
+	 * @param value
+	 *            The value.
+	 * @param dst
+	 *            The array to write to, with room for MAX_LENGTH chars.
+	 * @param offset
+	 *            The offset to write at.
+	 * @return The offset after the number.
+	 */
+	public int format(double value, char[] dst, int offset)
+	{
+		int length = format(value);
+
+		System.arraycopy(scratch, 0, dst, offset, length);
+
+		return offset + length;
+	}
+
+	/**
+	 * Format a long into a byte array.
+	 *
+	 * @param value
+	 *            The value.
+	 * @param dst
+	 *            The array to write to, with room for 20 bytes.
+	 * @param offset
+	 *            The offset to write at.
+	 * @return The offset after the number.
+	 */
+	public static int formatLong(long value, byte[] dst, int offset)
+	{
+		if (value < 0)
+		{
+			dst[offset++] = '-';
+		}
+
+		int digits = countDigits(value);
+
+		// Work with the negative value so Long.MIN_VALUE does not overflow.
+		long remaining = (value < 0) ? value : -value;
+
+		for (int i = offset + digits - 1; i >= offset; i--)
+		{
+			dst[i] = (byte) ('0' - (remaining % 10));
+			remaining /= 10;
+		}
+
+		return offset + digits;
+	}
+
+	/**
+	 * Format the value into the scratch buffer.
+	 *
+	 * @return The number of chars.
+	 */
+	private int format(double value)
+	{
+		if (value != value || Math.abs(value) * scale >= MAX_SCALED)
+		{
+			String text = Double.toString(value);
+
+			text.getChars(0, text.length(), scratch, 0);
+
+			return text.length();
+		}
+
+		long scaled = (long) Math.floor(Math.abs(value) * scale + 0.5);
+
+		int length = 0;
+
+		if (value < 0 && scaled != 0)
+		{
+			scratch[length++] = '-';
+		}
+
+		long integer = scaled / scale;
+		long fraction = scaled % scale;
+
+		int digits = countDigits(integer);
+
+		for (int i = length + digits - 1; i >= length; i--)
+		{
+			scratch[i] = (char) ('0' + (integer % 10));
+			integer /= 10;
+		}
+
+		length += digits;
+
+		int fractionDigits = decimals;
+
+		if (trimZeros)
+		{
+			while (fractionDigits > 0 && fraction % 10 == 0)
+			{
+				fraction /= 10;
+				fractionDigits--;
+			}
+		}
+
+		if (fractionDigits > 0)
+		{
+			scratch[length++] = '.';
+
+			for (int i = length + fractionDigits - 1; i >= length; i--)
+			{
+				scratch[i] = (char) ('0' + (fraction % 10));
+				fraction /= 10;
+			}
+
+			length += fractionDigits;
+		}
+
+		return length;
+	}
+
+	private static int countDigits(long value)
+	{
+		int digits = 1;
+
+		// Count with the negative value so Long.MIN_VALUE does not overflow.
+		long remaining = (value < 0) ? value : -value;
+
+		while (remaining <= -10)
+		{
+			remaining /= 10;
+			digits++;
+		}
+
+		return digits;
+	}
+}
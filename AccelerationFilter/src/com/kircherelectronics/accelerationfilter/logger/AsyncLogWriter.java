@@ -0,0 +1,649 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.kircherelectronics.accelerationfilter.metrics.LatencyHistogram;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Moves the storage I/O of another SessionLogWriter onto its own thread.
+ * Producers copy records into a bounded ring of primitive arrays and return
+ * right away. The writer thread waits for records, takes them off the ring in
+ * batches, hands each batch to the wrapped writer and flushes it to storage on
+ * a fixed interval.
+ *
+ * When the ring is full the overflow policy decides what happens: the producer
+ * blocks until there is room, the oldest queued record is dropped or the new
+ * record is dropped. Dropped records are counted.
+ *
+ * A failure on the writer thread is reported by the next call to
+ * writeRecord(), flush() or close().
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class AsyncLogWriter implements SessionLogWriter
+{
+	// Overflow policies
+	public final static int OVERFLOW_BLOCK = 0;
+	public final static int OVERFLOW_DROP_OLDEST = 1;
+	public final static int OVERFLOW_DROP_NEWEST = 2;
+
+	// The most records handed to the wrapped writer at once.
+	private final static int BATCH_SIZE = 256;
+
+	// Anything slower than a minute is clamped.
+	private final static long HIGHEST_TRACKABLE_MICROS = 60 * 1000 * 1000;
+
+	private final int capacity;
+	private final int overflowPolicy;
+
+	private final long syncIntervalNanos;
+
+	private final SessionLogWriter writer;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition flushed = lock.newCondition();
+
+	// Guarded by lock
+	private boolean open = false;
+	private boolean closing = false;
+	private int head = 0;
+	private int size = 0;
+	private long flushRequests = 0;
+	private long flushesDone = 0;
+	private long droppedCount = 0;
+	private long upstreamDroppedCount = 0;
+	private long writtenCount = 0;
+	private IOException failure;
+
+	private int columnCount;
+
+	// The ring
+	private int[] counts;
+	private long[] timestamps;
+	private float[] values;
+
+	// The current batch, only touched by the writer thread
+	private int[] batchCounts;
+	private long[] batchTimestamps;
+	private float[] batchValues;
+	private float[] record;
+
+	private LatencyHistogram queueDepth;
+	private LatencyHistogram writeLatency;
+	private LatencyHistogram syncLatency;
+
+	private Thread thread;
+
+	/**
+	 * Initialize a new AsyncLogWriter.
+	 *
+	 * @param writer
+	 *            The writer that does the storage I/O.
+	 * @param capacity
+	 *            The number of records the ring holds.
+	 * @param overflowPolicy
+	 *            What to do with a record when the ring is full.
+	 * @param syncInterval
+	 *            How often the wrapped writer is flushed to storage in
+	 *            milliseconds.
+	 */
+	public AsyncLogWriter(SessionLogWriter writer, int capacity,
+			int overflowPolicy, long syncInterval)
+	{
+		this.writer = writer;
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.syncIntervalNanos = syncInterval * 1000000;
+
+		queueDepth = new LatencyHistogram(capacity);
+		writeLatency = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+		syncLatency = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+	}
+
+	@Override
+	public void open(File file, LogSchema schema) throws IOException
+	{
+		writer.open(file, schema);
+
+		columnCount = schema.getColumnCount();
+
+		counts = new int[capacity];
+		timestamps = new long[capacity];
+		values = new float[capacity * columnCount];
+
+		batchCounts = new int[BATCH_SIZE];
+		batchTimestamps = new long[BATCH_SIZE];
+		batchValues = new float[BATCH_SIZE * columnCount];
+		record = new float[columnCount];
+
+		lock.lock();
+
+		try
+		{
+			head = 0;
+			size = 0;
+			droppedCount = 0;
+			upstreamDroppedCount = 0;
+			writtenCount = 0;
+			failure = null;
+			closing = false;
+			open = true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writeLoop();
+			}
+		}, "AsyncLogWriter");
+
+		thread.start();
+	}
+
+	/**
+	 * Queue a record. Depending on the overflow policy this blocks or drops a
+	 * record when the ring is full.
+	 */
+	@Override
+	public void writeRecord(long timestamp, float[] values, int count)
+			throws IOException
+	{
+		lock.lock();
+
+		try
+		{
+			checkFailure();
+
+			if (!open || closing)
+			{
+				return;
+			}
+
+			if (size == capacity)
+			{
+				if (overflowPolicy == OVERFLOW_DROP_NEWEST)
+				{
+					droppedCount++;
+
+					return;
+				}
+				else if (overflowPolicy == OVERFLOW_DROP_OLDEST)
+				{
+					head = (head + 1) % capacity;
+					size--;
+
+					droppedCount++;
+				}
+				else
+				{
+					while (size == capacity && failure == null && !closing)
+					{
+						notFull.awaitUninterruptibly();
+					}
+
+					checkFailure();
+
+					if (closing)
+					{
+						return;
+					}
+				}
+			}
+
+			int slot = (head + size) % capacity;
+
+			count = Math.min(count, columnCount);
+
+			timestamps[slot] = timestamp;
+			counts[slot] = count;
+
+			System.arraycopy(values, 0, this.values, slot * columnCount, count);
+
+			size++;
+
+			notEmpty.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until the records queued so far have been written and flushed to
+	 * storage.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		lock.lock();
+
+		try
+		{
+			if (!open)
+			{
+				return;
+			}
+
+			long request = ++flushRequests;
+
+			notEmpty.signal();
+
+			while (flushesDone < request && failure == null && thread.isAlive())
+			{
+				flushed.awaitUninterruptibly();
+			}
+
+			checkFailure();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Write the queued records, stop the writer thread and close the wrapped
+	 * writer.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		lock.lock();
+
+		try
+		{
+			if (!open || closing)
+			{
+				return;
+			}
+
+			closing = true;
+
+			notEmpty.signal();
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		boolean interrupted = false;
+
+		while (thread.isAlive())
+		{
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		lock.lock();
+
+		try
+		{
+			open = false;
+
+			writer.setDroppedCount(upstreamDroppedCount + droppedCount);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		try
+		{
+			writer.close();
+		}
+		finally
+		{
+			lock.lock();
+
+			try
+			{
+				checkFailure();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Set the number of records that were dropped before they reached this
+	 * writer. The footer holds these and the records dropped by the queue.
+	 */
+	@Override
+	public void setDroppedCount(long droppedCount)
+	{
+		lock.lock();
+
+		try
+		{
+			upstreamDroppedCount = droppedCount;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public File getFile()
+	{
+		return writer.getFile();
+	}
+
+	/**
+	 * Get the length of the wrapped log. Records still in the queue are not
+	 * counted.
+	 */
+	@Override
+	public long getLength()
+	{
+		return writer.getLength();
+	}
+
+	@Override
+	public String getExtension()
+	{
+		return writer.getExtension();
+	}
+
+	/**
+	 * Get the number of records dropped because the ring was full.
+	 *
+	 * @return The number of dropped records.
+	 */
+	public long getDroppedCount()
+	{
+		lock.lock();
+
+		try
+		{
+			return droppedCount;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get the number of records waiting to be written.
+	 *
+	 * @return The queue depth.
+	 */
+	public int getQueueDepth()
+	{
+		lock.lock();
+
+		try
+		{
+			return size;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Clear the queue depth and latency statistics.
+	 */
+	public void reset()
+	{
+		queueDepth.reset();
+		writeLatency.reset();
+		syncLatency.reset();
+	}
+
+	/**
+	 * Write a human readable summary of the queue.
+	 *
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		long written;
+		long dropped;
+		int depth;
+
+		lock.lock();
+
+		try
+		{
+			written = writtenCount;
+			dropped = droppedCount;
+			depth = size;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		report.append("Log writer      ");
+		report.append(written);
+		report.append(" written, ");
+		report.append(dropped);
+		report.append(" dropped");
+		report.append('\n');
+
+		report.append(String.format("Queue depth     now %d p50 %d p99 %d max %d/%d",
+				depth, queueDepth.getValueAtPercentile(50),
+				queueDepth.getValueAtPercentile(99),
+				queueDepth.getMaxValue(), capacity));
+		report.append('\n');
+
+		report.append(String.format("Batch write ms  p50 %.1f p99 %.1f max %.1f",
+				writeLatency.getValueAtPercentile(50) / 1000.0,
+				writeLatency.getValueAtPercentile(99) / 1000.0,
+				writeLatency.getMaxValue() / 1000.0));
+		report.append('\n');
+
+		report.append(String.format("Sync ms         p50 %.1f p99 %.1f max %.1f",
+				syncLatency.getValueAtPercentile(50) / 1000.0,
+				syncLatency.getValueAtPercentile(99) / 1000.0,
+				syncLatency.getMaxValue() / 1000.0));
+		report.append('\n');
+	}
+
+	/**
+	 * The writer thread. Waits for records, copies a batch off the ring and
+	 * writes it without holding the lock so producers are never stalled by
+	 * storage.
+	 */
+	private void writeLoop()
+	{
+		long lastSync = System.nanoTime();
+
+		while (true)
+		{
+			int batch = 0;
+			long flushRequest = 0;
+			boolean done = false;
+
+			lock.lock();
+
+			try
+			{
+				while (size == 0 && !closing && flushRequests == flushesDone)
+				{
+					long wait = syncIntervalNanos
+							- (System.nanoTime() - lastSync);
+
+					if (wait <= 0)
+					{
+						break;
+					}
+
+					try
+					{
+						notEmpty.await(wait, TimeUnit.NANOSECONDS);
+					}
+					catch (InterruptedException e)
+					{
+						// Only close() stops the writer.
+					}
+				}
+
+				queueDepth.recordValue(size);
+
+				batch = Math.min(size, BATCH_SIZE);
+
+				for (int i = 0; i < batch; i++)
+				{
+					int slot = (head + i) % capacity;
+
+					batchTimestamps[i] = timestamps[slot];
+					batchCounts[i] = counts[slot];
+
+					System.arraycopy(values, slot * columnCount, batchValues, i
+							* columnCount, batchCounts[i]);
+				}
+
+				head = (head + batch) % capacity;
+				size -= batch;
+
+				if (size == 0)
+				{
+					flushRequest = flushRequests;
+					done = closing;
+				}
+
+				notFull.signalAll();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			try
+			{
+				if (batch > 0)
+				{
+					long start = System.nanoTime();
+
+					for (int i = 0; i < batch; i++)
+					{
+						System.arraycopy(batchValues, i * columnCount, record,
+								0, batchCounts[i]);
+
+						writer.writeRecord(batchTimestamps[i], record,
+								batchCounts[i]);
+					}
+
+					writeLatency.recordValue((System.nanoTime() - start) / 1000);
+				}
+
+				long now = System.nanoTime();
+
+				if (now - lastSync >= syncIntervalNanos
+						|| flushRequest > flushesDone)
+				{
+					writer.flush();
+
+					lastSync = System.nanoTime();
+
+					syncLatency.recordValue((lastSync - now) / 1000);
+				}
+			}
+			catch (IOException e)
+			{
+				fail(e);
+
+				return;
+			}
+
+			lock.lock();
+
+			try
+			{
+				writtenCount += batch;
+
+				if (flushRequest > flushesDone)
+				{
+					flushesDone = flushRequest;
+
+					flushed.signalAll();
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			if (done)
+			{
+				return;
+			}
+		}
+	}
+
+	private void fail(IOException e)
+	{
+		lock.lock();
+
+		try
+		{
+			failure = e;
+
+			notFull.signalAll();
+			flushed.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void checkFailure() throws IOException
+	{
+		if (failure != null)
+		{
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,419 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * The layout of the binary session log. All values are big-endian.
+ *
+ * <pre>
+ * int    magic            'AFLG'
+ * short  version
+ * short  encoding         ENCODING_RAW or ENCODING_DELTA
+ * int    header length    offset of the first record
+ * int    record size      8 + 4 * column count
+ * long   start time       wall clock milliseconds when the log was opened
+ * short  stage count      followed by each stage as a length prefixed UTF-8 string
+ * short  column count     followed by each column as a length prefixed UTF-8 string
+ * </pre>
+ *
+ * With ENCODING_RAW the header is followed by fixed width records of a long
+ * time stamp in nanoseconds and one float per column.
+ *
+ * With ENCODING_DELTA the header is followed by blocks of up to
+ * MAX_BLOCK_RECORDS records. Each block can be decoded on its own:
+ *
+ * <pre>
+ * int    block length     size of the block in bytes, including this field
+ * int    record count
+ * long   first time stamp nanoseconds
+ * float  quantum          the value of one step of a quantized column
+ * </pre>
+ *
+ * The first record of a block holds each column as round(value / quantum). The
+ * following records hold the change of the time stamp delta from the previous
+ * record and then the change of each quantized column. Every number is a
+ * zigzag varint, so the small changes between samples take a byte or two.
+ *
+ * A log that was closed cleanly ends with a footer and a fixed size trailer
+ * that points back at it:
+ *
+ * <pre>
+ * int    footer magic     'AFFT'
+ * long   record count
+ * long   dropped count    records that never made it into the log
+ * int    index size       followed by each index entry
+ * long   time stamp       index entry, nanoseconds
+ * long   offset           index entry, where a reader can start decoding
+ * long   footer offset    trailer
+ * int    trailer magic    'AFND'
+ * </pre>
+ *
+ * The time index has an entry every INDEX_INTERVAL_RECORDS records or every
+ * INDEX_INTERVAL_NANOS, whichever comes first. With ENCODING_DELTA every block
+ * starts at an index entry.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class BinaryLogFormat
+{
+	public final static String EXTENSION = ".aflog";
+
+	public final static int MAGIC = 0x41464C47;
+
+	public final static short VERSION = 1;
+
+	public final static short ENCODING_RAW = 0;
+
+	public final static short ENCODING_DELTA = 1;
+
+	// The size of the fixed fields at the start of an ENCODING_DELTA block.
+	public final static int BLOCK_HEADER_SIZE = 20;
+
+	public final static int MAX_BLOCK_RECORDS = 1024;
+
+	// The resolution columns are quantized to, in the units of the column.
+	public final static float QUANTUM = 0.0001f;
+
+	// The most bytes a varint can take.
+	public final static int MAX_VARINT_SIZE = 10;
+
+	// The offset of the header length field.
+	public final static int HEADER_LENGTH_OFFSET = 8;
+
+	public final static int FOOTER_MAGIC = 0x41464654;
+
+	public final static int TRAILER_MAGIC = 0x41464E44;
+
+	public final static int TRAILER_SIZE = 12;
+
+	// The fixed fields at the start of the footer.
+	public final static int FOOTER_SIZE = 24;
+
+	public final static int INDEX_INTERVAL_RECORDS = 1024;
+
+	public final static long INDEX_INTERVAL_NANOS = 1000000000L;
+
+	// By name, the Charset overloads of String need API 9.
+	private final static String UTF_8 = "UTF-8";
+
+	/**
+	 * Get the size of a record.
+	 *
+	 * @param columnCount
+	 *            The number of value columns.
+	 * @return The size of a record in bytes.
+	 */
+	public static int getRecordSize(int columnCount)
+	{
+		return 8 + 4 * columnCount;
+	}
+
+	/**
+	 * Encode a header.
+	 *
+	 * @param schema
+	 *            The contents of the log.
+	 * @param encoding
+	 *            How the records are encoded.
+	 * @param startTime
+	 *            The wall clock time the log was opened in milliseconds.
+	 * @return The header, ready to be written.
+	 * @throws IOException
+	 *             If the strings can not be encoded.
+	 */
+	public static ByteBuffer encodeHeader(LogSchema schema, short encoding,
+			long startTime) throws IOException
+	{
+		byte[][] stages = encodeStrings(schema.getStages());
+		byte[][] columns = encodeStrings(schema.getColumns());
+
+		int length = 4 + 2 + 2 + 4 + 4 + 8 + 2 + 2;
+
+		for (int i = 0; i < stages.length; i++)
+		{
+			length += 2 + stages[i].length;
+		}
+
+		for (int i = 0; i < columns.length; i++)
+		{
+			length += 2 + columns[i].length;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(length);
+
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort(encoding);
+		header.putInt(length);
+		header.putInt(getRecordSize(columns.length));
+		header.putLong(startTime);
+
+		putStrings(header, stages);
+		putStrings(header, columns);
+
+		header.flip();
+
+		return header;
+	}
+
+	/**
+	 * Decode a header.
+	 *
+	 * @param header
+	 *            A buffer positioned at the start of the header that holds at
+	 *            least the whole header.
+	 * @return The header.
+	 * @throws IOException
+	 *             If the buffer does not hold a session log header.
+	 */
+	public static Header decodeHeader(ByteBuffer header) throws IOException
+	{
+		if (header.remaining() < 24 || header.getInt() != MAGIC)
+		{
+			throw new IOException("Not an AccelerationFilter log");
+		}
+
+		short version = header.getShort();
+
+		if (version > VERSION)
+		{
+			throw new IOException("Unsupported log version " + version);
+		}
+
+		Header decoded = new Header();
+
+		decoded.encoding = header.getShort();
+		decoded.headerLength = header.getInt();
+		decoded.recordSize = header.getInt();
+		decoded.startTime = header.getLong();
+
+		String[] stages = getStrings(header);
+		String[] columns = getStrings(header);
+
+		decoded.schema = new LogSchema(stages, columns);
+
+		return decoded;
+	}
+
+	/**
+	 * Encode a footer and the trailer that points at it.
+	 *
+	 * @param footerOffset
+	 *            The file offset the footer is written at.
+	 * @param recordCount
+	 *            The number of records in the log.
+	 * @param droppedCount
+	 *            The number of records that were dropped.
+	 * @param index
+	 *            The time index of the records.
+	 * @return The footer, ready to be written.
+	 */
+	public static ByteBuffer encodeFooter(long footerOffset, long recordCount,
+			long droppedCount, LogIndex index)
+	{
+		ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE - 4
+				+ index.getEncodedSize() + TRAILER_SIZE);
+
+		footer.putInt(FOOTER_MAGIC);
+		footer.putLong(recordCount);
+		footer.putLong(droppedCount);
+
+		index.encode(footer);
+
+		footer.putLong(footerOffset);
+		footer.putInt(TRAILER_MAGIC);
+
+		footer.flip();
+
+		return footer;
+	}
+
+	/**
+	 * Read the footer of a log.
+	 *
+	 * @param channel
+	 *            The log file.
+	 * @param headerLength
+	 *            The length of the header of the log.
+	 * @return The footer or null if the log was not closed cleanly.
+	 * @throws IOException
+	 */
+	public static Footer readFooter(FileChannel channel, int headerLength)
+			throws IOException
+	{
+		long size = channel.size();
+
+		if (size < headerLength + FOOTER_SIZE + TRAILER_SIZE)
+		{
+			return null;
+		}
+
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+		readFully(channel, trailer, size - TRAILER_SIZE);
+
+		long offset = trailer.getLong(0);
+
+		if (trailer.getInt(8) != TRAILER_MAGIC || offset < headerLength
+				|| offset > size - TRAILER_SIZE - FOOTER_SIZE)
+		{
+			return null;
+		}
+
+		ByteBuffer encoded = ByteBuffer.allocate((int) (size - TRAILER_SIZE
+				- offset));
+		readFully(channel, encoded, offset);
+		encoded.flip();
+
+		if (encoded.getInt() != FOOTER_MAGIC)
+		{
+			return null;
+		}
+
+		Footer footer = new Footer();
+
+		footer.offset = offset;
+		footer.recordCount = encoded.getLong();
+		footer.droppedCount = encoded.getLong();
+
+		int indexSize = encoded.getInt(encoded.position());
+
+		if (indexSize < 0
+				|| indexSize > (encoded.remaining() - 4) / LogIndex.ENTRY_SIZE)
+		{
+			return null;
+		}
+
+		footer.index = LogIndex.decode(encoded);
+
+		return footer;
+	}
+
+	/**
+	 * Write a zigzag varint.
+	 *
+	 * @param buffer
+	 *            The buffer to write to.
+	 * @param offset
+	 *            The offset to write at.
+	 * @param value
+	 *            The value.
+	 * @return The offset after the varint.
+	 */
+	public static int putVarint(byte[] buffer, int offset, long value)
+	{
+		long zigzag = (value << 1) ^ (value >> 63);
+
+		while ((zigzag & ~0x7FL) != 0)
+		{
+			buffer[offset++] = (byte) ((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+
+		buffer[offset++] = (byte) zigzag;
+
+		return offset;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer target,
+			long position) throws IOException
+	{
+		while (target.hasRemaining())
+		{
+			int read = channel.read(target, position);
+
+			if (read < 0)
+			{
+				throw new EOFException();
+			}
+
+			position += read;
+		}
+	}
+
+	private static byte[][] encodeStrings(String[] strings)
+			throws UnsupportedEncodingException
+	{
+		byte[][] encoded = new byte[strings.length][];
+
+		for (int i = 0; i < strings.length; i++)
+		{
+			encoded[i] = strings[i].getBytes(UTF_8);
+		}
+
+		return encoded;
+	}
+
+	private static void putStrings(ByteBuffer buffer, byte[][] strings)
+	{
+		buffer.putShort((short) strings.length);
+
+		for (int i = 0; i < strings.length; i++)
+		{
+			buffer.putShort((short) strings[i].length);
+			buffer.put(strings[i]);
+		}
+	}
+
+	private static String[] getStrings(ByteBuffer buffer)
+			throws UnsupportedEncodingException
+	{
+		String[] strings = new String[buffer.getShort()];
+
+		for (int i = 0; i < strings.length; i++)
+		{
+			byte[] bytes = new byte[buffer.getShort()];
+			buffer.get(bytes);
+
+			strings[i] = new String(bytes, UTF_8);
+		}
+
+		return strings;
+	}
+
+	/**
+	 * A decoded header.
+	 */
+	public static class Header
+	{
+		public short encoding;
+		public int headerLength;
+		public int recordSize;
+		public long startTime;
+		public LogSchema schema;
+	}
+
+	/**
+	 * A decoded footer.
+	 */
+	public static class Footer
+	{
+		// The file offset of the footer, where the records end
+		public long offset;
+		public long recordCount;
+		public long droppedCount;
+		public LogIndex index;
+	}
+}
@@ -0,0 +1,564 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Streams the records out of a binary session log in either encoding. The
+ * current record is held in reused fields, so reading does not allocate per
+ * record. A delta encoded log is decoded one block at a time.
+ *
+ * seek() jumps to a time stamp with a binary search of the time index in the
+ * footer and streams from there. A log without a footer is searched by its
+ * fixed width records or by walking its block headers.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class BinaryLogReader
+{
+	// The number of records read from the file at once.
+	private static final int RECORDS_PER_READ = 4096;
+
+	private int columnCount;
+	private int recordSize;
+
+	private long timestamp;
+
+	// Set by seek() when the current record has not been returned yet
+	private boolean pending = false;
+
+	// The state of the current ENCODING_DELTA block
+	private byte[] block;
+	private int blockOffset;
+	private int blockRecords;
+	private int blockIndex;
+	private float quantum;
+	private long lastDelta;
+	private int[] lastValues;
+
+	// The file offsets of the records
+	private long recordsStart;
+	private long recordsEnd;
+
+	// The file offset of the next read
+	private long readPosition;
+
+	private float[] values;
+
+	private BinaryLogFormat.Header header;
+
+	// Null if the log was not closed cleanly
+	private BinaryLogFormat.Footer footer;
+
+	private ByteBuffer buffer;
+
+	private FileChannel channel;
+
+	private RandomAccessFile randomAccessFile;
+
+	/**
+	 * Open a binary session log and read the header.
+	 *
+	 * @param file
+	 *            The log file.
+	 * @throws IOException
+	 */
+	public BinaryLogReader(File file) throws IOException
+	{
+		randomAccessFile = new RandomAccessFile(file, "r");
+		channel = randomAccessFile.getChannel();
+
+		try
+		{
+			ByteBuffer fixed = ByteBuffer.allocate(24);
+			readFully(fixed, 0);
+			fixed.flip();
+
+			int headerLength = fixed.getInt(BinaryLogFormat.HEADER_LENGTH_OFFSET);
+
+			ByteBuffer encoded = ByteBuffer.allocate(headerLength);
+			readFully(encoded, 0);
+			encoded.flip();
+
+			header = BinaryLogFormat.decodeHeader(encoded);
+
+			if (header.encoding != BinaryLogFormat.ENCODING_RAW
+					&& header.encoding != BinaryLogFormat.ENCODING_DELTA)
+			{
+				throw new IOException("Unsupported log encoding "
+						+ header.encoding);
+			}
+
+			footer = BinaryLogFormat.readFooter(channel, header.headerLength);
+
+			// Without a footer the records run to the end of the file.
+			recordsEnd = (footer != null) ? footer.offset : channel.size();
+		}
+		catch (IOException e)
+		{
+			close();
+
+			throw e;
+		}
+
+		columnCount = header.schema.getColumnCount();
+		recordSize = header.recordSize;
+
+		recordsStart = header.headerLength;
+
+		values = new float[columnCount];
+
+		readPosition = recordsStart;
+
+		if (header.encoding == BinaryLogFormat.ENCODING_DELTA)
+		{
+			block = new byte[BinaryLogFormat.BLOCK_HEADER_SIZE];
+			lastValues = new int[columnCount];
+
+			buffer = ByteBuffer.allocate(BinaryLogFormat.BLOCK_HEADER_SIZE);
+		}
+		else
+		{
+			// Ignore a partial record at the end of the file.
+			recordsEnd = recordsStart + (recordsEnd - recordsStart)
+					/ recordSize * recordSize;
+
+			buffer = ByteBuffer.allocate(recordSize * RECORDS_PER_READ);
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Get the contents of the log.
+	 *
+	 * @return The schema the log was written with.
+	 */
+	public LogSchema getSchema()
+	{
+		return header.schema;
+	}
+
+	/**
+	 * Get the wall clock time the log was opened.
+	 *
+	 * @return The start time in milliseconds.
+	 */
+	public long getStartTime()
+	{
+		return header.startTime;
+	}
+
+	/**
+	 * Get the number of complete records in the log.
+	 *
+	 * @return The number of records.
+	 * @throws IOException
+	 */
+	public long getRecordCount() throws IOException
+	{
+		if (footer != null)
+		{
+			return footer.recordCount;
+		}
+
+		if (header.encoding == BinaryLogFormat.ENCODING_DELTA)
+		{
+			return countBlockRecords();
+		}
+
+		return (recordsEnd - recordsStart) / recordSize;
+	}
+
+	/**
+	 * Get the number of records that were dropped while the log was written.
+	 *
+	 * @return The number of dropped records or -1 if the log was not closed
+	 *         cleanly.
+	 */
+	public long getDroppedCount()
+	{
+		return (footer != null) ? footer.droppedCount : -1;
+	}
+
+	/**
+	 * Advance to the next record.
+	 *
+	 * @return True if there was another record.
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException
+	{
+		if (pending)
+		{
+			pending = false;
+
+			return true;
+		}
+
+		if (header.encoding == BinaryLogFormat.ENCODING_DELTA)
+		{
+			return nextDelta();
+		}
+
+		if (buffer.remaining() < recordSize)
+		{
+			buffer.compact();
+
+			long toRead = Math.min(buffer.remaining(), recordsEnd
+					- readPosition);
+
+			buffer.limit(buffer.position() + (int) toRead);
+
+			while (buffer.hasRemaining())
+			{
+				int read = channel.read(buffer, readPosition);
+
+				if (read < 0)
+				{
+					break;
+				}
+
+				readPosition += read;
+			}
+
+			buffer.flip();
+
+			if (buffer.remaining() < recordSize)
+			{
+				return false;
+			}
+		}
+
+		timestamp = buffer.getLong();
+
+		for (int i = 0; i < columnCount; i++)
+		{
+			values[i] = buffer.getFloat();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Move to the first record at or after a time stamp. The next call to
+	 * next() returns that record.
+	 *
+	 * @param target
+	 *            The time stamp in nanoseconds.
+	 * @return False if every record is before the time stamp.
+	 * @throws IOException
+	 */
+	public boolean seek(long target) throws IOException
+	{
+		long offset;
+
+		if (footer != null && footer.index.size() > 0)
+		{
+			int entry = footer.index.find(target);
+
+			offset = (entry >= 0) ? footer.index.getOffset(entry)
+					: recordsStart;
+		}
+		else if (header.encoding == BinaryLogFormat.ENCODING_DELTA)
+		{
+			offset = searchBlocks(target);
+		}
+		else
+		{
+			offset = searchRecords(target);
+		}
+
+		readPosition = offset;
+		pending = false;
+
+		if (header.encoding == BinaryLogFormat.ENCODING_DELTA)
+		{
+			blockIndex = 0;
+			blockRecords = 0;
+		}
+		else
+		{
+			buffer.clear();
+			buffer.flip();
+		}
+
+		// Stream forward from the indexed record to the target.
+		while (next())
+		{
+			if (timestamp >= target)
+			{
+				pending = true;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the time stamp of the current record.
+	 *
+	 * @return The time stamp in nanoseconds.
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Get the values of the current record. The array is reused by the next
+	 * call to next().
+	 *
+	 * @return The values, one per column.
+	 */
+	public float[] getValues()
+	{
+		return values;
+	}
+
+	/**
+	 * Close the log.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		randomAccessFile.close();
+	}
+
+	private boolean nextDelta() throws IOException
+	{
+		if (blockIndex == blockRecords && !readBlock())
+		{
+			return false;
+		}
+
+		if (blockIndex == 0)
+		{
+			for (int i = 0; i < columnCount; i++)
+			{
+				lastValues[i] = (int) readVarint();
+				values[i] = lastValues[i] * quantum;
+			}
+		}
+		else
+		{
+			lastDelta += readVarint();
+			timestamp += lastDelta;
+
+			for (int i = 0; i < columnCount; i++)
+			{
+				lastValues[i] += (int) readVarint();
+				values[i] = lastValues[i] * quantum;
+			}
+		}
+
+		blockIndex++;
+
+		return true;
+	}
+
+	/**
+	 * Read the next whole block into memory.
+	 *
+	 * @return False at the end of the log or at a partial block.
+	 */
+	private boolean readBlock() throws IOException
+	{
+		long size = recordsEnd;
+
+		if (readPosition + BinaryLogFormat.BLOCK_HEADER_SIZE > size)
+		{
+			return false;
+		}
+
+		buffer.clear();
+		readFully(buffer, readPosition);
+		buffer.flip();
+
+		int length = buffer.getInt();
+
+		if (length < BinaryLogFormat.BLOCK_HEADER_SIZE
+				|| readPosition + length > size)
+		{
+			return false;
+		}
+
+		blockRecords = buffer.getInt();
+		timestamp = buffer.getLong();
+		quantum = buffer.getFloat();
+
+		if (block.length < length)
+		{
+			block = new byte[length];
+		}
+
+		ByteBuffer target = ByteBuffer.wrap(block, 0, length
+				- BinaryLogFormat.BLOCK_HEADER_SIZE);
+
+		readFully(target, readPosition + BinaryLogFormat.BLOCK_HEADER_SIZE);
+
+		readPosition += length;
+
+		blockOffset = 0;
+		blockIndex = 0;
+		lastDelta = 0;
+
+		return blockRecords > 0 || readBlock();
+	}
+
+	private long readVarint()
+	{
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+
+		do
+		{
+			b = block[blockOffset++];
+			zigzag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while (b < 0);
+
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	/**
+	 * Binary search fixed width records for the last one at or before a time
+	 * stamp.
+	 *
+	 * @return The file offset of the record.
+	 */
+	private long searchRecords(long target) throws IOException
+	{
+		ByteBuffer field = ByteBuffer.allocate(8);
+
+		long low = 0;
+		long high = (recordsEnd - recordsStart) / recordSize - 1;
+
+		while (low <= high)
+		{
+			long mid = (low + high) >>> 1;
+
+			field.clear();
+			readFully(field, recordsStart + mid * recordSize);
+
+			if (field.getLong(0) <= target)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+
+		return recordsStart + Math.max(high, 0) * recordSize;
+	}
+
+	/**
+	 * Walk the block headers for the last block that starts at or before a
+	 * time stamp.
+	 *
+	 * @return The file offset of the block.
+	 */
+	private long searchBlocks(long target) throws IOException
+	{
+		long position = recordsStart;
+		long found = recordsStart;
+
+		ByteBuffer fields = ByteBuffer.allocate(16);
+
+		while (position + BinaryLogFormat.BLOCK_HEADER_SIZE <= recordsEnd)
+		{
+			fields.clear();
+			readFully(fields, position);
+
+			int length = fields.getInt(0);
+
+			if (length < BinaryLogFormat.BLOCK_HEADER_SIZE
+					|| position + length > recordsEnd
+					|| fields.getLong(8) > target)
+			{
+				break;
+			}
+
+			found = position;
+			position += length;
+		}
+
+		return found;
+	}
+
+	/**
+	 * Count the records of the complete blocks by walking the block headers.
+	 */
+	private long countBlockRecords() throws IOException
+	{
+		long size = recordsEnd;
+		long position = recordsStart;
+		long count = 0;
+
+		ByteBuffer fields = ByteBuffer.allocate(8);
+
+		while (position + BinaryLogFormat.BLOCK_HEADER_SIZE <= size)
+		{
+			fields.clear();
+			readFully(fields, position);
+
+			int length = fields.getInt(0);
+
+			if (length < BinaryLogFormat.BLOCK_HEADER_SIZE
+					|| position + length > size)
+			{
+				break;
+			}
+
+			count += fields.getInt(4);
+			position += length;
+		}
+
+		return count;
+	}
+
+	private void readFully(ByteBuffer target, long position)
+			throws IOException
+	{
+		while (target.hasRemaining())
+		{
+			int read = channel.read(target, position);
+
+			if (read < 0)
+			{
+				throw new EOFException();
+			}
+
+			position += read;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes the binary session log described by BinaryLogFormat through a memory
+ * mapped file. The file is mapped one chunk at a time and a new chunk is mapped
+ * whenever the current one fills up, so a record is just a handful of puts into
+ * memory and the kernel takes care of getting the pages to storage. The file is
+ * truncated to the last record and the footer is appended when it is closed.
+ * Every flush appends a checkpoint to the LogJournal so the log can be
+ * recovered if the session never gets to close it.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class BinaryLogWriter implements SessionLogWriter
+{
+	// The size of each mapped region of the file.
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	private boolean open = false;
+
+	private int columnCount;
+	private int recordSize;
+
+	// The file offset of the next record
+	private long position;
+
+	private long recordCount;
+	private long droppedCount;
+
+	// The record and time stamp of the newest index entry
+	private long indexRecord;
+	private long indexTimestamp;
+
+	private LogIndex index = new LogIndex();
+
+	private LogJournal journal = new LogJournal();
+
+	private File file;
+
+	private FileChannel channel;
+
+	private MappedByteBuffer chunk;
+
+	private RandomAccessFile randomAccessFile;
+
+	@Override
+	public synchronized void open(File file, LogSchema schema)
+			throws IOException
+	{
+		this.file = file;
+
+		columnCount = schema.getColumnCount();
+		recordSize = BinaryLogFormat.getRecordSize(columnCount);
+		recordCount = 0;
+		droppedCount = 0;
+
+		index.clear();
+
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		randomAccessFile.setLength(0);
+
+		channel = randomAccessFile.getChannel();
+
+		ByteBuffer header = BinaryLogFormat.encodeHeader(schema,
+				BinaryLogFormat.ENCODING_RAW, System.currentTimeMillis());
+
+		position = header.remaining();
+
+		while (header.hasRemaining())
+		{
+			channel.write(header, header.position());
+		}
+
+		mapChunk();
+
+		journal.open(file);
+
+		open = true;
+	}
+
+	@Override
+	public synchronized void writeRecord(long timestamp, float[] values,
+			int count) throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		if (chunk.remaining() < recordSize)
+		{
+			mapChunk();
+		}
+
+		if (recordCount == 0
+				|| recordCount - indexRecord >= BinaryLogFormat.INDEX_INTERVAL_RECORDS
+				|| timestamp - indexTimestamp >= BinaryLogFormat.INDEX_INTERVAL_NANOS)
+		{
+			index.add(timestamp, position);
+
+			indexRecord = recordCount;
+			indexTimestamp = timestamp;
+		}
+
+		chunk.putLong(timestamp);
+
+		for (int i = 0; i < columnCount; i++)
+		{
+			chunk.putFloat((i < count) ? values[i] : 0);
+		}
+
+		position += recordSize;
+		recordCount++;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException
+	{
+		if (open)
+		{
+			chunk.force();
+
+			journal.checkpoint(position, recordCount, droppedCount, index);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		open = false;
+
+		try
+		{
+			chunk.force();
+			chunk = null;
+
+			// Drop the unused end of the last chunk.
+			channel.truncate(position);
+
+			ByteBuffer footer = BinaryLogFormat.encodeFooter(position,
+					recordCount, droppedCount, index);
+
+			while (footer.hasRemaining())
+			{
+				channel.write(footer, position + footer.position());
+			}
+
+			channel.force(true);
+		}
+		finally
+		{
+			channel = null;
+
+			randomAccessFile.close();
+			randomAccessFile = null;
+		}
+
+		// The log is complete, so the journal is no longer needed.
+		journal.delete();
+	}
+
+	@Override
+	public synchronized void setDroppedCount(long droppedCount)
+	{
+		this.droppedCount = droppedCount;
+	}
+
+	@Override
+	public File getFile()
+	{
+		return file;
+	}
+
+	@Override
+	public synchronized long getLength()
+	{
+		return position;
+	}
+
+	@Override
+	public String getExtension()
+	{
+		return BinaryLogFormat.EXTENSION;
+	}
+
+	/**
+	 * Get the number of records written.
+	 *
+	 * @return The number of records.
+	 */
+	public synchronized long getRecordCount()
+	{
+		return recordCount;
+	}
+
+	/**
+	 * Map the next chunk of the file starting at the current position. Mapping
+	 * past the end of the file grows it.
+	 */
+	private void mapChunk() throws IOException
+	{
+		if (chunk != null)
+		{
+			chunk.force();
+		}
+
+		chunk = channel.map(FileChannel.MapMode.READ_WRITE, position,
+				CHUNK_SIZE);
+	}
+}
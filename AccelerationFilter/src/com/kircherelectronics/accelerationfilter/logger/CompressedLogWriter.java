@@ -0,0 +1,313 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Writes the binary session log with the ENCODING_DELTA block encoding
+ * described by BinaryLogFormat. Records are packed into a reused block buffer
+ * with only integer arithmetic and the block is written to the file when it is
+ * full, so a record costs about as much as a raw binary record while taking a
+ * fraction of the space.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class CompressedLogWriter implements SessionLogWriter
+{
+	// The size of the block buffer.
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private boolean open = false;
+
+	private byte[] block;
+
+	private int columnCount;
+
+	// The number of bytes and records in the current block
+	private int blockLength;
+	private int blockRecords;
+
+	// The most bytes a record can take
+	private int maxRecordSize;
+
+	// The quantized columns of the previous record
+	private int[] lastValues;
+
+	private long lastTimestamp;
+	private long lastDelta;
+
+	private long recordCount;
+	private long droppedCount;
+
+	// The file offset of the next block
+	private long position;
+
+	// The time stamp of the first record of the current block
+	private long blockTimestamp;
+
+	private LogIndex index = new LogIndex();
+
+	private LogJournal journal = new LogJournal();
+
+	private ByteBuffer blockBuffer;
+
+	private File file;
+
+	private FileChannel channel;
+
+	private FileOutputStream fos;
+
+	/**
+	 * Initialize a new CompressedLogWriter.
+	 */
+	public CompressedLogWriter()
+	{
+		block = new byte[BUFFER_SIZE];
+		blockBuffer = ByteBuffer.wrap(block);
+	}
+
+	@Override
+	public synchronized void open(File file, LogSchema schema)
+			throws IOException
+	{
+		this.file = file;
+
+		columnCount = schema.getColumnCount();
+		maxRecordSize = BinaryLogFormat.MAX_VARINT_SIZE * (columnCount + 1);
+
+		lastValues = new int[columnCount];
+
+		blockRecords = 0;
+		recordCount = 0;
+		droppedCount = 0;
+
+		index.clear();
+
+		fos = new FileOutputStream(file);
+		channel = fos.getChannel();
+
+		ByteBuffer header = BinaryLogFormat.encodeHeader(schema,
+				BinaryLogFormat.ENCODING_DELTA, System.currentTimeMillis());
+
+		position = header.remaining();
+
+		while (header.hasRemaining())
+		{
+			channel.write(header);
+		}
+
+		journal.open(file);
+
+		open = true;
+	}
+
+	@Override
+	public synchronized void writeRecord(long timestamp, float[] values,
+			int count) throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		if (blockRecords == BinaryLogFormat.MAX_BLOCK_RECORDS
+				|| block.length - blockLength < maxRecordSize
+				|| timestamp - blockTimestamp >= BinaryLogFormat.INDEX_INTERVAL_NANOS)
+		{
+			writeBlock();
+		}
+
+		if (blockRecords == 0)
+		{
+			// The first record of a block is stored whole and indexed.
+			index.add(timestamp, position);
+
+			blockTimestamp = timestamp;
+
+			blockBuffer.putLong(8, timestamp);
+			blockBuffer.putFloat(16, BinaryLogFormat.QUANTUM);
+
+			blockLength = BinaryLogFormat.BLOCK_HEADER_SIZE;
+
+			lastDelta = 0;
+
+			for (int i = 0; i < columnCount; i++)
+			{
+				lastValues[i] = quantize(values, i, count);
+
+				blockLength = BinaryLogFormat.putVarint(block, blockLength,
+						lastValues[i]);
+			}
+		}
+		else
+		{
+			long delta = timestamp - lastTimestamp;
+
+			blockLength = BinaryLogFormat.putVarint(block, blockLength, delta
+					- lastDelta);
+
+			lastDelta = delta;
+
+			for (int i = 0; i < columnCount; i++)
+			{
+				int value = quantize(values, i, count);
+
+				blockLength = BinaryLogFormat.putVarint(block, blockLength,
+						(long) value - lastValues[i]);
+
+				lastValues[i] = value;
+			}
+		}
+
+		lastTimestamp = timestamp;
+
+		blockRecords++;
+		recordCount++;
+	}
+
+	/**
+	 * Write the current block, sync the file to storage and checkpoint the
+	 * journal. The next record starts a new block, so the log stays decodable
+	 * up to the last flush.
+	 */
+	@Override
+	public synchronized void flush() throws IOException
+	{
+		if (open)
+		{
+			writeBlock();
+
+			channel.force(false);
+
+			journal.checkpoint(position, recordCount, droppedCount, index);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		try
+		{
+			writeBlock();
+
+			ByteBuffer footer = BinaryLogFormat.encodeFooter(position,
+					recordCount, droppedCount, index);
+
+			while (footer.hasRemaining())
+			{
+				channel.write(footer);
+			}
+
+			channel.force(true);
+		}
+		finally
+		{
+			open = false;
+
+			channel = null;
+
+			fos.close();
+			fos = null;
+		}
+
+		// The log is complete, so the journal is no longer needed.
+		journal.delete();
+	}
+
+	@Override
+	public synchronized void setDroppedCount(long droppedCount)
+	{
+		this.droppedCount = droppedCount;
+	}
+
+	@Override
+	public File getFile()
+	{
+		return file;
+	}
+
+	@Override
+	public synchronized long getLength()
+	{
+		return position + blockLength;
+	}
+
+	@Override
+	public String getExtension()
+	{
+		return BinaryLogFormat.EXTENSION;
+	}
+
+	/**
+	 * Get the number of records written.
+	 *
+	 * @return The number of records.
+	 */
+	public synchronized long getRecordCount()
+	{
+		return recordCount;
+	}
+
+	private void writeBlock() throws IOException
+	{
+		if (blockRecords == 0)
+		{
+			return;
+		}
+
+		blockBuffer.putInt(0, blockLength);
+		blockBuffer.putInt(4, blockRecords);
+
+		blockBuffer.position(0);
+		blockBuffer.limit(blockLength);
+
+		while (blockBuffer.hasRemaining())
+		{
+			channel.write(blockBuffer);
+		}
+
+		blockBuffer.clear();
+
+		position += blockLength;
+
+		blockLength = 0;
+		blockRecords = 0;
+	}
+
+	private static int quantize(float[] values, int index, int count)
+	{
+		if (index >= count)
+		{
+			return 0;
+		}
+
+		return Math.round(values[index] / BinaryLogFormat.QUANTUM);
+	}
+}
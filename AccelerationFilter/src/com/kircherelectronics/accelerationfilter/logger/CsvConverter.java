@@ -0,0 +1,116 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Converts binary session logs into the same .csv layout the CsvLogWriter
+ * produces.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class CsvConverter
+{
+	/**
+	 * Convert a binary session log into a .csv file next to it.
+	 *
+	 * @param binaryFile
+	 *            The binary session log.
+	 * @return The .csv file.
+	 * @throws IOException
+	 */
+	public static File convert(File binaryFile) throws IOException
+	{
+		File csvFile = getCsvFile(binaryFile);
+
+		convert(binaryFile, csvFile);
+
+		return csvFile;
+	}
+
+	/**
+	 * Convert a binary session log into a .csv file.
+	 *
+	 * @param binaryFile
+	 *            The binary session log.
+	 * @param csvFile
+	 *            The .csv file to write.
+	 * @throws IOException
+	 */
+	public static void convert(File binaryFile, File csvFile)
+			throws IOException
+	{
+		BinaryLogReader reader = new BinaryLogReader(binaryFile);
+
+		try
+		{
+			CsvLogWriter writer = new CsvLogWriter();
+
+			writer.open(csvFile, reader.getSchema());
+
+			try
+			{
+				int count = reader.getSchema().getColumnCount();
+
+				while (reader.next())
+				{
+					writer.writeRecord(reader.getTimestamp(),
+							reader.getValues(), count);
+				}
+
+				if (reader.getDroppedCount() >= 0)
+				{
+					writer.setDroppedCount(reader.getDroppedCount());
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Get the .csv file a binary session log converts to.
+	 *
+	 * @param binaryFile
+	 *            The binary session log.
+	 * @return The .csv file.
+	 */
+	public static File getCsvFile(File binaryFile)
+	{
+		String name = binaryFile.getName();
+		int dot = name.lastIndexOf('.');
+
+		if (dot > 0)
+		{
+			name = name.substring(0, dot);
+		}
+
+		return new File(binaryFile.getParentFile(), name
+				+ LogFiles.CSV_EXTENSION);
+	}
+}
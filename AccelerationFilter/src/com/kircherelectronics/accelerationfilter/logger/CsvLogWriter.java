@@ -0,0 +1,303 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Streams log records to a .csv file as they are produced. Each row is
+ * formatted with AsciiNumberFormat straight into a fixed size byte buffer that
+ * is written to the file whenever it fills up, so writing a row does not
+ * allocate, memory use is bounded and the cost of a row does not depend on how
+ * long the session has been running.
+ *
+ * Rows are written in the same layout the application has always used: a
+ * generation counter, the seconds since the first record and then one column
+ * per value, each followed by a comma. Values are written with up to five
+ * decimals. If a dropped count was set, the last row holds it.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class CsvLogWriter implements SessionLogWriter
+{
+	// The size of the write buffer.
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
+	private static final byte[] LINE_SEPARATOR_BYTES = LINE_SEPARATOR
+			.getBytes();
+
+	private boolean open = false;
+
+	private int generation = 0;
+
+	// Written as the last row when it has been set
+	private long droppedCount = -1;
+
+	private long startTimestamp = 0;
+
+	// The number of bytes written to the file
+	private long length = 0;
+
+	private ByteBuffer buffer;
+
+	private AsciiNumberFormat secondsFormat;
+	private AsciiNumberFormat valueFormat;
+
+	private File file;
+
+	private FileChannel channel;
+
+	private FileOutputStream fos;
+
+	// Reused to format the header and footer rows
+	private StringBuffer row;
+
+	private LogJournal journal = new LogJournal();
+
+	/**
+	 * Initialize a new CsvLogWriter.
+	 */
+	public CsvLogWriter()
+	{
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		row = new StringBuffer(256);
+
+		secondsFormat = new AsciiNumberFormat(2, true);
+		// Five decimals stay within float precision for sensor values.
+		valueFormat = new AsciiNumberFormat(5, true);
+	}
+
+	@Override
+	public synchronized void open(File file, LogSchema schema)
+			throws IOException
+	{
+		String[] columns = schema.getColumns();
+
+		this.file = file;
+
+		fos = new FileOutputStream(file);
+		channel = fos.getChannel();
+
+		buffer.clear();
+		generation = 0;
+		startTimestamp = 0;
+		length = 0;
+		droppedCount = -1;
+
+		row.setLength(0);
+		row.append("Generation,Timestamp,");
+
+		for (int i = 0; i < columns.length; i++)
+		{
+			row.append(columns[i]);
+			row.append(',');
+		}
+
+		row.append(LINE_SEPARATOR);
+
+		journal.open(file);
+
+		open = true;
+
+		writeRow();
+	}
+
+	@Override
+	public synchronized void writeRecord(long timestamp, float[] values,
+			int count) throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		if (generation == 0)
+		{
+			startTimestamp = timestamp;
+		}
+
+		int length = (count + 2) * (AsciiNumberFormat.MAX_LENGTH + 1)
+				+ LINE_SEPARATOR_BYTES.length;
+
+		if (buffer.remaining() < length)
+		{
+			writeBuffer();
+		}
+
+		byte[] array = buffer.array();
+		int position = buffer.arrayOffset() + buffer.position();
+
+		position = AsciiNumberFormat.formatLong(generation++, array, position);
+		array[position++] = ',';
+
+		position = secondsFormat.format((timestamp - startTimestamp)
+				/ 1000000000.0, array, position);
+		array[position++] = ',';
+
+		for (int i = 0; i < count; i++)
+		{
+			position = valueFormat.format(values[i], array, position);
+			array[position++] = ',';
+		}
+
+		for (int i = 0; i < LINE_SEPARATOR_BYTES.length; i++)
+		{
+			array[position++] = LINE_SEPARATOR_BYTES[i];
+		}
+
+		buffer.position(position - buffer.arrayOffset());
+	}
+
+	@Override
+	public synchronized void flush() throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		writeBuffer();
+
+		channel.force(false);
+
+		journal.checkpoint(channel.position(), generation,
+				Math.max(droppedCount, 0), null);
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		try
+		{
+			if (droppedCount >= 0)
+			{
+				row.setLength(0);
+				row.append("Dropped,");
+				row.append(droppedCount);
+				row.append(',');
+				row.append(LINE_SEPARATOR);
+
+				writeRow();
+			}
+
+			flush();
+		}
+		finally
+		{
+			open = false;
+
+			channel = null;
+
+			fos.close();
+			fos = null;
+		}
+
+		// The log is complete, so the journal is no longer needed.
+		journal.delete();
+	}
+
+	@Override
+	public synchronized void setDroppedCount(long droppedCount)
+	{
+		this.droppedCount = droppedCount;
+	}
+
+	@Override
+	public File getFile()
+	{
+		return file;
+	}
+
+	@Override
+	public synchronized long getLength()
+	{
+		return length + buffer.position();
+	}
+
+	@Override
+	public String getExtension()
+	{
+		return LogFiles.CSV_EXTENSION;
+	}
+
+	/**
+	 * Get the number of records written.
+	 *
+	 * @return The number of records.
+	 */
+	public synchronized int getRecordCount()
+	{
+		return generation;
+	}
+
+	/**
+	 * Write the contents of the write buffer to the file.
+	 */
+	private void writeBuffer() throws IOException
+	{
+		buffer.flip();
+
+		length += buffer.remaining();
+
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Copy the formatted row into the write buffer, flushing the buffer to the
+	 * file first if the row does not fit.
+	 */
+	private void writeRow() throws IOException
+	{
+		int length = row.length();
+
+		if (buffer.remaining() < length)
+		{
+			writeBuffer();
+		}
+
+		byte[] array = buffer.array();
+		int position = buffer.arrayOffset() + buffer.position();
+
+		// The rows are plain ASCII, so each char maps to one byte.
+		for (int i = 0; i < length; i++)
+		{
+			array[position + i] = (byte) row.charAt(i);
+		}
+
+		buffer.position(buffer.position() + length);
+	}
+}
@@ -0,0 +1,86 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.util.Calendar;
+
+import android.os.Environment;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Names and locates the log files on external storage.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogFiles
+{
+	public final static String CSV_EXTENSION = ".csv";
+
+	/**
+	 * Get the directory the logs are written to, creating it if required.
+	 *
+	 * @return The log directory.
+	 */
+	public static File getLogDirectory()
+	{
+		File dir = new File(Environment.getExternalStorageDirectory()
+				+ File.separator + "AccelerationFilter" + File.separator
+				+ "Logs");
+		if (!dir.exists())
+		{
+			dir.mkdirs();
+		}
+
+		return dir;
+	}
+
+	/**
+	 * Get a new log file named after the current time.
+	 *
+	 * @param extension
+	 *            The file extension, including the dot.
+	 * @return The log file.
+	 */
+	public static File createLogFile(String extension)
+	{
+		return createLogFile("AccelerationFilter", extension);
+	}
+
+	/**
+	 * Get a new log file named after the current time.
+	 *
+	 * @param prefix
+	 *            The start of the file name.
+	 * @param extension
+	 *            The file extension, including the dot.
+	 * @return The log file.
+	 */
+	public static File createLogFile(String prefix, String extension)
+	{
+		Calendar c = Calendar.getInstance();
+		String filename = prefix + "-" + c.get(Calendar.YEAR) + "-"
+				+ (c.get(Calendar.MONTH) + 1) + "-"
+				+ c.get(Calendar.DAY_OF_MONTH) + "-" + c.get(Calendar.HOUR)
+				+ "-" + c.get(Calendar.MINUTE) + "-" + c.get(Calendar.SECOND)
+				+ extension;
+
+		return new File(getLogDirectory(), filename);
+	}
+}
@@ -0,0 +1,208 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A sparse time index of a binary session log. Each entry maps the time stamp
+ * of a record to the file offset a reader can start decoding at. Entries are
+ * added in time stamp order, so a lookup is a binary search.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogIndex
+{
+	// The size of an encoded entry
+	public final static int ENTRY_SIZE = 16;
+
+	private int size = 0;
+
+	private long[] timestamps;
+	private long[] offsets;
+
+	/**
+	 * Initialize a new LogIndex.
+	 */
+	public LogIndex()
+	{
+		this(64);
+	}
+
+	/**
+	 * Initialize a new LogIndex.
+	 *
+	 * @param capacity
+	 *            The number of entries to allocate room for.
+	 */
+	public LogIndex(int capacity)
+	{
+		timestamps = new long[Math.max(capacity, 1)];
+		offsets = new long[timestamps.length];
+	}
+
+	/**
+	 * Add an entry.
+	 *
+	 * @param timestamp
+	 *            The time stamp of the record in nanoseconds.
+	 * @param offset
+	 *            The file offset to start decoding at.
+	 */
+	public void add(long timestamp, long offset)
+	{
+		if (size == timestamps.length)
+		{
+			long[] grownTimestamps = new long[size * 2];
+			long[] grownOffsets = new long[size * 2];
+
+			System.arraycopy(timestamps, 0, grownTimestamps, 0, size);
+			System.arraycopy(offsets, 0, grownOffsets, 0, size);
+
+			timestamps = grownTimestamps;
+			offsets = grownOffsets;
+		}
+
+		timestamps[size] = timestamp;
+		offsets[size] = offset;
+
+		size++;
+	}
+
+	/**
+	 * Remove all of the entries.
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Get the number of entries.
+	 *
+	 * @return The number of entries.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the time stamp of an entry.
+	 *
+	 * @param entry
+	 *            The entry.
+	 * @return The time stamp in nanoseconds.
+	 */
+	public long getTimestamp(int entry)
+	{
+		return timestamps[entry];
+	}
+
+	/**
+	 * Get the file offset of an entry.
+	 *
+	 * @param entry
+	 *            The entry.
+	 * @return The file offset.
+	 */
+	public long getOffset(int entry)
+	{
+		return offsets[entry];
+	}
+
+	/**
+	 * Find the last entry at or before a time stamp.
+	 *
+	 * @param timestamp
+	 *            The time stamp in nanoseconds.
+	 * @return The entry or -1 if the time stamp is before the first entry.
+	 */
+	public int find(long timestamp)
+	{
+		int low = 0;
+		int high = size - 1;
+
+		while (low <= high)
+		{
+			int mid = (low + high) >>> 1;
+
+			if (timestamps[mid] <= timestamp)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+
+		return high;
+	}
+
+	/**
+	 * Get the size of the encoded index.
+	 *
+	 * @return The size in bytes.
+	 */
+	public int getEncodedSize()
+	{
+		return 4 + size * ENTRY_SIZE;
+	}
+
+	/**
+	 * Encode the index as an entry count followed by each time stamp and
+	 * offset.
+	 *
+	 * @param buffer
+	 *            The buffer to write to.
+	 */
+	public void encode(ByteBuffer buffer)
+	{
+		buffer.putInt(size);
+
+		for (int i = 0; i < size; i++)
+		{
+			buffer.putLong(timestamps[i]);
+			buffer.putLong(offsets[i]);
+		}
+	}
+
+	/**
+	 * Decode an index written by encode().
+	 *
+	 * @param buffer
+	 *            The buffer to read from.
+	 * @return The index.
+	 */
+	public static LogIndex decode(ByteBuffer buffer)
+	{
+		int count = buffer.getInt();
+
+		LogIndex index = new LogIndex(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			index.add(buffer.getLong(), buffer.getLong());
+		}
+
+		return index;
+	}
+}
@@ -0,0 +1,315 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An append-only journal kept next to a session log while it is open. Each
+ * time the log is flushed to storage a checkpoint is appended that records
+ * where the valid data ends, the record and dropped counts and the index
+ * entries added since the previous checkpoint:
+ *
+ * <pre>
+ * int    magic            'AFCK'
+ * long   valid end        file offset the log is complete up to
+ * long   record count
+ * long   dropped count
+ * int    entry count      followed by each new index entry
+ * long   time stamp       index entry
+ * long   offset           index entry
+ * int    checksum         CRC32 of the checkpoint up to here
+ * </pre>
+ *
+ * The journal is deleted when the log is closed cleanly, so a journal that
+ * still exists marks a session that was cut short. LogRecovery uses the last
+ * complete checkpoint to finalize the log without reading it from the start.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogJournal
+{
+	public final static String EXTENSION = ".jnl";
+
+	private final static int MAGIC = 0x4146434B;
+
+	// The size of a checkpoint without index entries
+	private final static int CHECKPOINT_SIZE = 4 + 8 + 8 + 8 + 4 + 4;
+
+	// The number of index entries already in the journal
+	private int journaledEntries;
+
+	private ByteBuffer buffer;
+
+	private CRC32 crc;
+
+	private File file;
+
+	private FileChannel channel;
+
+	private FileOutputStream fos;
+
+	/**
+	 * Initialize a new LogJournal.
+	 */
+	public LogJournal()
+	{
+		buffer = ByteBuffer.allocate(CHECKPOINT_SIZE + 64
+				* LogIndex.ENTRY_SIZE);
+		crc = new CRC32();
+	}
+
+	/**
+	 * Get the journal of a log.
+	 *
+	 * @param log
+	 *            The log file.
+	 * @return The journal file.
+	 */
+	public static File getJournalFile(File log)
+	{
+		return new File(log.getParentFile(), log.getName() + EXTENSION);
+	}
+
+	/**
+	 * Get the log a journal belongs to.
+	 *
+	 * @param journal
+	 *            The journal file.
+	 * @return The log file.
+	 */
+	public static File getLogFile(File journal)
+	{
+		String name = journal.getName();
+
+		return new File(journal.getParentFile(), name.substring(0,
+				name.length() - EXTENSION.length()));
+	}
+
+	/**
+	 * Start the journal of a log.
+	 *
+	 * @param log
+	 *            The log file.
+	 * @throws IOException
+	 */
+	public void open(File log) throws IOException
+	{
+		file = getJournalFile(log);
+
+		fos = new FileOutputStream(file);
+		channel = fos.getChannel();
+
+		journaledEntries = 0;
+	}
+
+	/**
+	 * Append a checkpoint and sync the journal. The log must already be synced
+	 * up to the valid end.
+	 *
+	 * @param validEnd
+	 *            The file offset the log is complete up to.
+	 * @param recordCount
+	 *            The number of records up to the valid end.
+	 * @param droppedCount
+	 *            The number of records dropped so far.
+	 * @param index
+	 *            The time index of the log or null.
+	 * @throws IOException
+	 */
+	public void checkpoint(long validEnd, long recordCount, long droppedCount,
+			LogIndex index) throws IOException
+	{
+		if (channel == null)
+		{
+			return;
+		}
+
+		int entries = (index != null) ? index.size() - journaledEntries : 0;
+
+		int length = CHECKPOINT_SIZE + entries * LogIndex.ENTRY_SIZE;
+
+		if (buffer.capacity() < length)
+		{
+			buffer = ByteBuffer.allocate(length * 2);
+		}
+
+		buffer.clear();
+
+		buffer.putInt(MAGIC);
+		buffer.putLong(validEnd);
+		buffer.putLong(recordCount);
+		buffer.putLong(droppedCount);
+		buffer.putInt(entries);
+
+		for (int i = 0; i < entries; i++)
+		{
+			buffer.putLong(index.getTimestamp(journaledEntries + i));
+			buffer.putLong(index.getOffset(journaledEntries + i));
+		}
+
+		crc.reset();
+		crc.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+
+		buffer.putInt((int) crc.getValue());
+
+		buffer.flip();
+
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+
+		channel.force(false);
+
+		journaledEntries += entries;
+	}
+
+	/**
+	 * Close and delete the journal once the log has been closed cleanly.
+	 *
+	 * @throws IOException
+	 */
+	public void delete() throws IOException
+	{
+		if (channel == null)
+		{
+			return;
+		}
+
+		channel = null;
+
+		fos.close();
+		fos = null;
+
+		file.delete();
+	}
+
+	/**
+	 * Read the last complete checkpoint of a journal. A checkpoint that was
+	 * cut short or is damaged ends the journal.
+	 *
+	 * @param journal
+	 *            The journal file.
+	 * @return The state of the log at the last checkpoint or null if there is
+	 *         no complete checkpoint.
+	 * @throws IOException
+	 */
+	public static Checkpoint read(File journal) throws IOException
+	{
+		FileInputStream fis = new FileInputStream(journal);
+
+		try
+		{
+			FileChannel channel = fis.getChannel();
+
+			ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+
+			while (contents.hasRemaining())
+			{
+				if (channel.read(contents) < 0)
+				{
+					break;
+				}
+			}
+
+			contents.flip();
+
+			CRC32 crc = new CRC32();
+
+			Checkpoint last = null;
+			LogIndex index = new LogIndex();
+
+			while (contents.remaining() >= CHECKPOINT_SIZE)
+			{
+				int start = contents.position();
+
+				if (contents.getInt(start) != MAGIC)
+				{
+					break;
+				}
+
+				int entries = contents.getInt(start + 28);
+
+				if (entries < 0
+						|| entries > (contents.remaining() - CHECKPOINT_SIZE)
+								/ LogIndex.ENTRY_SIZE)
+				{
+					break;
+				}
+
+				int length = CHECKPOINT_SIZE + entries * LogIndex.ENTRY_SIZE;
+
+				crc.reset();
+				crc.update(contents.array(), contents.arrayOffset() + start,
+						length - 4);
+
+				if (contents.getInt(start + length - 4) != (int) crc.getValue())
+				{
+					break;
+				}
+
+				contents.position(start + 4);
+
+				Checkpoint checkpoint = new Checkpoint();
+
+				checkpoint.validEnd = contents.getLong();
+				checkpoint.recordCount = contents.getLong();
+				checkpoint.droppedCount = contents.getLong();
+
+				contents.getInt();
+
+				for (int i = 0; i < entries; i++)
+				{
+					index.add(contents.getLong(), contents.getLong());
+				}
+
+				contents.getInt();
+
+				checkpoint.index = index;
+
+				last = checkpoint;
+			}
+
+			return last;
+		}
+		finally
+		{
+			fis.close();
+		}
+	}
+
+	/**
+	 * The state of a log at a checkpoint.
+	 */
+	public static class Checkpoint
+	{
+		public long validEnd;
+		public long recordCount;
+		public long droppedCount;
+		public LogIndex index;
+	}
+}
@@ -0,0 +1,404 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.util.Log;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Finalizes session logs that were cut short, for example when the process was
+ * killed while logging. A log that still has a LogJournal next to it was never
+ * closed. The last checkpoint of the journal says how much of the log is known
+ * to be complete, so only the data written after it is read:
+ *
+ * <ul>
+ * <li>A binary log keeps the complete records or blocks after the checkpoint,
+ * is truncated after the last one and gets its footer and time index.</li>
+ * <li>A .csv log is truncated after its last complete row.</li>
+ * </ul>
+ *
+ * A log without a single complete record is deleted instead, such as the next
+ * segment a SegmentedLogWriter opens ahead of time.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogRecovery
+{
+	private static final String tag = LogRecovery.class.getSimpleName();
+
+	// The number of records read at once while scanning a raw log.
+	private static final int RECORDS_PER_READ = 1024;
+
+	/**
+	 * Finalize every unfinished log in a directory.
+	 *
+	 * @param directory
+	 *            The log directory.
+	 * @return The number of logs that were recovered.
+	 */
+	public static int recoverAll(File directory)
+	{
+		int recovered = 0;
+
+		File[] files = directory.listFiles();
+
+		for (int i = 0; files != null && i < files.length; i++)
+		{
+			if (!files[i].getName().endsWith(LogJournal.EXTENSION))
+			{
+				continue;
+			}
+
+			try
+			{
+				if (recover(LogJournal.getLogFile(files[i])))
+				{
+					recovered++;
+				}
+			}
+			catch (IOException e)
+			{
+				Log.e(tag, "Could not recover " + files[i], e);
+			}
+		}
+
+		return recovered;
+	}
+
+	/**
+	 * Finalize a log if it was not closed cleanly.
+	 *
+	 * @param log
+	 *            The log file.
+	 * @return True if the log was finalized, false if it did not need to be or
+	 *         had no records and was deleted.
+	 * @throws IOException
+	 */
+	public static boolean recover(File log) throws IOException
+	{
+		File journal = LogJournal.getJournalFile(log);
+
+		if (!journal.exists())
+		{
+			return false;
+		}
+
+		if (!log.exists())
+		{
+			journal.delete();
+
+			return false;
+		}
+
+		LogJournal.Checkpoint checkpoint = LogJournal.read(journal);
+
+		long recordCount;
+
+		if (log.getName().endsWith(LogFiles.CSV_EXTENSION))
+		{
+			recordCount = recoverCsv(log, checkpoint);
+		}
+		else
+		{
+			recordCount = recoverBinary(log, checkpoint);
+		}
+
+		if (recordCount == 0)
+		{
+			log.delete();
+		}
+
+		journal.delete();
+
+		return recordCount > 0;
+	}
+
+	/**
+	 * Truncate a .csv log after its last complete row.
+	 *
+	 * @return The number of rows kept, not counting the header.
+	 */
+	private static long recoverCsv(File log, LogJournal.Checkpoint checkpoint)
+			throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(log, "rw");
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			long start = (checkpoint != null) ? checkpoint.validEnd : 0;
+			long end = start;
+
+			// Without a checkpoint the first row is the header.
+			long rows = (checkpoint != null) ? checkpoint.recordCount : -1;
+
+			// Find the end of the last complete row after the checkpoint.
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+			long position = start;
+
+			while (true)
+			{
+				buffer.clear();
+
+				int read = channel.read(buffer, position);
+
+				if (read <= 0)
+				{
+					break;
+				}
+
+				for (int i = 0; i < read; i++)
+				{
+					if (buffer.get(i) == '\n')
+					{
+						end = position + i + 1;
+						rows++;
+					}
+				}
+
+				position += read;
+			}
+
+			channel.truncate(end);
+			channel.force(true);
+
+			return Math.max(rows, 0);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Truncate a binary log after its last complete record and add the footer.
+	 *
+	 * @return The number of records kept.
+	 */
+	private static long recoverBinary(File log,
+			LogJournal.Checkpoint checkpoint) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(log, "rw");
+
+		try
+		{
+			FileChannel channel = file.getChannel();
+
+			ByteBuffer fixed = ByteBuffer.allocate(24);
+			readFully(channel, fixed, 0);
+
+			int headerLength = fixed.getInt(BinaryLogFormat.HEADER_LENGTH_OFFSET);
+
+			ByteBuffer encoded = ByteBuffer.allocate(headerLength);
+			readFully(channel, encoded, 0);
+			encoded.flip();
+
+			BinaryLogFormat.Header header = BinaryLogFormat
+					.decodeHeader(encoded);
+
+			BinaryLogFormat.Footer closed = BinaryLogFormat.readFooter(
+					channel, headerLength);
+
+			if (closed != null)
+			{
+				// Closed after all, only the journal was left behind.
+				return closed.recordCount;
+			}
+
+			Tail tail = new Tail();
+
+			if (checkpoint != null)
+			{
+				tail.end = checkpoint.validEnd;
+				tail.recordCount = checkpoint.recordCount;
+				tail.droppedCount = checkpoint.droppedCount;
+				tail.index = checkpoint.index;
+			}
+			else
+			{
+				tail.end = headerLength;
+				tail.index = new LogIndex();
+			}
+
+			if (header.encoding == BinaryLogFormat.ENCODING_DELTA)
+			{
+				scanBlocks(channel, tail);
+			}
+			else
+			{
+				scanRecords(channel, header.recordSize, headerLength, tail);
+			}
+
+			channel.truncate(tail.end);
+
+			ByteBuffer footer = BinaryLogFormat.encodeFooter(tail.end,
+					tail.recordCount, tail.droppedCount, tail.index);
+
+			while (footer.hasRemaining())
+			{
+				channel.write(footer, tail.end + footer.position());
+			}
+
+			channel.force(true);
+
+			return tail.recordCount;
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Keep the complete blocks after the checkpoint.
+	 */
+	private static void scanBlocks(FileChannel channel, Tail tail)
+			throws IOException
+	{
+		long size = channel.size();
+
+		ByteBuffer fields = ByteBuffer.allocate(16);
+
+		while (tail.end + BinaryLogFormat.BLOCK_HEADER_SIZE <= size)
+		{
+			fields.clear();
+			readFully(channel, fields, tail.end);
+
+			int length = fields.getInt(0);
+			int count = fields.getInt(4);
+
+			if (length < BinaryLogFormat.BLOCK_HEADER_SIZE
+					|| tail.end + length > size || count <= 0
+					|| count > BinaryLogFormat.MAX_BLOCK_RECORDS)
+			{
+				break;
+			}
+
+			tail.index.add(fields.getLong(8), tail.end);
+
+			tail.recordCount += count;
+			tail.end += length;
+		}
+	}
+
+	/**
+	 * Keep the records after the checkpoint up to the first one that is not in
+	 * time stamp order. A memory mapped log is padded with zeros past its last
+	 * record, which stops the scan.
+	 */
+	private static void scanRecords(FileChannel channel, int recordSize,
+			int headerLength, Tail tail) throws IOException
+	{
+		long size = channel.size();
+
+		long lastTimestamp = Long.MIN_VALUE;
+		long indexTimestamp = Long.MIN_VALUE;
+		long indexRecord = tail.recordCount;
+
+		if (tail.index.size() > 0)
+		{
+			indexTimestamp = tail.index.getTimestamp(tail.index.size() - 1);
+		}
+
+		if (tail.end > headerLength)
+		{
+			ByteBuffer previous = ByteBuffer.allocate(8);
+			readFully(channel, previous, tail.end - recordSize);
+
+			lastTimestamp = previous.getLong(0);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(recordSize * RECORDS_PER_READ);
+
+		long position = tail.end;
+
+		while (position + recordSize <= size)
+		{
+			buffer.clear();
+
+			long toRead = Math.min(buffer.capacity(), (size - position)
+					/ recordSize * recordSize);
+
+			buffer.limit((int) toRead);
+			readFully(channel, buffer, position);
+
+			for (int i = 0; i < toRead; i += recordSize)
+			{
+				long timestamp = buffer.getLong(i);
+
+				if (timestamp == 0 || timestamp < lastTimestamp)
+				{
+					return;
+				}
+
+				if (tail.index.size() == 0
+						|| tail.recordCount - indexRecord >= BinaryLogFormat.INDEX_INTERVAL_RECORDS
+						|| timestamp - indexTimestamp >= BinaryLogFormat.INDEX_INTERVAL_NANOS)
+				{
+					tail.index.add(timestamp, tail.end);
+
+					indexRecord = tail.recordCount;
+					indexTimestamp = timestamp;
+				}
+
+				lastTimestamp = timestamp;
+
+				tail.recordCount++;
+				tail.end += recordSize;
+			}
+
+			position += toRead;
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer target,
+			long position) throws IOException
+	{
+		while (target.hasRemaining())
+		{
+			int read = channel.read(target, position);
+
+			if (read < 0)
+			{
+				throw new IOException("Unexpected end of log");
+			}
+
+			position += read;
+		}
+	}
+
+	/**
+	 * The state of a log as it is scanned.
+	 */
+	private static class Tail
+	{
+		long end;
+		long recordCount;
+		long droppedCount;
+		LogIndex index;
+	}
+}
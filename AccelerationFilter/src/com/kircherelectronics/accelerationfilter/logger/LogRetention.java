@@ -0,0 +1,145 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Keeps the log directory within a storage budget. Logs older than the age
+ * limit are deleted and then the oldest logs are deleted until the directory
+ * fits in the size limit. Logs that still have a LogJournal are being written
+ * or waiting to be recovered, so they are never deleted and their size does
+ * count against the budget.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogRetention
+{
+	private final File directory;
+
+	private final long maxBytes;
+	private final long maxAge;
+
+	/**
+	 * Initialize a new LogRetention.
+	 *
+	 * @param directory
+	 *            The log directory.
+	 * @param maxBytes
+	 *            The most bytes the logs can take or 0 for no limit.
+	 * @param maxAge
+	 *            The age in milliseconds after which a log is deleted or 0
+	 *            for no limit.
+	 */
+	public LogRetention(File directory, long maxBytes, long maxAge)
+	{
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Delete logs, oldest first, until the directory is within the budget.
+	 *
+	 * @return The number of files deleted.
+	 */
+	public int enforce()
+	{
+		// Only one thread at a time walks the directory.
+		synchronized (LogRetention.class)
+		{
+			if (maxBytes <= 0 && maxAge <= 0)
+			{
+				return 0;
+			}
+
+			File[] files = directory.listFiles();
+
+			if (files == null)
+			{
+				return 0;
+			}
+
+			Arrays.sort(files, new Comparator<File>()
+			{
+				@Override
+				public int compare(File lhs, File rhs)
+				{
+					long l = lhs.lastModified();
+					long r = rhs.lastModified();
+
+					return (l < r) ? -1 : ((l == r) ? 0 : 1);
+				}
+			});
+
+			long total = 0;
+
+			for (int i = 0; i < files.length; i++)
+			{
+				total += files[i].length();
+			}
+
+			long now = System.currentTimeMillis();
+
+			int deleted = 0;
+
+			for (int i = 0; i < files.length; i++)
+			{
+				File file = files[i];
+
+				boolean tooOld = maxAge > 0
+						&& now - file.lastModified() > maxAge;
+				boolean tooBig = maxBytes > 0 && total > maxBytes;
+
+				if (!tooOld && !tooBig)
+				{
+					break;
+				}
+
+				if (!isDeletable(file))
+				{
+					continue;
+				}
+
+				long length = file.length();
+
+				if (file.delete())
+				{
+					total -= length;
+					deleted++;
+				}
+			}
+
+			return deleted;
+		}
+	}
+
+	private static boolean isDeletable(File file)
+	{
+		if (!file.isFile() || file.getName().endsWith(LogJournal.EXTENSION))
+		{
+			return false;
+		}
+
+		return !LogJournal.getJournalFile(file).exists();
+	}
+}
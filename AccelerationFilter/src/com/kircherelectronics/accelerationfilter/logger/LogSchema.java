@@ -0,0 +1,76 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Describes the contents of a session log: the pipeline stages that were
+ * active when the session started and the title of each value column.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LogSchema
+{
+	private String[] stages;
+	private String[] columns;
+
+	/**
+	 * Initialize a new LogSchema.
+	 *
+	 * @param stages
+	 *            A description of each active pipeline stage.
+	 * @param columns
+	 *            The title of each value column.
+	 */
+	public LogSchema(String[] stages, String[] columns)
+	{
+		this.stages = stages;
+		this.columns = columns;
+	}
+
+	/**
+	 * Get the pipeline stages.
+	 *
+	 * @return A description of each active pipeline stage.
+	 */
+	public String[] getStages()
+	{
+		return stages;
+	}
+
+	/**
+	 * Get the value columns.
+	 *
+	 * @return The title of each value column.
+	 */
+	public String[] getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Get the number of value columns.
+	 *
+	 * @return The number of value columns.
+	 */
+	public int getColumnCount()
+	{
+		return columns.length;
+	}
+}
@@ -0,0 +1,393 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Splits a session into segment files. When the current segment reaches the
+ * size or duration limit the next record goes to a new segment. Each segment
+ * is a complete log of its own, written by a writer from the WriterFactory.
+ *
+ * The next segment is created and opened on a background thread as soon as the
+ * current one starts, and a full segment is closed on the same thread, so
+ * switching segments is just swapping writers. The LogRetention budget is
+ * enforced on that thread once the next segment is open, so every log that is
+ * being written already has its journal and can not be deleted.
+ *
+ * The first segment uses the file given to open(), the following segments
+ * append -002, -003 and so on to its name.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class SegmentedLogWriter implements SessionLogWriter
+{
+	/**
+	 * Creates the writer of each segment.
+	 */
+	public interface WriterFactory
+	{
+		public SessionLogWriter createWriter();
+
+		/**
+		 * Get the file extension of the writers that are created, so it is
+		 * known before the first segment is opened.
+		 */
+		public String getExtension();
+	}
+
+	private final WriterFactory factory;
+
+	private final long maxLength;
+	private final long maxDuration;
+
+	private final LogRetention retention;
+
+	private boolean open = false;
+
+	// The number of the current segment, starting at 1
+	private int segment;
+
+	private long segmentRecords;
+
+	// The time stamp of the first record of the current segment
+	private long segmentStart;
+
+	private long droppedCount;
+
+	private String baseName;
+	private String extension;
+
+	private File directory;
+
+	private LogSchema schema;
+
+	private SessionLogWriter writer;
+
+	private ArrayList<File> files = new ArrayList<File>();
+
+	// The next segment, opened in the background
+	private SessionLogWriter nextWriter;
+	private IOException prepareFailure;
+
+	// The previous segment, closed in the background
+	private IOException closeFailure;
+
+	// Closes the previous segment and opens the next one
+	private Thread segmentThread;
+
+	/**
+	 * Initialize a new SegmentedLogWriter.
+	 *
+	 * @param factory
+	 *            Creates the writer of each segment.
+	 * @param maxLength
+	 *            The size of a segment in bytes or 0 for no limit.
+	 * @param maxDuration
+	 *            The duration of a segment in nanoseconds or 0 for no limit.
+	 * @param retention
+	 *            The budget of the log directory or null.
+	 */
+	public SegmentedLogWriter(WriterFactory factory, long maxLength,
+			long maxDuration, LogRetention retention)
+	{
+		this.factory = factory;
+		this.maxLength = maxLength;
+		this.maxDuration = maxDuration;
+		this.retention = retention;
+	}
+
+	@Override
+	public synchronized void open(File file, LogSchema schema)
+			throws IOException
+	{
+		this.schema = schema;
+
+		directory = file.getParentFile();
+
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+
+		baseName = (dot > 0) ? name.substring(0, dot) : name;
+		extension = (dot > 0) ? name.substring(dot) : "";
+
+		segment = 1;
+		segmentRecords = 0;
+		droppedCount = 0;
+
+		files.clear();
+
+		writer = factory.createWriter();
+		writer.open(file, schema);
+
+		files.add(file);
+
+		open = true;
+
+		prepareNextSegment(null);
+	}
+
+	@Override
+	public synchronized void writeRecord(long timestamp, float[] values,
+			int count) throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		if (closeFailure != null)
+		{
+			IOException e = closeFailure;
+			closeFailure = null;
+
+			throw e;
+		}
+
+		if (segmentRecords > 0
+				&& ((maxLength > 0 && writer.getLength() >= maxLength) || (maxDuration > 0 && timestamp
+						- segmentStart >= maxDuration)))
+		{
+			nextSegment();
+		}
+
+		if (segmentRecords == 0)
+		{
+			segmentStart = timestamp;
+		}
+
+		writer.writeRecord(timestamp, values, count);
+
+		segmentRecords++;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException
+	{
+		if (open)
+		{
+			writer.flush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (!open)
+		{
+			return;
+		}
+
+		open = false;
+
+		join(segmentThread);
+
+		// The prepared segment was never used.
+		if (nextWriter != null)
+		{
+			File unused = nextWriter.getFile();
+
+			try
+			{
+				nextWriter.close();
+			}
+			finally
+			{
+				nextWriter = null;
+
+				unused.delete();
+			}
+		}
+
+		writer.setDroppedCount(droppedCount);
+		writer.close();
+
+		if (retention != null)
+		{
+			retention.enforce();
+		}
+
+		if (closeFailure != null)
+		{
+			IOException e = closeFailure;
+			closeFailure = null;
+
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized void setDroppedCount(long droppedCount)
+	{
+		this.droppedCount = droppedCount;
+	}
+
+	@Override
+	public synchronized File getFile()
+	{
+		return writer.getFile();
+	}
+
+	@Override
+	public synchronized long getLength()
+	{
+		return writer.getLength();
+	}
+
+	@Override
+	public String getExtension()
+	{
+		return factory.getExtension();
+	}
+
+	/**
+	 * Get the files of the segments written so far.
+	 *
+	 * @return The segment files in order.
+	 */
+	public synchronized File[] getSegmentFiles()
+	{
+		return files.toArray(new File[files.size()]);
+	}
+
+	/**
+	 * Switch to the prepared segment and close the full one in the background.
+	 */
+	private void nextSegment() throws IOException
+	{
+		join(segmentThread);
+
+		if (nextWriter == null)
+		{
+			// Preparing failed, try again now.
+			prepareFailure = null;
+
+			nextWriter = factory.createWriter();
+			nextWriter.open(getSegmentFile(segment + 1), schema);
+		}
+
+		final SessionLogWriter full = writer;
+
+		writer = nextWriter;
+		nextWriter = null;
+
+		segment++;
+		segmentRecords = 0;
+
+		files.add(writer.getFile());
+
+		prepareNextSegment(full);
+	}
+
+	/**
+	 * Close the full segment, create and open the next segment and then
+	 * enforce the budget on a background thread.
+	 *
+	 * @param full
+	 *            The segment to close or null.
+	 */
+	private void prepareNextSegment(final SessionLogWriter full)
+	{
+		final File file = getSegmentFile(segment + 1);
+		final LogSchema schema = this.schema;
+
+		segmentThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (full != null)
+				{
+					try
+					{
+						full.close();
+					}
+					catch (IOException e)
+					{
+						synchronized (SegmentedLogWriter.this)
+						{
+							closeFailure = e;
+						}
+					}
+				}
+
+				SessionLogWriter prepared = factory.createWriter();
+
+				try
+				{
+					prepared.open(file, schema);
+
+					nextWriter = prepared;
+				}
+				catch (IOException e)
+				{
+					prepareFailure = e;
+				}
+
+				if (retention != null)
+				{
+					retention.enforce();
+				}
+			}
+		}, "SegmentSwitch");
+
+		segmentThread.start();
+	}
+
+	private File getSegmentFile(int segment)
+	{
+		if (segment == 1)
+		{
+			return new File(directory, baseName + extension);
+		}
+
+		return new File(directory, baseName + String.format("-%03d", segment)
+				+ extension);
+	}
+
+	/**
+	 * Wait for a background thread. The thread never needs the lock of this
+	 * writer to finish, except to report a close failure, so the lock is
+	 * released while waiting.
+	 */
+	private void join(Thread thread)
+	{
+		boolean interrupted = false;
+
+		while (thread != null && thread.isAlive())
+		{
+			try
+			{
+				wait(10);
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.kircherelectronics.accelerationfilter.logger;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A writer for session logs. Implementations decide how the records are laid
+ * out on disk, but they all take the same records: a time stamp in nanoseconds
+ * and one float per column of the LogSchema.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public interface SessionLogWriter
+{
+	public void open(File file, LogSchema schema) throws IOException;
+
+	public void writeRecord(long timestamp, float[] values, int count)
+			throws IOException;
+
+	public void flush() throws IOException;
+
+	public void close() throws IOException;
+
+	/**
+	 * Set the number of records that were dropped before they reached the
+	 * writer. The count is stored in the footer of the log when it is closed.
+	 */
+	public void setDroppedCount(long droppedCount);
+
+	public File getFile();
+
+	/**
+	 * Get the number of bytes written to the log so far, including anything
+	 * still buffered.
+	 */
+	public long getLength();
+
+	public String getExtension();
+}
@@ -0,0 +1,237 @@
+package com.kircherelectronics.accelerationfilter.metrics;
+
+import java.util.Arrays;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Measures how long a plot takes to render. The most recent frame times are
+ * kept in a fixed size ring so the histogram and percentiles reflect the
+ * current load rather than the whole session. Frames that take longer than
+ * the frame budget are counted, as are redraw requests that were coalesced by
+ * the renderer and never produced a frame of their own.
+ *
+ * Frames are usually timed on the plot render thread and reported on the UI
+ * thread, so all access is synchronized.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class FrameTimeTracker
+{
+	// One 60Hz vsync interval.
+	public final static long DEFAULT_BUDGET_MICROS = 16667;
+
+	// The number of frames in the rolling window.
+	private final static int WINDOW_SIZE = 120;
+
+	// Upper bounds of the histogram bins in microseconds.
+	private final static long[] BIN_LIMITS_MICROS = new long[]
+	{ 2000, 4000, 8000, 16667, 33333, 66667, Long.MAX_VALUE };
+
+	private final static String[] BIN_TITLES = new String[]
+	{ "<2ms", "<4ms", "<8ms", "<16ms", "<33ms", "<66ms", ">66ms" };
+
+	private long budgetMicros = DEFAULT_BUDGET_MICROS;
+
+	private long frameStart = 0;
+
+	// Totals for the whole session
+	private long frameCount = 0;
+	private long overBudgetCount = 0;
+	private long redrawRequestCount = 0;
+
+	// Ring of the most recent frame times
+	private long[] frameMicros = new long[WINDOW_SIZE];
+	private int head = 0;
+	private int size = 0;
+
+	// Scratch space so reports do not allocate
+	private long[] sorted = new long[WINDOW_SIZE];
+	private int[] bins = new int[BIN_LIMITS_MICROS.length];
+
+	/**
+	 * Set the frame budget.
+	 *
+	 * @param budgetMicros
+	 *            The longest a frame may take before it is counted as over
+	 *            budget.
+	 */
+	public synchronized void setBudgetMicros(long budgetMicros)
+	{
+		this.budgetMicros = budgetMicros;
+	}
+
+	/**
+	 * Indicate a redraw has been requested.
+	 */
+	public synchronized void onRedrawRequested()
+	{
+		redrawRequestCount++;
+	}
+
+	/**
+	 * Indicate a frame has started rendering.
+	 */
+	public synchronized void onFrameStart()
+	{
+		frameStart = System.nanoTime();
+	}
+
+	/**
+	 * Indicate a frame has finished rendering.
+	 */
+	public synchronized void onFrameEnd()
+	{
+		if (frameStart == 0)
+		{
+			return;
+		}
+
+		long micros = (System.nanoTime() - frameStart) / 1000;
+
+		frameStart = 0;
+
+		frameCount++;
+
+		if (micros > budgetMicros)
+		{
+			overBudgetCount++;
+		}
+
+		frameMicros[head] = micros;
+		head = (head + 1) % WINDOW_SIZE;
+
+		if (size < WINDOW_SIZE)
+		{
+			size++;
+		}
+	}
+
+	/**
+	 * Clear all of the recorded frames.
+	 */
+	public synchronized void reset()
+	{
+		frameCount = 0;
+		overBudgetCount = 0;
+		redrawRequestCount = 0;
+
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Write a one line summary of the rolling window, suitable for an overlay.
+	 *
+	 * @param summary
+	 *            The summary to append to.
+	 */
+	public synchronized void writeSummary(StringBuilder summary)
+	{
+		sortWindow();
+
+		summary.append("p50 ");
+		appendMillis(summary, percentile(50));
+		summary.append(" p99 ");
+		appendMillis(summary, percentile(99));
+		summary.append(" ms, over ");
+		summary.append(overBudgetCount);
+		summary.append('/');
+		summary.append(frameCount);
+	}
+
+	/**
+	 * Write a detailed report including the rolling histogram.
+	 *
+	 * @param report
+	 *            The report to append to.
+	 */
+	public synchronized void writeReport(StringBuilder report)
+	{
+		sortWindow();
+
+		long dropped = redrawRequestCount - frameCount;
+
+		report.append("Frames ");
+		report.append(frameCount);
+		report.append(", over budget ");
+		report.append(overBudgetCount);
+		report.append(", coalesced redraws ");
+		report.append(dropped > 0 ? dropped : 0);
+		report.append('\n');
+
+		report.append("Last ");
+		report.append(size);
+		report.append(" frames (ms) p50 ");
+		appendMillis(report, percentile(50));
+		report.append(" p99 ");
+		appendMillis(report, percentile(99));
+		report.append(" max ");
+		appendMillis(report, (size == 0) ? 0 : sorted[size - 1]);
+		report.append('\n');
+
+		Arrays.fill(bins, 0);
+
+		for (int i = 0; i < size; i++)
+		{
+			int bin = 0;
+
+			while (sorted[i] > BIN_LIMITS_MICROS[bin])
+			{
+				bin++;
+			}
+
+			bins[bin]++;
+		}
+
+		for (int i = 0; i < bins.length; i++)
+		{
+			report.append(BIN_TITLES[i]);
+			report.append(' ');
+			report.append(bins[i]);
+			report.append((i < bins.length - 1) ? "  " : "\n");
+		}
+	}
+
+	private void sortWindow()
+	{
+		System.arraycopy(frameMicros, 0, sorted, 0, size);
+		Arrays.sort(sorted, 0, size);
+	}
+
+	private long percentile(int percentile)
+	{
+		if (size == 0)
+		{
+			return 0;
+		}
+
+		int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+
+		return sorted[Math.max(index, 0)];
+	}
+
+	private static void appendMillis(StringBuilder builder, long micros)
+	{
+		builder.append(micros / 1000);
+		builder.append('.');
+		builder.append((micros % 1000) / 100);
+	}
+}
@@ -0,0 +1,259 @@
+package com.kircherelectronics.accelerationfilter.metrics;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A fixed memory, log-linear histogram in the style of HdrHistogram. Values
+ * below the sub-bucket count are stored exactly, larger values are stored in
+ * power-of-two buckets that are each split into linear sub-buckets, so the
+ * relative error is bounded by 1 / SUB_BUCKET_HALF_COUNT (about 3%) across the
+ * whole range.
+ *
+ * All of the memory is allocated when the histogram is created. Recording a
+ * value is a few shifts and an array increment and never allocates, so it is
+ * safe to call from the sensor and render paths.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LatencyHistogram
+{
+	// The number of bits of linear resolution within each power of two.
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+	private final long highestTrackableValue;
+
+	private final long[] counts;
+
+	private long totalCount = 0;
+	private long totalSum = 0;
+	private long minValue = Long.MAX_VALUE;
+	private long maxValue = 0;
+
+	// Values that were larger than the highest trackable value.
+	private long overflowCount = 0;
+
+	/**
+	 * Initialize a new LatencyHistogram.
+	 *
+	 * @param highestTrackableValue
+	 *            The largest value that can be recorded. Larger values are
+	 *            clamped and counted as overflows.
+	 */
+	public LatencyHistogram(long highestTrackableValue)
+	{
+		if (highestTrackableValue < SUB_BUCKET_COUNT)
+		{
+			highestTrackableValue = SUB_BUCKET_COUNT;
+		}
+
+		this.highestTrackableValue = highestTrackableValue;
+
+		counts = new long[indexOf(highestTrackableValue) + 1];
+	}
+
+	/**
+	 * Record a value.
+	 *
+	 * @param value
+	 *            The value, negative values are recorded as zero.
+	 */
+	public synchronized void recordValue(long value)
+	{
+		if (value < 0)
+		{
+			value = 0;
+		}
+
+		if (value > highestTrackableValue)
+		{
+			overflowCount++;
+			value = highestTrackableValue;
+		}
+
+		counts[indexOf(value)]++;
+
+		totalCount++;
+		totalSum += value;
+
+		if (value < minValue)
+		{
+			minValue = value;
+		}
+		if (value > maxValue)
+		{
+			maxValue = value;
+		}
+	}
+
+	/**
+	 * Clear all of the recorded values.
+	 */
+	public synchronized void reset()
+	{
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] = 0;
+		}
+
+		totalCount = 0;
+		totalSum = 0;
+		minValue = Long.MAX_VALUE;
+		maxValue = 0;
+		overflowCount = 0;
+	}
+
+	/**
+	 * Get the number of recorded values.
+	 *
+	 * @return The number of recorded values.
+	 */
+	public synchronized long getTotalCount()
+	{
+		return totalCount;
+	}
+
+	/**
+	 * Get the number of values that exceeded the highest trackable value.
+	 *
+	 * @return The number of clamped values.
+	 */
+	public synchronized long getOverflowCount()
+	{
+		return overflowCount;
+	}
+
+	/**
+	 * Get the largest recorded value.
+	 *
+	 * @return The exact maximum, or 0 if nothing was recorded.
+	 */
+	public synchronized long getMaxValue()
+	{
+		return maxValue;
+	}
+
+	/**
+	 * Get the smallest recorded value.
+	 *
+	 * @return The exact minimum, or 0 if nothing was recorded.
+	 */
+	public synchronized long getMinValue()
+	{
+		return (totalCount == 0) ? 0 : minValue;
+	}
+
+	/**
+	 * Get the mean of the recorded values.
+	 *
+	 * @return The mean, or 0 if nothing was recorded.
+	 */
+	public synchronized double getMean()
+	{
+		return (totalCount == 0) ? 0 : (double) totalSum / totalCount;
+	}
+
+	/**
+	 * Get the value at a percentile. The result is the highest value that is
+	 * equivalent to the bucket holding the percentile, so it is never lower
+	 * than the true value.
+	 *
+	 * @param percentile
+	 *            The percentile from 0 to 100.
+	 * @return The value at the percentile, or 0 if nothing was recorded.
+	 */
+	public synchronized long getValueAtPercentile(double percentile)
+	{
+		if (totalCount == 0)
+		{
+			return 0;
+		}
+
+		if (percentile > 100)
+		{
+			percentile = 100;
+		}
+
+		long countAtPercentile = (long) Math.ceil((percentile / 100.0)
+				* totalCount);
+
+		if (countAtPercentile < 1)
+		{
+			countAtPercentile = 1;
+		}
+
+		long runningCount = 0;
+
+		for (int i = 0; i < counts.length; i++)
+		{
+			runningCount += counts[i];
+
+			if (runningCount >= countAtPercentile)
+			{
+				return Math.min(highestEquivalentValue(i), maxValue);
+			}
+		}
+
+		return maxValue;
+	}
+
+	/**
+	 * Find the bucket index of a value.
+	 *
+	 * @param value
+	 *            The value.
+	 * @return The index into the counts array.
+	 */
+	private static int indexOf(long value)
+	{
+		if (value < SUB_BUCKET_COUNT)
+		{
+			return (int) value;
+		}
+
+		// The position of the highest set bit determines the bucket, and the
+		// next SUB_BUCKET_BITS - 1 bits determine the sub-bucket.
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS + 1;
+
+		return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+	}
+
+	/**
+	 * Find the highest value that maps to a bucket index.
+	 *
+	 * @param index
+	 *            The index into the counts array.
+	 * @return The highest value held by the bucket.
+	 */
+	private static long highestEquivalentValue(int index)
+	{
+		if (index < SUB_BUCKET_COUNT)
+		{
+			return index;
+		}
+
+		int shift = index / SUB_BUCKET_HALF_COUNT - 1;
+		long subBucket = index - shift * SUB_BUCKET_HALF_COUNT;
+
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,201 @@
+package com.kircherelectronics.accelerationfilter.metrics;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Tracks how stale a sample is as it moves from the sensor to the screen. Each
+ * stage records the time elapsed since the sensor event timestamp into its own
+ * LatencyHistogram in microseconds.
+ *
+ * Sensor event timestamps are not guaranteed to share a clock with
+ * System.nanoTime() on every device. If the timestamp is in the future or
+ * unreasonably far in the past, the time the event was received is used
+ * instead and the report says so.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class LatencyTracker
+{
+	// Stage keys
+	public final static int STAGE_DELIVERY = 0;
+	public final static int STAGE_FILTER = 1;
+	public final static int STAGE_PLOT_DATA = 2;
+	public final static int STAGE_PLOT_DRAWN = 3;
+
+	private final static String[] STAGE_TITLES = new String[]
+	{ "Sensor>Listener", "Sensor>Filtered", "Sensor>setData", "Sensor>Drawn" };
+
+	// Anything slower than a minute is clamped.
+	private final static long HIGHEST_TRACKABLE_MICROS = 60 * 1000 * 1000;
+
+	// Sensor timestamps further than this from System.nanoTime() are assumed
+	// to be on a different clock.
+	private final static long MAX_CLOCK_SKEW_NANOS = 10 * 1000000000L;
+
+	private volatile boolean sensorClockMismatch = false;
+
+	// The time stamp of the newest sample to leave the filters.
+	private volatile long sampleTimestamp = 0;
+
+	// The time stamp of the newest sample handed to the plot.
+	private volatile long plotTimestamp = 0;
+
+	private LatencyHistogram[] histograms;
+
+	/**
+	 * Initialize a new LatencyTracker.
+	 */
+	public LatencyTracker()
+	{
+		histograms = new LatencyHistogram[STAGE_TITLES.length];
+
+		for (int i = 0; i < histograms.length; i++)
+		{
+			histograms[i] = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+		}
+	}
+
+	/**
+	 * Indicate a sensor event has arrived at the listener.
+	 *
+	 * @param eventTimestamp
+	 *            The SensorEvent time stamp in nanoseconds.
+	 */
+	public void onSampleReceived(long eventTimestamp)
+	{
+		long now = System.nanoTime();
+		long skew = now - eventTimestamp;
+
+		if (skew < 0 || skew > MAX_CLOCK_SKEW_NANOS)
+		{
+			sensorClockMismatch = true;
+			eventTimestamp = now;
+		}
+
+		sampleTimestamp = eventTimestamp;
+
+		record(STAGE_DELIVERY, eventTimestamp, now);
+	}
+
+	/**
+	 * Indicate the filters have finished with the current sample.
+	 */
+	public void onFilterComplete()
+	{
+		record(STAGE_FILTER, sampleTimestamp, System.nanoTime());
+	}
+
+	/**
+	 * Indicate the current sample has been handed to the plot.
+	 */
+	public void onPlotData()
+	{
+		long timestamp = sampleTimestamp;
+
+		plotTimestamp = timestamp;
+
+		record(STAGE_PLOT_DATA, timestamp, System.nanoTime());
+	}
+
+	/**
+	 * Indicate the plot has finished drawing the sample most recently handed
+	 * to it. This may be called from the plot render thread.
+	 */
+	public void onPlotDrawn()
+	{
+		record(STAGE_PLOT_DRAWN, plotTimestamp, System.nanoTime());
+	}
+
+	/**
+	 * Get the histogram for a stage.
+	 *
+	 * @param stage
+	 *            The stage key.
+	 * @return The latencies of the stage in microseconds.
+	 */
+	public LatencyHistogram getHistogram(int stage)
+	{
+		return histograms[stage];
+	}
+
+	/**
+	 * Clear all of the recorded latencies.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < histograms.length; i++)
+		{
+			histograms[i].reset();
+		}
+	}
+
+	/**
+	 * Write a human readable summary of the latencies.
+	 *
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		report.append("Latency (ms)       count    p50    p99    max");
+		report.append('\n');
+
+		for (int i = 0; i < histograms.length; i++)
+		{
+			appendHistogram(report, STAGE_TITLES[i], histograms[i]);
+		}
+
+		if (sensorClockMismatch)
+		{
+			report.append("Sensor clock differs from System.nanoTime(), ");
+			report.append("receipt time used as the sample time.");
+			report.append('\n');
+		}
+	}
+
+	/**
+	 * Append one row of the summary.
+	 */
+	public static void appendHistogram(StringBuilder report, String title,
+			LatencyHistogram histogram)
+	{
+		report.append(title);
+
+		for (int i = title.length(); i < 16; i++)
+		{
+			report.append(' ');
+		}
+
+		report.append(String.format("%8d %6.1f %6.1f %6.1f",
+				histogram.getTotalCount(),
+				histogram.getValueAtPercentile(50) / 1000.0,
+				histogram.getValueAtPercentile(99) / 1000.0,
+				histogram.getMaxValue() / 1000.0));
+		report.append('\n');
+	}
+
+	private void record(int stage, long timestamp, long now)
+	{
+		if (timestamp != 0)
+		{
+			histograms[stage].recordValue((now - timestamp) / 1000);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.kircherelectronics.accelerationfilter.metrics;
+
+/**
+ * Implemented by anything that can summarize its performance metrics for the
+ * metrics dialog.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public interface MetricsReporter
+{
+	public void writeMetricsReport(StringBuilder report);
+
+	public void resetMetrics();
+}
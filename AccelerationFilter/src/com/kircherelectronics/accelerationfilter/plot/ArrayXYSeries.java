@@ -0,0 +1,201 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import android.graphics.Canvas;
+
+import com.androidplot.Plot;
+import com.androidplot.PlotEvent;
+import com.androidplot.PlotListener;
+import com.androidplot.series.XYSeries;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An XYSeries of values that are updated in place, such as the bars of a bar
+ * plot. The x value of a point is its index. The values are kept in a double[]
+ * that only grows when values are added, so updating a value does not
+ * allocate.
+ * 
+ * getY() returns a reused Number like RingBufferXYSeries, so the plot must fix
+ * its range. The BarRenderer keeps the y value of each series while it draws
+ * an x value, so a bar plot must draw one ArrayXYSeries only. getX() returns a
+ * distinct Integer for each index, which is cached by Integer.valueOf() for
+ * any reasonable number of bars, so the domain can still be auto-ranged.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class ArrayXYSeries implements XYSeries, PlotListener
+{
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// The reused y value handed to androidplot
+	private final MutableNumber y = new MutableNumber();
+
+	private String title;
+
+	private double[] values = new double[4];
+
+	private int size;
+
+	/**
+	 * Initialize a new ArrayXYSeries.
+	 * 
+	 * @param title
+	 *            The title of the series.
+	 */
+	public ArrayXYSeries(String title)
+	{
+		this.title = title;
+	}
+
+	/**
+	 * Add a value.
+	 * 
+	 * @param value
+	 *            The value.
+	 * @return The index of the value.
+	 */
+	public int add(double value)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			if (size == values.length)
+			{
+				double[] grown = new double[size * 2];
+
+				System.arraycopy(values, 0, grown, 0, size);
+
+				values = grown;
+			}
+
+			values[size] = value;
+
+			return size++;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Change a value.
+	 * 
+	 * @param index
+	 *            The index of the value.
+	 * @param value
+	 *            The value.
+	 */
+	public void set(int index, double value)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			values[index] = value;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove every value.
+	 */
+	public void clear()
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			size = 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get a value without boxing it.
+	 * 
+	 * @param index
+	 *            The index of the value.
+	 * @return The value.
+	 */
+	public double get(int index)
+	{
+		return values[index];
+	}
+
+	public void setTitle(String title)
+	{
+		this.title = title;
+	}
+
+	@Override
+	public String getTitle()
+	{
+		return title;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public Number getX(int index)
+	{
+		// The domain is auto-ranged and androidplot keeps the Numbers of the
+		// bounds, so each index needs its own.
+		return Integer.valueOf(index);
+	}
+
+	@Override
+	public Number getY(int index)
+	{
+		y.value = values[index];
+
+		return y;
+	}
+
+	@Override
+	public void onPlotUpdate(PlotEvent event)
+	{
+	}
+
+	@Override
+	public void onBeforeDraw(Plot plot, Canvas canvas)
+	{
+		lock.readLock().lock();
+	}
+
+	@Override
+	public void onAfterDraw(Plot plot, Canvas canvas)
+	{
+		lock.readLock().unlock();
+	}
+}
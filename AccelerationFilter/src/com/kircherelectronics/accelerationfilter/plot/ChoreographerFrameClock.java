@@ -0,0 +1,87 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A FrameClock that calls back on vsync with Choreographer. Choreographer is
+ * only available on Jelly Bean and up, older devices use a HandlerFrameClock.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class ChoreographerFrameClock implements FrameClock
+{
+	private Choreographer choreographer;
+
+	// The callback and its Choreographer wrapper
+	private FrameClock.Callback callback;
+	private Choreographer.FrameCallback frameCallback;
+
+	/**
+	 * Initialize a new ChoreographerFrameClock. Must be created on a thread
+	 * with a Looper, usually the UI thread.
+	 */
+	public ChoreographerFrameClock()
+	{
+		choreographer = Choreographer.getInstance();
+	}
+
+	@Override
+	public void postFrameCallback(Callback callback, long delayMillis)
+	{
+		choreographer.postFrameCallbackDelayed(wrap(callback), delayMillis);
+	}
+
+	@Override
+	public void removeFrameCallback(Callback callback)
+	{
+		if (callback == this.callback)
+		{
+			choreographer.removeFrameCallback(frameCallback);
+		}
+	}
+
+	/**
+	 * Get the Choreographer callback of a callback. Only the last callback is
+	 * kept, the scheduler only ever posts one.
+	 */
+	private Choreographer.FrameCallback wrap(final Callback callback)
+	{
+		if (callback != this.callback)
+		{
+			this.callback = callback;
+
+			frameCallback = new Choreographer.FrameCallback()
+			{
+				@Override
+				public void doFrame(long frameTimeNanos)
+				{
+					callback.doFrame(frameTimeNanos);
+				}
+			};
+		}
+
+		return frameCallback;
+	}
+}
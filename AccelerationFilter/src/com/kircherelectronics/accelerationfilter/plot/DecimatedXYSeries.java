@@ -0,0 +1,576 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import android.graphics.Canvas;
+
+import com.androidplot.Plot;
+import com.androidplot.PlotEvent;
+import com.androidplot.PlotListener;
+import com.androidplot.series.XYSeries;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An XYSeries that shows a window of values reduced to what the plot can
+ * actually draw. The window is split into one bucket per pixel column and each
+ * bucket is drawn as its first, min, max and last value in order (M4
+ * decimation), so the line looks the same as with every value but the number
+ * of points drawn depends on the plot width instead of the window size.
+ *
+ * Buckets are updated as values arrive. They are only rebuilt from the window
+ * when the window size or the number of columns changes. A window that fits in
+ * the columns is drawn as is.
+ *
+ * Every value is also kept in a HistoryPyramid. A view that is zoomed or
+ * scrolled away from the window is drawn from the tier of the pyramid that
+ * matches the span of the view, with the min and max of each entry.
+ *
+ * The x value of a point is its index in the view, oldest first. Like
+ * RingBufferXYSeries the points are reused Numbers, so the plot must fix both
+ * of its axes.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class DecimatedXYSeries implements XYSeries, PlotListener
+{
+	// The most points a bucket is drawn with
+	private static final int POINTS_PER_BUCKET = 4;
+
+	// The most history entries per pixel column, each drawn with two points
+	private static final int ENTRIES_PER_COLUMN = 2;
+
+	// The number of entries of each history tier
+	private static final int HISTORY_CAPACITY = 2048;
+
+	// The number of history tiers, reaching back HISTORY_CAPACITY * 8^3
+	// values
+	private static final int HISTORY_TIERS = 4;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private String title;
+
+	// Every value in the window
+	private RingBufferXYSeries window;
+
+	// The number of values added since the series was cleared
+	private long total;
+
+	// Every value at decreasing resolutions
+	private HistoryPyramid history;
+
+	// The view in values, the window when viewOffset is 0 and viewSpan is
+	// the window size
+	private long viewSpan;
+	private long viewOffset;
+
+	private int columns;
+
+	// The number of values in a full bucket
+	private int bucketWidth = 1;
+
+	// The buckets, a ring with the oldest at bucketHead
+	private int bucketHead;
+	private int bucketCount;
+
+	private long[] bucketStart;
+	private int[] bucketSize;
+	private double[] bucketFirst;
+	private double[] bucketLast;
+	private double[] bucketMin;
+	private double[] bucketMax;
+	private long[] bucketMinIndex;
+	private long[] bucketMaxIndex;
+
+	// The points drawn, rebuilt from the buckets when they change
+	private boolean dirty;
+	private int points;
+	private double[] pointX;
+	private double[] pointY;
+
+	private final MutableNumber x = new MutableNumber();
+	private final MutableNumber y = new MutableNumber();
+
+	/**
+	 * Initialize a new DecimatedXYSeries.
+	 *
+	 * @param title
+	 *            The title of the series.
+	 * @param windowSize
+	 *            The number of values in the window.
+	 */
+	public DecimatedXYSeries(String title, int windowSize)
+	{
+		this.title = title;
+
+		window = new RingBufferXYSeries(title, windowSize);
+
+		history = new HistoryPyramid(HISTORY_CAPACITY, HISTORY_TIERS);
+
+		viewSpan = windowSize;
+
+		rebuild();
+	}
+
+	/**
+	 * Add a value, dropping the oldest value if the window is full.
+	 *
+	 * @param value
+	 *            The value.
+	 */
+	public void addLast(double value)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			window.addLast(value);
+
+			history.add((float) value);
+
+			add(total++, value);
+
+			dirty = true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove every value.
+	 */
+	public void clear()
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			window.clear();
+
+			history.clear();
+
+			total = 0;
+
+			rebuild();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Change the number of values in the window. The newest values are kept.
+	 *
+	 * @param windowSize
+	 *            The number of values in the window.
+	 */
+	public void setWindowSize(int windowSize)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			if (windowSize == window.getCapacity())
+			{
+				return;
+			}
+
+			window.setCapacity(windowSize);
+
+			viewSpan = windowSize;
+			viewOffset = 0;
+
+			rebuild();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Set the number of pixel columns the window is drawn across.
+	 *
+	 * @param columns
+	 *            The width of the plot in pixels or 0 if it is not known.
+	 */
+	public void setColumns(int columns)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			if (columns == this.columns)
+			{
+				return;
+			}
+
+			this.columns = columns;
+
+			rebuild();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Show a span of the history instead of the window.
+	 *
+	 * @param span
+	 *            The number of values in the view.
+	 * @param offset
+	 *            The number of values between the end of the view and the
+	 *            newest value.
+	 */
+	public void setView(long span, long offset)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			viewSpan = span;
+			viewOffset = offset;
+
+			dirty = true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the number of values in the history.
+	 *
+	 * @return The number of values added since the series was cleared.
+	 */
+	public long getHistoryLength()
+	{
+		return history.getLength();
+	}
+
+	/**
+	 * Get the number of values the history reaches back.
+	 *
+	 * @return The number of values covered by the highest tier.
+	 */
+	public static long getHistoryCapacity()
+	{
+		return HISTORY_CAPACITY
+				* HistoryPyramid.getEntryWidth(HISTORY_TIERS - 1);
+	}
+
+	/**
+	 * Get the number of values in the window.
+	 *
+	 * @return The number of values.
+	 */
+	public int getValueCount()
+	{
+		return window.size();
+	}
+
+	public void setTitle(String title)
+	{
+		this.title = title;
+	}
+
+	@Override
+	public String getTitle()
+	{
+		return title;
+	}
+
+	@Override
+	public int size()
+	{
+		flatten();
+
+		return points;
+	}
+
+	@Override
+	public Number getX(int index)
+	{
+		flatten();
+
+		x.value = pointX[index];
+
+		return x;
+	}
+
+	@Override
+	public Number getY(int index)
+	{
+		flatten();
+
+		y.value = pointY[index];
+
+		return y;
+	}
+
+	@Override
+	public void onPlotUpdate(PlotEvent event)
+	{
+	}
+
+	@Override
+	public void onBeforeDraw(Plot plot, Canvas canvas)
+	{
+		lock.readLock().lock();
+	}
+
+	@Override
+	public void onAfterDraw(Plot plot, Canvas canvas)
+	{
+		lock.readLock().unlock();
+	}
+
+	/**
+	 * Size the buckets for the window and the columns and fill them from the
+	 * window.
+	 */
+	private void rebuild()
+	{
+		int windowSize = window.getCapacity();
+
+		bucketWidth = 1;
+
+		if (columns > 0 && windowSize > columns)
+		{
+			bucketWidth = (windowSize + columns - 1) / columns;
+		}
+
+		// One more bucket than the window needs for the partly dropped oldest
+		// bucket.
+		int capacity = (windowSize + bucketWidth - 1) / bucketWidth + 1;
+
+		if (bucketStart == null || bucketStart.length != capacity)
+		{
+			bucketStart = new long[capacity];
+			bucketSize = new int[capacity];
+			bucketFirst = new double[capacity];
+			bucketLast = new double[capacity];
+			bucketMin = new double[capacity];
+			bucketMax = new double[capacity];
+			bucketMinIndex = new long[capacity];
+			bucketMaxIndex = new long[capacity];
+
+		}
+
+		// Room for the buckets or for a view of the history.
+		int maxPoints = Math.max(capacity * POINTS_PER_BUCKET,
+				2 * (getMaxEntries() + 2));
+
+		if (pointX == null || pointX.length != maxPoints)
+		{
+			pointX = new double[maxPoints];
+			pointY = new double[maxPoints];
+		}
+
+		bucketHead = 0;
+		bucketCount = 0;
+
+		long start = total - window.size();
+
+		for (int i = 0; i < window.size(); i++)
+		{
+			add(start + i, window.getValue(i));
+		}
+
+		dirty = true;
+	}
+
+	/**
+	 * Add a value to the newest bucket or start a new one.
+	 */
+	private void add(long index, double value)
+	{
+		int capacity = bucketStart.length;
+
+		int b = (bucketHead + bucketCount - 1) % capacity;
+
+		if (bucketCount == 0 || bucketSize[b] == bucketWidth)
+		{
+			if (bucketCount == capacity)
+			{
+				bucketHead = (bucketHead + 1) % capacity;
+			}
+			else
+			{
+				bucketCount++;
+			}
+
+			b = (bucketHead + bucketCount - 1) % capacity;
+
+			bucketStart[b] = index;
+			bucketSize[b] = 1;
+			bucketFirst[b] = value;
+			bucketLast[b] = value;
+			bucketMin[b] = value;
+			bucketMax[b] = value;
+			bucketMinIndex[b] = index;
+			bucketMaxIndex[b] = index;
+
+			return;
+		}
+
+		bucketSize[b]++;
+		bucketLast[b] = value;
+
+		if (value < bucketMin[b])
+		{
+			bucketMin[b] = value;
+			bucketMinIndex[b] = index;
+		}
+
+		if (value > bucketMax[b])
+		{
+			bucketMax[b] = value;
+			bucketMaxIndex[b] = index;
+		}
+	}
+
+	/**
+	 * Turn the buckets into points. Values that have left the window are
+	 * skipped, so the oldest bucket may be drawn with fewer points.
+	 */
+	private synchronized void flatten()
+	{
+		if (!dirty)
+		{
+			return;
+		}
+
+		if (viewOffset != 0 || viewSpan != window.getCapacity())
+		{
+			flattenHistory();
+
+			return;
+		}
+
+		long start = total - window.size();
+
+		points = 0;
+
+		long last = start - 1;
+
+		for (int i = 0; i < bucketCount; i++)
+		{
+			int b = (bucketHead + i) % bucketStart.length;
+
+			last = addPoint(start, last, bucketStart[b], bucketFirst[b]);
+
+			if (bucketMinIndex[b] < bucketMaxIndex[b])
+			{
+				last = addPoint(start, last, bucketMinIndex[b], bucketMin[b]);
+				last = addPoint(start, last, bucketMaxIndex[b], bucketMax[b]);
+			}
+			else
+			{
+				last = addPoint(start, last, bucketMaxIndex[b], bucketMax[b]);
+				last = addPoint(start, last, bucketMinIndex[b], bucketMin[b]);
+			}
+
+			last = addPoint(start, last, bucketStart[b] + bucketSize[b] - 1,
+					bucketLast[b]);
+		}
+
+		dirty = false;
+	}
+
+	/**
+	 * Turn the entries of the history in the view into points, the min and
+	 * max of each entry.
+	 */
+	private void flattenHistory()
+	{
+		long end = total - viewOffset;
+		long start = end - viewSpan;
+
+		int tier = history.selectTier(start, viewSpan, getMaxEntries());
+
+		long width = HistoryPyramid.getEntryWidth(tier);
+
+		long first = Math.max(history.getFirstEntry(tier), Math.max(0, start)
+				/ width);
+		long last = Math.min(history.getEndEntry(tier), (end + width - 1)
+				/ width);
+
+		points = 0;
+
+		for (long e = first; e < last && points + 2 <= pointX.length; e++)
+		{
+			// Draw the entry in the middle of the values it covers, but not
+			// outside of the view.
+			double x = e * width + (width - 1) / 2.0 - start;
+
+			x = Math.max(0, Math.min(x, viewSpan));
+
+			pointX[points] = x;
+			pointY[points] = history.getMin(tier, e);
+			points++;
+
+			if (width > 1)
+			{
+				pointX[points] = x;
+				pointY[points] = history.getMax(tier, e);
+				points++;
+			}
+		}
+
+		dirty = false;
+	}
+
+	/**
+	 * Get the most history entries a view is drawn with.
+	 */
+	private int getMaxEntries()
+	{
+		return ((columns > 0) ? columns : window.getCapacity())
+				* ENTRIES_PER_COLUMN;
+	}
+
+	/**
+	 * Add a point unless it has left the window or was already added.
+	 *
+	 * @return The index of the last point added.
+	 */
+	private long addPoint(long start, long last, long index, double value)
+	{
+		if (index <= last)
+		{
+			return last;
+		}
+
+		pointX[points] = index - start;
+		pointY[points] = value;
+
+		points++;
+
+		return index;
+	}
+}
@@ -4,39 +4,54 @@ import java.text.DecimalFormat;
 import java.text.FieldPosition;
 import java.text.Format;
 import java.text.ParsePosition;
-import java.util.Arrays;
+import java.util.ArrayList;
 
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.util.Log;
 import android.util.SparseArray;
 
+import com.androidplot.Plot;
+import com.androidplot.PlotEvent;
+import com.androidplot.PlotListener;
 import com.androidplot.xy.BarFormatter;
 import com.androidplot.xy.BarRenderer;
 import com.androidplot.xy.BoundaryMode;
-import com.androidplot.xy.SimpleXYSeries;
 import com.androidplot.xy.XYPlot;
 import com.androidplot.xy.XYStepMode;
+import com.kircherelectronics.accelerationfilter.metrics.FrameTimeTracker;
 
 /**
- * Bar plot is responsible for plotting data on a bar graph. It is capable of
- * dynamically adding and removing plots as required by the user. However, the
- * total number of plots that could be plotted and names of the plots must be
- * known in advance.
+ * Bar plot is responsible for plotting data on a bar graph. Bars are added
+ * with a label and their values are updated in place, so any number of bars
+ * can be plotted without allocating on each update.
+ * 
+ * The range fits the largest bar, rounded up to 1, 2 or 5 times a power of
+ * ten. It grows as soon as a bar does not fit and only shrinks when the bars
+ * fit in less than half of it, so it does not jump with every update.
  * 
  * @author Kaleb
  * @version %I%, %G%
  */
 public class DynamicBarPlot
 {
+	// Render time instrumentation
+	private FrameTimeTracker frameTimeTracker;
+
 	// RMS Noise levels bar chart
 	private XYPlot levelsPlot = null;
 
 	// RMS Noise levels bar chart series
-	private SimpleXYSeries levelsSeries = null;
+	private ArrayXYSeries levelsSeries = null;
+
+	// The label of each bar
+	private ArrayList<String> labels = new ArrayList<String>();
 
 	private String seriesTitle;
 
+	// The top of the range axis
+	private double rangeMax = 0.12;
 
 	/**
 	 * Initialize a new DynamicBarPlot.
@@ -53,30 +68,184 @@ public class DynamicBarPlot
 		this.levelsPlot = noiseLevelsPlot;
 		this.seriesTitle = seriesTitle;
 
+		frameTimeTracker = new FrameTimeTracker();
+
 		initPlot();
 	}
 
 	/**
-	 * Add data to the plot.
+	 * Get the render time instrumentation for the plot.
+	 * 
+	 * @return Returns the frame time tracker.
+	 */
+	public FrameTimeTracker getFrameTimeTracker()
+	{
+		return frameTimeTracker;
+	}
+
+	/**
+	 * Write the render times and the number of bars.
+	 * 
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		report.append(levelsPlot.getTitle());
+		report.append(" plot, ");
+		report.append(levelsSeries.size());
+		report.append(" bars\n");
+
+		frameTimeTracker.writeReport(report);
+	}
+
+	/**
+	 * Add a bar to the plot.
+	 * 
+	 * @param label
+	 *            The label of the bar.
+	 * @return The index of the bar.
+	 */
+	public synchronized int addBar(String label)
+	{
+		labels.add(label);
+
+		// There must be a domain step for each bar to label them all.
+		levelsPlot.setDomainStepValue(labels.size());
+
+		return levelsSeries.add(0);
+	}
+
+	/**
+	 * Change the label of a bar.
 	 * 
-	 * @param seriesNumbers
-	 *            The data to be plotted.
+	 * @param bar
+	 *            The index of the bar.
+	 * @param label
+	 *            The label.
+	 */
+	public synchronized void setBarLabel(int bar, String label)
+	{
+		labels.set(bar, label);
+	}
+
+	/**
+	 * Remove every bar.
+	 */
+	public synchronized void clearBars()
+	{
+		labels.clear();
+
+		levelsSeries.clear();
+	}
+
+	/**
+	 * Get the number of bars.
+	 * 
+	 * @return The number of bars.
+	 */
+	public int getBarCount()
+	{
+		return labels.size();
+	}
+
+	/**
+	 * Set the value of a bar. The plot is not redrawn until draw() is called.
+	 * 
+	 * @param bar
+	 *            The index of the bar.
+	 * @param value
+	 *            The value.
+	 */
+	public void setValue(int bar, double value)
+	{
+		levelsSeries.set(bar, value);
+	}
+
+	/**
+	 * Change the label of the range axis, the statistic the bars show.
+	 * 
+	 * @param label
+	 *            The label.
+	 */
+	public synchronized void setRangeLabel(String label)
+	{
+		levelsPlot.setRangeLabel(label);
+		levelsPlot.getRangeLabelWidget().pack();
+	}
+
+	/**
+	 * Draw the plot.
 	 */
-	public synchronized void onDataAvailable(Number[] seriesNumbers)
+	public synchronized void draw()
 	{
-		levelsSeries.setModel(Arrays.asList(seriesNumbers),
-				SimpleXYSeries.ArrayFormat.Y_VALS_ONLY);
+		fitRange();
+
+		frameTimeTracker.onRedrawRequested();
 
 		levelsPlot.redraw();
 	}
 
+	/**
+	 * Fit the range to the largest bar.
+	 */
+	private void fitRange()
+	{
+		double max = 0;
+
+		for (int i = 0; i < levelsSeries.size(); i++)
+		{
+			max = Math.max(max, levelsSeries.get(i));
+		}
+
+		if (max <= 0 || Double.isNaN(max) || Double.isInfinite(max))
+		{
+			return;
+		}
+
+		double fit = getNiceMax(max);
+
+		if (fit > rangeMax || fit < rangeMax / 2)
+		{
+			rangeMax = fit;
+
+			levelsPlot.setRangeBoundaries(0, rangeMax, BoundaryMode.FIXED);
+			levelsPlot.setRangeStep(XYStepMode.INCREMENT_BY_VAL, rangeMax / 5);
+		}
+	}
+
+	/**
+	 * Get the smallest of 1, 2 or 5 times a power of ten that holds a value
+	 * with some room above it.
+	 */
+	private static double getNiceMax(double value)
+	{
+		value *= 1.1;
+
+		double power = Math.pow(10, Math.floor(Math.log10(value)));
+
+		if (value <= power)
+		{
+			return power;
+		}
+		else if (value <= 2 * power)
+		{
+			return 2 * power;
+		}
+		else if (value <= 5 * power)
+		{
+			return 5 * power;
+		}
+
+		return 10 * power;
+	}
+
 	/**
 	 * Initialize the plot.
 	 */
 	private void initPlot()
 	{
-		levelsSeries = new SimpleXYSeries(seriesTitle);
-		levelsSeries.useImplicitXVals();
+		levelsSeries = new ArrayXYSeries(seriesTitle);
 
 		levelsPlot
 				.addSeries(
@@ -84,8 +253,8 @@ public class DynamicBarPlot
 						new BarFormatter(Color.rgb(0, 153, 204), Color.rgb(0,
 								153, 204)));
 
-		// This needs to be changed with the number of plots, must be >= 1
-		levelsPlot.setDomainStepValue(3);
+		// This is changed with the number of bars, must be >= 1
+		levelsPlot.setDomainStepValue(1);
 
 		levelsPlot.setRangeStep(XYStepMode.INCREMENT_BY_VAL, .02);
 		levelsPlot.setRangeValueFormat(new DecimalFormat("#.###"));
@@ -93,10 +262,10 @@ public class DynamicBarPlot
 		// Fir the range. If we did not do this, the plot would
 		// auto-range which can be visually confusing in the case of dynamic
 		// plots.
-		levelsPlot.setRangeBoundaries(0, 0.12, BoundaryMode.FIXED);
+		levelsPlot.setRangeBoundaries(0, rangeMax, BoundaryMode.FIXED);
 
 		// use our custom domain value formatter:
-		levelsPlot.setDomainValueFormat(new DomainIndexFormat());
+		levelsPlot.setDomainValueFormat(new BarLabelFormat());
 
 		// update our domain and range axis labels:
 		levelsPlot.setDomainLabel("Output");
@@ -133,12 +302,32 @@ public class DynamicBarPlot
 			// seen better:
 			barRenderer.setBarWidth(25);
 		}
+
+		levelsPlot.addListener(new PlotListener()
+		{
+			@Override
+			public void onPlotUpdate(PlotEvent event)
+			{
+			}
+
+			@Override
+			public void onBeforeDraw(Plot plot, Canvas canvas)
+			{
+				frameTimeTracker.onFrameStart();
+			}
+
+			@Override
+			public void onAfterDraw(Plot plot, Canvas canvas)
+			{
+				frameTimeTracker.onFrameEnd();
+			}
+		});
 	}
 
 	/**
-	 * A simple formatter to convert bar indexes into sensor names.
+	 * A simple formatter to convert bar indexes into bar labels.
 	 */
-	private class DomainIndexFormat extends Format
+	private class BarLabelFormat extends Format
 	{
 
 		@Override
@@ -150,20 +339,16 @@ public class DynamicBarPlot
 			// using num.intValue() will floor the value, so we add 0.5 to round
 			// instead:
 			int roundNum = (int) (num.floatValue() + 0.5f);
-			switch (roundNum)
+
+			if (roundNum >= 0 && roundNum < labels.size())
+			{
+				toAppendTo.append(labels.get(roundNum));
+			}
+			else
 			{
-			case 0:
-				toAppendTo.append("Accel");
-				break;
-			case 1:
-				toAppendTo.append("LPF");
-				break;
-			case 2:
-				toAppendTo.append("Mean");
-				break;
-			default:
 				toAppendTo.append("Unknown");
 			}
+
 			return toAppendTo;
 		}
 
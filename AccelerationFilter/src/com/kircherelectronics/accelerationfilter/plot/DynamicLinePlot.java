@@ -1,14 +1,19 @@
 package com.kircherelectronics.accelerationfilter.plot;
 
-import java.util.LinkedList;
-
+import com.androidplot.Plot;
+import com.androidplot.PlotEvent;
+import com.androidplot.PlotListener;
 import com.androidplot.xy.BoundaryMode;
 import com.androidplot.xy.LineAndPointFormatter;
 import com.androidplot.xy.PointLabelFormatter;
-import com.androidplot.xy.SimpleXYSeries;
 import com.androidplot.xy.XYPlot;
+import com.kircherelectronics.accelerationfilter.metrics.FrameTimeTracker;
+import com.kircherelectronics.accelerationfilter.metrics.LatencyTracker;
+
+import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.RectF;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -42,15 +47,31 @@ public class DynamicLinePlot
 	private static final int VERTEX_WIDTH = 2;
 	private static final int LINE_WIDTH = 2;
 
+	// The fewest values the time axis can be zoomed in to
+	private static final int MIN_VIEW_SPAN = 10;
+
 	private int windowSize = 50;
 
+	// The values shown, the window unless the user zoomed or scrolled the
+	// time axis
+	private long viewSpan = windowSize;
+	private long viewOffset = 0;
+
 	private double maxRange = 10;
 	private double minRange = -10;
 
+	// Indicate if data has been set since the last draw
+	private boolean dataPending = false;
+
 	private XYPlot dynamicPlot;
 
-	private SparseArray<SimpleXYSeries> series;
-	private SparseArray<LinkedList<Number>> history;
+	// Render time instrumentation
+	private FrameTimeTracker frameTimeTracker;
+
+	// Optional latency instrumentation
+	private LatencyTracker latencyTracker;
+
+	private SparseArray<DecimatedXYSeries> series;
 
 	/**
 	 * Initialize a new Acceleration View object.
@@ -62,12 +83,35 @@ public class DynamicLinePlot
 	{
 		this.dynamicPlot = dynamicPlot;
 
-		series = new SparseArray<SimpleXYSeries>();
-		history = new SparseArray<LinkedList<Number>>();
+		series = new SparseArray<DecimatedXYSeries>();
+
+		frameTimeTracker = new FrameTimeTracker();
 
 		initPlot();
 	}
 
+	/**
+	 * Get the render time instrumentation for the plot.
+	 * 
+	 * @return Returns the frame time tracker.
+	 */
+	public FrameTimeTracker getFrameTimeTracker()
+	{
+		return frameTimeTracker;
+	}
+
+	/**
+	 * Set the tracker that is told when data reaches the plot and when the
+	 * plot has finished rendering it.
+	 *
+	 * @param latencyTracker
+	 *            The latency tracker, or null to disable tracking.
+	 */
+	public void setLatencyTracker(LatencyTracker latencyTracker)
+	{
+		this.latencyTracker = latencyTracker;
+	}
+
 	/**
 	 * Get the max range of the plot.
 	 * 
@@ -123,7 +167,8 @@ public class DynamicLinePlot
 	}
 
 	/**
-	 * Set the plot window size.
+	 * Set the plot window size. The series are resized in place and keep their
+	 * newest points.
 	 * 
 	 * @param windowSize
 	 *            The plot window size.
@@ -131,6 +176,48 @@ public class DynamicLinePlot
 	public void setWindowSize(int windowSize)
 	{
 		this.windowSize = windowSize;
+
+		viewSpan = windowSize;
+		viewOffset = 0;
+
+		for (int i = 0; i < series.size(); i++)
+		{
+			series.valueAt(i).setWindowSize(windowSize);
+		}
+
+		dynamicPlot.setDomainBoundaries(0, windowSize, BoundaryMode.FIXED);
+	}
+
+	/**
+	 * Zoom the time axis. The newest value of the view stays in place.
+	 * 
+	 * @param factor
+	 *            The factor the span of the view is multiplied by, above 1 to
+	 *            zoom out.
+	 */
+	public void zoomTime(double factor)
+	{
+		setView(Math.round(viewSpan * factor), viewOffset);
+	}
+
+	/**
+	 * Scroll the time axis.
+	 * 
+	 * @param fraction
+	 *            The part of the view to scroll back in time, negative to
+	 *            scroll towards the newest values.
+	 */
+	public void scrollTime(double fraction)
+	{
+		setView(viewSpan, viewOffset + Math.round(viewSpan * fraction));
+	}
+
+	/**
+	 * Show the window of newest values again.
+	 */
+	public void resetView()
+	{
+		setView(windowSize, 0);
 	}
 
 	/**
@@ -141,16 +228,17 @@ public class DynamicLinePlot
 	 */
 	public void setData(double data, int key)
 	{
-
-		if (history.get(key).size() > windowSize)
+		if (!dataPending)
 		{
-			history.get(key).removeFirst();
-		}
+			dataPending = true;
 
-		history.get(key).addLast(data);
+			if (latencyTracker != null)
+			{
+				latencyTracker.onPlotData();
+			}
+		}
 
-		series.get(key).setModel(history.get(key),
-				SimpleXYSeries.ArrayFormat.Y_VALS_ONLY);
+		series.get(key).addLast(data);
 	}
 
 	/**
@@ -158,9 +246,62 @@ public class DynamicLinePlot
 	 */
 	public synchronized void draw()
 	{
+		// A view scrolled back in time stays on the same values.
+		if (dataPending && viewOffset > 0)
+		{
+			setView(viewSpan, viewOffset + 1);
+		}
+
+		dataPending = false;
+
+		// Each series is drawn with a few points per pixel column.
+		int columns = getColumns();
+
+		for (int i = 0; i < series.size(); i++)
+		{
+			series.valueAt(i).setColumns(columns);
+		}
+
+		frameTimeTracker.onRedrawRequested();
+
 		dynamicPlot.redraw();
 	}
 
+	/**
+	 * Write the render times and the number of points in each series.
+	 * 
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		report.append(dynamicPlot.getTitle());
+		report.append(" plot, window ");
+		report.append(windowSize);
+
+		if (viewOffset != 0 || viewSpan != windowSize)
+		{
+			report.append(", view ");
+			report.append(viewSpan);
+			report.append(" back ");
+			report.append(viewOffset);
+		}
+
+		report.append('\n');
+
+		frameTimeTracker.writeReport(report);
+
+		for (int i = 0; i < series.size(); i++)
+		{
+			report.append(series.valueAt(i).getTitle());
+			report.append(' ');
+			report.append(series.valueAt(i).size());
+			report.append('/');
+			report.append(series.valueAt(i).getValueCount());
+			report.append((i < series.size() - 1) ? ", " : " points drawn\n");
+		}
+	}
+
 	/**
 	 * Add a series to the plot.
 	 * 
@@ -173,9 +314,10 @@ public class DynamicLinePlot
 	 */
 	public void addSeriesPlot(String seriesName, int key, int color)
 	{
-		history.append(key, new LinkedList<Number>());
+		series.append(key, new DecimatedXYSeries(seriesName, windowSize));
 
-		series.append(key, new SimpleXYSeries(seriesName));
+		series.get(key).setColumns(getColumns());
+		series.get(key).setView(viewSpan, viewOffset);
 
 		LineAndPointFormatter formatter = new LineAndPointFormatter(Color.rgb(
 				0, 153, 204), Color.rgb(0, 153, 204), Color.TRANSPARENT,
@@ -211,12 +353,55 @@ public class DynamicLinePlot
 	{
 		dynamicPlot.removeSeries(series.get(key));
 
-		history.get(key).removeAll(history.get(key));
-		history.remove(key);
-
 		series.remove(key);
 	}
 
+	/**
+	 * Show a span of the history. The span is limited to what the history can
+	 * hold and the view can not be scrolled past the oldest or newest values.
+	 */
+	private void setView(long span, long offset)
+	{
+		span = Math.max(MIN_VIEW_SPAN,
+				Math.min(span, DecimatedXYSeries.getHistoryCapacity()));
+
+		long length = 0;
+
+		for (int i = 0; i < series.size(); i++)
+		{
+			length = Math.max(length, series.valueAt(i).getHistoryLength());
+		}
+
+		offset = Math.max(0, Math.min(offset, length - span));
+
+		viewSpan = span;
+		viewOffset = offset;
+
+		for (int i = 0; i < series.size(); i++)
+		{
+			series.valueAt(i).setView(span, offset);
+		}
+
+		dynamicPlot.setDomainBoundaries(0, span, BoundaryMode.FIXED);
+	}
+
+	/**
+	 * Get the number of pixel columns the series are drawn across.
+	 * 
+	 * @return The width of the grid or 0 if the plot has not been laid out.
+	 */
+	private int getColumns()
+	{
+		RectF grid = dynamicPlot.getGraphWidget().getGridRect();
+
+		if (grid != null)
+		{
+			return (int) grid.width();
+		}
+
+		return dynamicPlot.getWidth();
+	}
+
 	/**
 	 * Create the plot.
 	 */
@@ -253,6 +438,33 @@ public class DynamicLinePlot
 		this.dynamicPlot.setBorderPaint(null);
 		this.dynamicPlot.setBackgroundPaint(null);
 
+		// The plot renders on its own thread, so this is the only place that
+		// knows when a frame has actually been drawn.
+		this.dynamicPlot.addListener(new PlotListener()
+		{
+			@Override
+			public void onPlotUpdate(PlotEvent event)
+			{
+			}
+
+			@Override
+			public void onBeforeDraw(Plot plot, Canvas canvas)
+			{
+				frameTimeTracker.onFrameStart();
+			}
+
+			@Override
+			public void onAfterDraw(Plot plot, Canvas canvas)
+			{
+				frameTimeTracker.onFrameEnd();
+
+				if (latencyTracker != null)
+				{
+					latencyTracker.onPlotDrawn();
+				}
+			}
+		});
+
 		this.dynamicPlot.redraw();
 	}
 }
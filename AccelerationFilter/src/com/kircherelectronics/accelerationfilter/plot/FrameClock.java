@@ -0,0 +1,61 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A source of display frames. The PlotRefreshScheduler only talks to a
+ * FrameClock, so it can be driven by Choreographer on the device or by a
+ * hand-stepped clock off the device.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public interface FrameClock
+{
+	/**
+	 * Called once for a frame.
+	 */
+	public interface Callback
+	{
+		/**
+		 * @param frameTimeNanos
+		 *            The time the frame started in the System.nanoTime() time
+		 *            base.
+		 */
+		public void doFrame(long frameTimeNanos);
+	}
+
+	/**
+	 * Call back on the first frame after a delay.
+	 * 
+	 * @param callback
+	 *            The callback.
+	 * @param delayMillis
+	 *            The delay in milliseconds, 0 for the next frame.
+	 */
+	public void postFrameCallback(Callback callback, long delayMillis);
+
+	/**
+	 * Cancel a posted callback.
+	 * 
+	 * @param callback
+	 *            The callback.
+	 */
+	public void removeFrameCallback(Callback callback);
+}
@@ -0,0 +1,90 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+import android.os.Handler;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A FrameClock for devices without Choreographer. Frames are posted to a
+ * Handler at about 60 frames per second; they are not aligned with vsync.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class HandlerFrameClock implements FrameClock
+{
+	// The time between frames in milliseconds
+	private static final long FRAME_INTERVAL = 16;
+
+	private Handler handler;
+
+	// The callback and its Runnable wrapper
+	private FrameClock.Callback callback;
+	private Runnable runnable;
+
+	/**
+	 * Initialize a new HandlerFrameClock.
+	 * 
+	 * @param handler
+	 *            The Handler frames are run on.
+	 */
+	public HandlerFrameClock(Handler handler)
+	{
+		this.handler = handler;
+	}
+
+	@Override
+	public void postFrameCallback(Callback callback, long delayMillis)
+	{
+		handler.postDelayed(wrap(callback), Math.max(delayMillis,
+				FRAME_INTERVAL));
+	}
+
+	@Override
+	public void removeFrameCallback(Callback callback)
+	{
+		if (callback == this.callback)
+		{
+			handler.removeCallbacks(runnable);
+		}
+	}
+
+	/**
+	 * Get the Runnable of a callback. Only the last callback is kept, the
+	 * scheduler only ever posts one.
+	 */
+	private Runnable wrap(final Callback callback)
+	{
+		if (callback != this.callback)
+		{
+			this.callback = callback;
+
+			runnable = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					callback.doFrame(System.nanoTime());
+				}
+			};
+		}
+
+		return runnable;
+	}
+}
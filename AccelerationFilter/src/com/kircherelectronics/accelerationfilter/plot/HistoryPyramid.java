@@ -0,0 +1,300 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A history of values in fixed memory at several resolutions. Tier 0 keeps the
+ * newest values as they are. Every entry of the next tier is the min, max and
+ * mean of FACTOR entries of the tier below, so each tier reaches FACTOR times
+ * further back than the one below it with the same number of entries.
+ * 
+ * A span of history is drawn from the lowest tier that still reaches back far
+ * enough and that has no more entries in the span than the plot needs, so
+ * zooming out over hours reads about as many entries as showing the newest few
+ * seconds.
+ * 
+ * Entry e of tier k covers the values e * FACTOR^k up to (e + 1) * FACTOR^k - 1,
+ * counted from the first value added. The newest values that do not fill an
+ * entry yet are only in the lower tiers.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class HistoryPyramid
+{
+	// The number of entries of a tier combined into one of the next tier
+	public static final int FACTOR = 8;
+
+	private final int capacity;
+
+	private final float[][] min;
+	private final float[][] max;
+	private final float[][] mean;
+
+	// The number of entries ever added to each tier
+	private final long[] count;
+
+	// The entries of the tier below that are not yet combined
+	private final float[] pendingMin;
+	private final float[] pendingMax;
+	private final double[] pendingSum;
+	private final int[] pendingCount;
+
+	/**
+	 * Initialize a new HistoryPyramid.
+	 * 
+	 * @param capacity
+	 *            The number of entries of each tier.
+	 * @param tiers
+	 *            The number of tiers.
+	 */
+	public HistoryPyramid(int capacity, int tiers)
+	{
+		this.capacity = capacity;
+
+		min = new float[tiers][];
+		max = new float[tiers][];
+		mean = new float[tiers][];
+
+		// The entries of tier 0 are single values.
+		mean[0] = new float[capacity];
+		min[0] = mean[0];
+		max[0] = mean[0];
+
+		for (int i = 1; i < tiers; i++)
+		{
+			min[i] = new float[capacity];
+			max[i] = new float[capacity];
+			mean[i] = new float[capacity];
+		}
+
+		count = new long[tiers];
+
+		pendingMin = new float[tiers];
+		pendingMax = new float[tiers];
+		pendingSum = new double[tiers];
+		pendingCount = new int[tiers];
+	}
+
+	/**
+	 * Add the newest value.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	public void add(float value)
+	{
+		add(0, value, value, value);
+	}
+
+	/**
+	 * Remove every value.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < count.length; i++)
+		{
+			count[i] = 0;
+			pendingCount[i] = 0;
+		}
+	}
+
+	/**
+	 * Get the number of values added.
+	 * 
+	 * @return The number of values.
+	 */
+	public long getLength()
+	{
+		return count[0];
+	}
+
+	/**
+	 * Get the number of tiers.
+	 * 
+	 * @return The number of tiers.
+	 */
+	public int getTierCount()
+	{
+		return count.length;
+	}
+
+	/**
+	 * Get the number of values an entry of a tier covers.
+	 * 
+	 * @param tier
+	 *            The tier.
+	 * @return FACTOR to the power of the tier.
+	 */
+	public static long getEntryWidth(int tier)
+	{
+		long width = 1;
+
+		for (int i = 0; i < tier; i++)
+		{
+			width *= FACTOR;
+		}
+
+		return width;
+	}
+
+	/**
+	 * Get the first entry of a tier that is still kept.
+	 * 
+	 * @param tier
+	 *            The tier.
+	 * @return The number of the oldest entry.
+	 */
+	public long getFirstEntry(int tier)
+	{
+		return Math.max(0, count[tier] - capacity);
+	}
+
+	/**
+	 * Get the number of entries ever added to a tier.
+	 * 
+	 * @param tier
+	 *            The tier.
+	 * @return The number after the newest entry.
+	 */
+	public long getEndEntry(int tier)
+	{
+		return count[tier];
+	}
+
+	/**
+	 * Find the tier to draw a span of values from.
+	 * 
+	 * @param start
+	 *            The first value of the span.
+	 * @param span
+	 *            The number of values in the span.
+	 * @param maxEntries
+	 *            The most entries the span should be drawn with.
+	 * @return The lowest tier that reaches back to the start of the span and
+	 *         covers it with at most maxEntries entries, or the highest tier
+	 *         if none does.
+	 */
+	public int selectTier(long start, long span, int maxEntries)
+	{
+		long width = 1;
+
+		for (int i = 0; i < count.length; i++)
+		{
+			if (span <= width * maxEntries
+					&& getFirstEntry(i) * width <= Math.max(0, start))
+			{
+				return i;
+			}
+
+			width *= FACTOR;
+		}
+
+		return count.length - 1;
+	}
+
+	/**
+	 * Get the min of an entry.
+	 * 
+	 * @param tier
+	 *            The tier.
+	 * @param entry
+	 *            The number of the entry, between getFirstEntry() and
+	 *            getEndEntry().
+	 * @return The smallest value the entry covers.
+	 */
+	public float getMin(int tier, long entry)
+	{
+		return min[tier][(int) (entry % capacity)];
+	}
+
+	/**
+	 * Get the max of an entry.
+	 * 
+	 * @param tier
+	 *            The tier.
+	 * @param entry
+	 *            The number of the entry, between getFirstEntry() and
+	 *            getEndEntry().
+	 * @return The largest value the entry covers.
+	 */
+	public float getMax(int tier, long entry)
+	{
+		return max[tier][(int) (entry % capacity)];
+	}
+
+	/**
+	 * Get the mean of an entry.
+	 * 
+	 * @param tier
+	 *            The tier.
+	 * @param entry
+	 *            The number of the entry, between getFirstEntry() and
+	 *            getEndEntry().
+	 * @return The mean of the values the entry covers.
+	 */
+	public float getMean(int tier, long entry)
+	{
+		return mean[tier][(int) (entry % capacity)];
+	}
+
+	/**
+	 * Add an entry to a tier and combine it into the tier above.
+	 */
+	private void add(int tier, float entryMin, float entryMax, float entryMean)
+	{
+		int i = (int) (count[tier] % capacity);
+
+		min[tier][i] = entryMin;
+		max[tier][i] = entryMax;
+		mean[tier][i] = entryMean;
+
+		count[tier]++;
+
+		int up = tier + 1;
+
+		if (up == count.length)
+		{
+			return;
+		}
+
+		if (pendingCount[up] == 0)
+		{
+			pendingMin[up] = entryMin;
+			pendingMax[up] = entryMax;
+			pendingSum[up] = 0;
+		}
+		else
+		{
+			pendingMin[up] = Math.min(pendingMin[up], entryMin);
+			pendingMax[up] = Math.max(pendingMax[up], entryMax);
+		}
+
+		pendingSum[up] += entryMean;
+		pendingCount[up]++;
+
+		if (pendingCount[up] == FACTOR)
+		{
+			pendingCount[up] = 0;
+
+			add(up, pendingMin[up], pendingMax[up],
+					(float) (pendingSum[up] / FACTOR));
+		}
+	}
+}
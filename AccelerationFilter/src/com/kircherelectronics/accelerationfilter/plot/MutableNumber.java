@@ -0,0 +1,73 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A Number whose value can be changed. The series hand one of these to
+ * androidplot for every point instead of boxing each value.
+ * 
+ * Sharing one instance on an axis is only safe while the plot fixes that axis
+ * with BoundaryMode.FIXED. With an automatic boundary androidplot 0.5.2
+ * (XYPlot.calculateMinMaxVals()) keeps references to the Numbers it is given
+ * as the running minimum and maximum, which would change under it as the next
+ * point is read.
+ * 
+ * RingBufferXYSeries and DecimatedXYSeries share one for x and y and are drawn
+ * by DynamicLinePlot, which fixes both axes. ArrayXYSeries shares one for y
+ * only, DynamicBarPlot fixes its range but auto-ranges its domain.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+class MutableNumber extends Number
+{
+	private static final long serialVersionUID = 1L;
+
+	double value;
+
+	@Override
+	public int intValue()
+	{
+		return (int) value;
+	}
+
+	@Override
+	public long longValue()
+	{
+		return (long) value;
+	}
+
+	@Override
+	public float floatValue()
+	{
+		return (float) value;
+	}
+
+	@Override
+	public double doubleValue()
+	{
+		return value;
+	}
+
+	@Override
+	public String toString()
+	{
+		return Double.toString(value);
+	}
+}
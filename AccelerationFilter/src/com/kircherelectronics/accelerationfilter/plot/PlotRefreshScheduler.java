@@ -0,0 +1,292 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+import java.util.ArrayList;
+
+import android.os.Build;
+import android.os.Handler;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Redraws plots on display frames, and only when their data has changed. A
+ * target is marked dirty with invalidate() whenever new data arrives; any
+ * number of invalidations between two frames result in one refresh. Each target
+ * has its own minimum interval between refreshes, so a plot that does not need
+ * to move faster than a few times a second does not draw on every frame.
+ * 
+ * Nothing is posted while no target is dirty, so an idle screen costs nothing.
+ * 
+ * All methods must be called on the thread of the FrameClock, usually the UI
+ * thread.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class PlotRefreshScheduler implements FrameClock.Callback
+{
+	/**
+	 * Something that is refreshed by the scheduler.
+	 */
+	public interface Target
+	{
+		/**
+		 * Redraw with the newest data.
+		 */
+		public void onRefresh();
+	}
+
+	private FrameClock clock;
+
+	private ArrayList<Entry> entries = new ArrayList<Entry>();
+
+	private boolean started = false;
+
+	// True while a frame callback is posted
+	private boolean posted = false;
+
+	/**
+	 * Initialize a new PlotRefreshScheduler on the vsync of the display, or on
+	 * a Handler before Jelly Bean. Must be created on the UI thread.
+	 */
+	public PlotRefreshScheduler()
+	{
+		this(createFrameClock());
+	}
+
+	/**
+	 * Initialize a new PlotRefreshScheduler.
+	 * 
+	 * @param clock
+	 *            The source of frames.
+	 */
+	public PlotRefreshScheduler(FrameClock clock)
+	{
+		this.clock = clock;
+	}
+
+	/**
+	 * Add a target.
+	 * 
+	 * @param name
+	 *            The name of the target in the report.
+	 * @param target
+	 *            The target.
+	 * @param minInterval
+	 *            The least time between two refreshes in milliseconds, 0 to
+	 *            refresh on every frame.
+	 * @return The id of the target for invalidate().
+	 */
+	public int addTarget(String name, Target target, long minInterval)
+	{
+		Entry entry = new Entry();
+
+		entry.name = name;
+		entry.target = target;
+		entry.minInterval = minInterval * 1000000L;
+
+		entries.add(entry);
+
+		return entries.size() - 1;
+	}
+
+	/**
+	 * Mark a target dirty so it is refreshed on a coming frame.
+	 * 
+	 * @param id
+	 *            The id of the target.
+	 */
+	public void invalidate(int id)
+	{
+		Entry entry = entries.get(id);
+
+		if (entry.dirty)
+		{
+			entry.merged++;
+		}
+
+		entry.dirty = true;
+
+		schedule(0);
+	}
+
+	/**
+	 * Mark every target dirty.
+	 */
+	public void invalidateAll()
+	{
+		for (int i = 0; i < entries.size(); i++)
+		{
+			invalidate(i);
+		}
+	}
+
+	/**
+	 * Start refreshing. Targets that are dirty are refreshed on the next frame.
+	 */
+	public void start()
+	{
+		started = true;
+
+		for (int i = 0; i < entries.size(); i++)
+		{
+			if (entries.get(i).dirty)
+			{
+				schedule(0);
+			}
+		}
+	}
+
+	/**
+	 * Stop refreshing. Invalidations are still recorded.
+	 */
+	public void stop()
+	{
+		started = false;
+
+		if (posted)
+		{
+			clock.removeFrameCallback(this);
+
+			posted = false;
+		}
+	}
+
+	@Override
+	public void doFrame(long frameTimeNanos)
+	{
+		posted = false;
+
+		if (!started)
+		{
+			return;
+		}
+
+		long wait = Long.MAX_VALUE;
+
+		for (int i = 0; i < entries.size(); i++)
+		{
+			Entry entry = entries.get(i);
+
+			if (!entry.dirty)
+			{
+				continue;
+			}
+
+			long elapsed = frameTimeNanos - entry.lastRefresh;
+
+			if (entry.refreshed && elapsed < entry.minInterval)
+			{
+				// Not due yet, come back when it is.
+				wait = Math.min(wait, entry.minInterval - elapsed);
+
+				continue;
+			}
+
+			entry.dirty = false;
+			entry.refreshed = true;
+			entry.lastRefresh = frameTimeNanos;
+			entry.refreshes++;
+
+			entry.target.onRefresh();
+		}
+
+		if (wait != Long.MAX_VALUE)
+		{
+			schedule((wait + 999999) / 1000000);
+		}
+	}
+
+	/**
+	 * Write the number of refreshes of each target and the number of
+	 * invalidations that were merged into another refresh.
+	 * 
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		report.append("Refreshes");
+
+		for (int i = 0; i < entries.size(); i++)
+		{
+			Entry entry = entries.get(i);
+
+			report.append((i == 0) ? ": " : ", ");
+			report.append(entry.name);
+			report.append(' ');
+			report.append(entry.refreshes);
+			report.append(" (");
+			report.append(entry.merged);
+			report.append(" merged)");
+		}
+
+		report.append('\n');
+	}
+
+	/**
+	 * Reset the counts of the report.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < entries.size(); i++)
+		{
+			entries.get(i).refreshes = 0;
+			entries.get(i).merged = 0;
+		}
+	}
+
+	private void schedule(long delayMillis)
+	{
+		if (started && !posted)
+		{
+			posted = true;
+
+			clock.postFrameCallback(this, delayMillis);
+		}
+	}
+
+	private static FrameClock createFrameClock()
+	{
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+		{
+			return new ChoreographerFrameClock();
+		}
+
+		return new HandlerFrameClock(new Handler());
+	}
+
+	/**
+	 * The state of a target.
+	 */
+	private static class Entry
+	{
+		String name;
+		Target target;
+
+		// In nanoseconds
+		long minInterval;
+		long lastRefresh;
+
+		boolean dirty;
+		boolean refreshed;
+
+		long refreshes;
+		long merged;
+	}
+}
@@ -0,0 +1,238 @@
+package com.kircherelectronics.accelerationfilter.plot;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import android.graphics.Canvas;
+
+import com.androidplot.Plot;
+import com.androidplot.PlotEvent;
+import com.androidplot.PlotListener;
+import com.androidplot.series.XYSeries;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * An XYSeries that keeps the newest values in a double[] ring buffer. The x
+ * value of a point is its index, oldest first, like a SimpleXYSeries with
+ * Y_VALS_ONLY. Adding a value does not allocate, and the window can be
+ * resized without rebuilding the series.
+ *
+ * androidplot reads points as Numbers, so getX() and getY() each return one
+ * reused Number that is overwritten by the next call. The renderer converts a
+ * point to pixels before reading the next one, so boxing is never needed. The
+ * plot must fix both of its axes, see MutableNumber.
+ *
+ * Like SimpleXYSeries the series is a PlotListener and holds a read lock while
+ * the plot draws, so values are never changed in the middle of a frame.
+ *
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class RingBufferXYSeries implements XYSeries, PlotListener
+{
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// The reused points handed to androidplot
+	private final MutableNumber x = new MutableNumber();
+	private final MutableNumber y = new MutableNumber();
+
+	private String title;
+
+	private double[] values;
+
+	// The index of the oldest value
+	private int head;
+
+	private int size;
+
+	/**
+	 * Initialize a new RingBufferXYSeries.
+	 *
+	 * @param title
+	 *            The title of the series.
+	 * @param capacity
+	 *            The number of values kept.
+	 */
+	public RingBufferXYSeries(String title, int capacity)
+	{
+		this.title = title;
+
+		values = new double[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Add a value, replacing the oldest value if the series is full.
+	 *
+	 * @param value
+	 *            The value.
+	 */
+	public void addLast(double value)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			if (size < values.length)
+			{
+				values[(head + size) % values.length] = value;
+
+				size++;
+			}
+			else
+			{
+				values[head] = value;
+
+				head = (head + 1) % values.length;
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove every value.
+	 */
+	public void clear()
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			head = 0;
+			size = 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Change the number of values kept. The newest values that fit are kept.
+	 *
+	 * @param capacity
+	 *            The number of values kept.
+	 */
+	public void setCapacity(int capacity)
+	{
+		capacity = Math.max(1, capacity);
+
+		lock.writeLock().lock();
+
+		try
+		{
+			if (capacity == values.length)
+			{
+				return;
+			}
+
+			double[] resized = new double[capacity];
+
+			int kept = Math.min(size, capacity);
+
+			for (int i = 0; i < kept; i++)
+			{
+				resized[i] = values[(head + size - kept + i) % values.length];
+			}
+
+			values = resized;
+
+			head = 0;
+			size = kept;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the number of values kept.
+	 *
+	 * @return The capacity of the series.
+	 */
+	public int getCapacity()
+	{
+		return values.length;
+	}
+
+	/**
+	 * Get a value without boxing it.
+	 *
+	 * @param index
+	 *            The index of the value, 0 is the oldest.
+	 * @return The value.
+	 */
+	public double getValue(int index)
+	{
+		return values[(head + index) % values.length];
+	}
+
+	public void setTitle(String title)
+	{
+		this.title = title;
+	}
+
+	@Override
+	public String getTitle()
+	{
+		return title;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public Number getX(int index)
+	{
+		x.value = index;
+
+		return x;
+	}
+
+	@Override
+	public Number getY(int index)
+	{
+		y.value = getValue(index);
+
+		return y;
+	}
+
+	@Override
+	public void onPlotUpdate(PlotEvent event)
+	{
+	}
+
+	@Override
+	public void onBeforeDraw(Plot plot, Canvas canvas)
+	{
+		lock.readLock().lock();
+	}
+
+	@Override
+	public void onAfterDraw(Plot plot, Canvas canvas)
+	{
+		lock.readLock().unlock();
+	}
+}
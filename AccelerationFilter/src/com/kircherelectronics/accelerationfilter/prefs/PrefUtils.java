@@ -4,6 +4,10 @@ public class PrefUtils
 {
 	public final static String FILTER_PREFS = "filter_prefs";
 	public final static String SENSOR_PREFS = "sensor_prefs";
+	public final static String METRICS_PREFS = "metrics_prefs";
+	public final static String LOG_PREFS = "log_prefs";
+	public final static String VECTOR_PREFS = "vector_prefs";
+	public final static String NOISE_PREFS = "noise_prefs";
 	public final static String LPF_ACTIVE_PREF = "lpf_active";
 	public final static String MEAN_FILTER_ACTIVE_PREF = "mean_filter_active";
 	public final static String LPF_TIME_CONSTANT = "lpf_time_constant";
@@ -13,4 +17,24 @@ public class PrefUtils
 	public final static String SENSOR_FREQUENCY_SLOW = "Slow";
 	public final static String SENSOR_FREQUENCY_MEDIUM = "Medium";
 	public final static String SENSOR_FREQUENCY_FAST = "Fast";
+	public final static String SENSOR_MULTI_CAPTURE_PREF = "sensor_multi_capture";
+	public final static String METRICS_OVERLAY_ACTIVE = "metrics_overlay_active";
+	public final static String LOG_FORMAT_PREF = "log_format";
+	public final static String LOG_FORMAT_CSV = "CSV";
+	public final static String LOG_FORMAT_BINARY = "Binary";
+	public final static String LOG_FORMAT_COMPRESSED = "Compressed";
+	public final static String LOG_CAPTURE_ALL_PREF = "log_capture_all";
+	public final static String LOG_SEGMENT_SIZE_PREF = "log_segment_size";
+	public final static String LOG_SEGMENT_DURATION_PREF = "log_segment_duration";
+	public final static String LOG_RETENTION_SIZE_PREF = "log_retention_size";
+	public final static String LOG_RETENTION_AGE_PREF = "log_retention_age";
+	public final static String VECTOR_TRAIL_ACTIVE = "vector_trail_active";
+	public final static String VECTOR_HEATMAP_ACTIVE = "vector_heatmap_active";
+	public final static String NOISE_STATISTIC_PREF = "noise_statistic";
+	public final static String NOISE_STATISTIC_STD_DEV = "StdDev";
+	public final static String NOISE_STATISTIC_P50 = "p50";
+	public final static String NOISE_STATISTIC_P95 = "p95";
+	public final static String NOISE_STATISTIC_P99 = "p99";
+	public final static String NOISE_STATISTIC_PEAK_TO_PEAK = "PeakToPeak";
+	public final static String NOISE_STATISTIC_CREST_FACTOR = "CrestFactor";
 }
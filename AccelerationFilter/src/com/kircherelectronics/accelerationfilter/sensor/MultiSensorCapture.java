@@ -0,0 +1,341 @@
+package com.kircherelectronics.accelerationfilter.sensor;
+
+import java.util.ArrayList;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.os.Handler;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Captures several sensors at once and joins their samples by time stamp. The
+ * first sensor is the primary stream, for example the accelerometer. Every
+ * primary sample becomes one joined record with the values of the other
+ * sensors at its time stamp, either from the nearest sample or interpolated
+ * between the samples around it.
+ * 
+ * Each sensor is buffered in its own SensorStream. A primary sample is joined
+ * once every other stream has a sample at or after its time stamp, so the
+ * values around it are known. A stream that stops delivering holds the join
+ * back for at most the join timeout, after which its newest values are used.
+ * Sensors the device does not have are left out of the record.
+ * 
+ * The joined record is written into one reused array, nothing is allocated
+ * per event. Not thread safe, the listener is called on the thread the sensor
+ * events are delivered on.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class MultiSensorCapture implements SensorEventListener
+{
+	/**
+	 * Receives the joined records.
+	 */
+	public interface Listener
+	{
+		/**
+		 * A joined record is ready.
+		 * 
+		 * @param timestamp
+		 *            The time stamp of the primary sample in nanoseconds.
+		 * @param values
+		 *            The values of each stream in order, only valid during
+		 *            the call. The values of a stream that has no samples yet
+		 *            are NaN.
+		 * @param count
+		 *            The number of values.
+		 */
+		public void onJoinedSample(long timestamp, float[] values, int count);
+	}
+
+	// Join modes
+	public final static int JOIN_NEAREST = 0;
+	public final static int JOIN_INTERPOLATE = 1;
+
+	private final SensorHub sensorHub;
+
+	private final Listener listener;
+
+	private final SensorStream[] streams;
+
+	// The time a primary sample can wait for the other streams in nanoseconds
+	private final long joinTimeout;
+
+	private final boolean interpolate;
+
+	// Reused for each event and each joined record
+	private final float[] eventValues;
+	private final float[] joined;
+
+	private final int joinedCount;
+
+	// The sequence number of the next primary sample to join
+	private long nextJoin;
+
+	// Primary samples that left the ring before they could be joined
+	private long droppedCount;
+
+	private boolean registered = false;
+
+	/**
+	 * Initialize a new MultiSensorCapture.
+	 * 
+	 * @param sensorHub
+	 *            The hub the sensors are subscribed through.
+	 * @param sensorTypes
+	 *            The Sensor type of each stream, the primary stream first.
+	 * @param names
+	 *            The name of each stream in reports.
+	 * @param capacity
+	 *            The number of samples kept of each stream.
+	 * @param joinMode
+	 *            JOIN_NEAREST or JOIN_INTERPOLATE.
+	 * @param joinTimeout
+	 *            The time a primary sample can wait for the other streams in
+	 *            milliseconds.
+	 * @param listener
+	 *            Receives the joined records.
+	 */
+	public MultiSensorCapture(SensorHub sensorHub, int[] sensorTypes,
+			String[] names, int capacity, int joinMode, long joinTimeout,
+			Listener listener)
+	{
+		this.sensorHub = sensorHub;
+		this.listener = listener;
+		this.interpolate = joinMode == JOIN_INTERPOLATE;
+		this.joinTimeout = joinTimeout * 1000000;
+
+		ArrayList<SensorStream> present = new ArrayList<SensorStream>();
+
+		for (int i = 0; i < sensorTypes.length; i++)
+		{
+			Sensor sensor = sensorHub.getDefaultSensor(sensorTypes[i]);
+
+			// The primary stream is kept even if it is missing, so the
+			// record layout does not depend on it.
+			if (sensor != null || i == 0)
+			{
+				present.add(new SensorStream(names[i], sensorTypes[i], 3,
+						capacity));
+			}
+		}
+
+		streams = present.toArray(new SensorStream[present.size()]);
+
+		int count = 0;
+
+		for (int i = 0; i < streams.length; i++)
+		{
+			count += streams[i].getAxisCount();
+		}
+
+		joinedCount = count;
+		joined = new float[count];
+		eventValues = new float[3];
+	}
+
+	/**
+	 * Subscribe to the sensors and start joining.
+	 * 
+	 * @param delay
+	 *            The SensorManager delay of every sensor.
+	 * @param handler
+	 *            The handler the events are delivered on or null for the main
+	 *            thread.
+	 */
+	public void start(int delay, Handler handler)
+	{
+		stop();
+
+		for (int i = 0; i < streams.length; i++)
+		{
+			streams[i].reset();
+		}
+
+		nextJoin = 0;
+		droppedCount = 0;
+
+		for (int i = 0; i < streams.length; i++)
+		{
+			sensorHub.subscribe(this, streams[i].getSensorType(), delay,
+					handler);
+		}
+
+		registered = true;
+	}
+
+	/**
+	 * Unsubscribe from the sensors.
+	 */
+	public void stop()
+	{
+		if (registered)
+		{
+			sensorHub.unsubscribe(this);
+
+			registered = false;
+		}
+	}
+
+	/**
+	 * Get the streams in the order of the joined record.
+	 * 
+	 * @return The streams, the primary stream first.
+	 */
+	public SensorStream[] getStreams()
+	{
+		return streams;
+	}
+
+	/**
+	 * Get how the other streams are sampled at a primary time stamp.
+	 * 
+	 * @return JOIN_NEAREST or JOIN_INTERPOLATE.
+	 */
+	public int getJoinMode()
+	{
+		return (interpolate) ? JOIN_INTERPOLATE : JOIN_NEAREST;
+	}
+
+	/**
+	 * Get the number of values of a joined record.
+	 * 
+	 * @return The number of values.
+	 */
+	public int getJoinedCount()
+	{
+		return joinedCount;
+	}
+
+	@Override
+	public void onSensorChanged(SensorEvent event)
+	{
+		long receivedTime = System.nanoTime();
+
+		int type = event.sensor.getType();
+
+		for (int i = 0; i < streams.length; i++)
+		{
+			if (streams[i].getSensorType() == type)
+			{
+				System.arraycopy(event.values, 0, eventValues, 0,
+						Math.min(event.values.length, eventValues.length));
+
+				streams[i].add(event.timestamp, eventValues, receivedTime);
+
+				join();
+
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy)
+	{
+
+	}
+
+	/**
+	 * Write the latency and jitter of every stream.
+	 * 
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		report.append("Sensor stream (ms) count    p50    p99    max");
+		report.append('\n');
+
+		for (int i = 0; i < streams.length; i++)
+		{
+			streams[i].writeReport(report);
+		}
+
+		if (droppedCount > 0)
+		{
+			report.append(droppedCount);
+			report.append(" samples dropped before they were joined");
+			report.append('\n');
+		}
+	}
+
+	/**
+	 * Join every primary sample the other streams have caught up with.
+	 */
+	private void join()
+	{
+		SensorStream primary = streams[0];
+
+		long count = primary.getCount();
+
+		if (count - nextJoin > primary.getCapacity())
+		{
+			droppedCount += count - primary.getCapacity() - nextJoin;
+
+			nextJoin = count - primary.getCapacity();
+		}
+
+		long newest = primary.getNewestTimestamp();
+
+		while (nextJoin < count)
+		{
+			long timestamp = primary.getTimestamp(nextJoin);
+
+			if (newest - timestamp < joinTimeout && !isCaughtUp(timestamp))
+			{
+				return;
+			}
+
+			primary.getValues(nextJoin, joined, 0);
+
+			int offset = primary.getAxisCount();
+
+			for (int i = 1; i < streams.length; i++)
+			{
+				streams[i].sample(timestamp, interpolate, joined, offset);
+
+				offset += streams[i].getAxisCount();
+			}
+
+			nextJoin++;
+
+			listener.onJoinedSample(timestamp, joined, joinedCount);
+		}
+	}
+
+	/**
+	 * Indicate if every other stream has a sample at or after a time stamp.
+	 */
+	private boolean isCaughtUp(long timestamp)
+	{
+		for (int i = 1; i < streams.length; i++)
+		{
+			if (streams[i].getNewestTimestamp() < timestamp)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
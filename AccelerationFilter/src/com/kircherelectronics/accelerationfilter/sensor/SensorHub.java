@@ -0,0 +1,332 @@
+package com.kircherelectronics.accelerationfilter.sensor;
+
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.Looper;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Shares sensor registrations across the process. The hub holds one
+ * SensorManager registration for each sensor, delay and delivery thread, and
+ * hands each event to every listener subscribed to it. A registration is
+ * reference counted by its subscribers: it is made when the first listener
+ * subscribes and removed when the last one unsubscribes.
+ * 
+ * The subscribers of a registration are kept in an array that is only
+ * replaced when a listener subscribes or unsubscribes, so delivering an event
+ * walks a plain array without locking or allocating. A listener that
+ * unsubscribes from another thread may still get the event being delivered.
+ * Listeners that want events on different threads get separate
+ * registrations, since a registration delivers on one thread.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class SensorHub
+{
+	private static SensorHub instance;
+
+	private final SensorManager sensorManager;
+
+	// Guarded by this
+	private final ArrayList<Registration> registrations;
+
+	/**
+	 * Get the hub of the process.
+	 * 
+	 * @param context
+	 *            Any context of the application.
+	 * @return The sensor hub.
+	 */
+	public static synchronized SensorHub getInstance(Context context)
+	{
+		if (instance == null)
+		{
+			instance = new SensorHub((SensorManager) context
+					.getApplicationContext().getSystemService(
+							Context.SENSOR_SERVICE));
+		}
+
+		return instance;
+	}
+
+	private SensorHub(SensorManager sensorManager)
+	{
+		this.sensorManager = sensorManager;
+
+		registrations = new ArrayList<Registration>();
+	}
+
+	/**
+	 * Get the default sensor of a type.
+	 * 
+	 * @param sensorType
+	 *            The Sensor type.
+	 * @return The sensor or null if the device does not have one.
+	 */
+	public Sensor getDefaultSensor(int sensorType)
+	{
+		return sensorManager.getDefaultSensor(sensorType);
+	}
+
+	/**
+	 * Subscribe a listener to a sensor. A listener that is already subscribed
+	 * to the same registration is not added again.
+	 * 
+	 * @param listener
+	 *            The listener.
+	 * @param sensorType
+	 *            The Sensor type.
+	 * @param delay
+	 *            The SensorManager delay.
+	 * @param handler
+	 *            The handler the events are delivered on or null for the main
+	 *            thread.
+	 * @return False if the device does not have the sensor.
+	 */
+	public synchronized boolean subscribe(SensorEventListener listener,
+			int sensorType, int delay, Handler handler)
+	{
+		Sensor sensor = sensorManager.getDefaultSensor(sensorType);
+
+		if (sensor == null)
+		{
+			return false;
+		}
+
+		Looper looper = (handler != null) ? handler.getLooper() : Looper
+				.getMainLooper();
+
+		Registration registration = null;
+
+		for (int i = 0; i < registrations.size(); i++)
+		{
+			Registration r = registrations.get(i);
+
+			if (r.sensorType == sensorType && r.delay == delay
+					&& r.looper == looper)
+			{
+				registration = r;
+
+				break;
+			}
+		}
+
+		if (registration == null)
+		{
+			registration = new Registration(sensorType, delay, looper);
+
+			if (!sensorManager.registerListener(registration, sensor, delay,
+					handler))
+			{
+				return false;
+			}
+
+			registrations.add(registration);
+		}
+
+		registration.add(listener);
+
+		return true;
+	}
+
+	/**
+	 * Unsubscribe a listener from a sensor.
+	 * 
+	 * @param listener
+	 *            The listener.
+	 * @param sensorType
+	 *            The Sensor type.
+	 */
+	public synchronized void unsubscribe(SensorEventListener listener,
+			int sensorType)
+	{
+		for (int i = registrations.size() - 1; i >= 0; i--)
+		{
+			Registration registration = registrations.get(i);
+
+			if (registration.sensorType == sensorType)
+			{
+				remove(registration, listener, i);
+			}
+		}
+	}
+
+	/**
+	 * Unsubscribe a listener from every sensor.
+	 * 
+	 * @param listener
+	 *            The listener.
+	 */
+	public synchronized void unsubscribe(SensorEventListener listener)
+	{
+		for (int i = registrations.size() - 1; i >= 0; i--)
+		{
+			remove(registrations.get(i), listener, i);
+		}
+	}
+
+	/**
+	 * Get the number of SensorManager registrations held.
+	 * 
+	 * @return The number of registrations.
+	 */
+	public synchronized int getRegistrationCount()
+	{
+		return registrations.size();
+	}
+
+	/**
+	 * Write the registrations and the number of subscribers of each.
+	 * 
+	 * @param report
+	 *            The report to append to.
+	 */
+	public synchronized void writeReport(StringBuilder report)
+	{
+		report.append("Sensor hub, ");
+		report.append(registrations.size());
+		report.append(" registrations\n");
+
+		for (int i = 0; i < registrations.size(); i++)
+		{
+			Registration registration = registrations.get(i);
+
+			report.append("Type ");
+			report.append(registration.sensorType);
+			report.append(" delay ");
+			report.append(registration.delay);
+			report.append(": ");
+			report.append(registration.subscribers.length);
+			report.append(" subscribers\n");
+		}
+	}
+
+	/**
+	 * Remove a listener from a registration and drop the registration when it
+	 * has no subscribers left.
+	 */
+	private void remove(Registration registration,
+			SensorEventListener listener, int index)
+	{
+		if (registration.remove(listener)
+				&& registration.subscribers.length == 0)
+		{
+			sensorManager.unregisterListener(registration);
+
+			registrations.remove(index);
+		}
+	}
+
+	/**
+	 * One SensorManager registration and its subscribers.
+	 */
+	private static class Registration implements SensorEventListener
+	{
+		final int sensorType;
+		final int delay;
+		final Looper looper;
+
+		// Replaced, never changed, so events can be delivered without locking
+		volatile SensorEventListener[] subscribers = new SensorEventListener[0];
+
+		Registration(int sensorType, int delay, Looper looper)
+		{
+			this.sensorType = sensorType;
+			this.delay = delay;
+			this.looper = looper;
+		}
+
+		void add(SensorEventListener listener)
+		{
+			SensorEventListener[] current = subscribers;
+
+			for (int i = 0; i < current.length; i++)
+			{
+				if (current[i] == listener)
+				{
+					return;
+				}
+			}
+
+			SensorEventListener[] grown;
+
+			grown = new SensorEventListener[current.length + 1];
+
+			System.arraycopy(current, 0, grown, 0, current.length);
+			grown[current.length] = listener;
+
+			subscribers = grown;
+		}
+
+		boolean remove(SensorEventListener listener)
+		{
+			SensorEventListener[] current = subscribers;
+
+			for (int i = 0; i < current.length; i++)
+			{
+				if (current[i] == listener)
+				{
+					SensorEventListener[] shrunk;
+
+					shrunk = new SensorEventListener[current.length - 1];
+
+					System.arraycopy(current, 0, shrunk, 0, i);
+					System.arraycopy(current, i + 1, shrunk, i, shrunk.length
+							- i);
+
+					subscribers = shrunk;
+
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public void onSensorChanged(SensorEvent event)
+		{
+			SensorEventListener[] current = subscribers;
+
+			for (int i = 0; i < current.length; i++)
+			{
+				current[i].onSensorChanged(event);
+			}
+		}
+
+		@Override
+		public void onAccuracyChanged(Sensor sensor, int accuracy)
+		{
+			SensorEventListener[] current = subscribers;
+
+			for (int i = 0; i < current.length; i++)
+			{
+				current[i].onAccuracyChanged(sensor, accuracy);
+			}
+		}
+	}
+}
@@ -0,0 +1,379 @@
+package com.kircherelectronics.accelerationfilter.sensor;
+
+import com.kircherelectronics.accelerationfilter.metrics.LatencyHistogram;
+import com.kircherelectronics.accelerationfilter.metrics.LatencyTracker;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Buffers the samples of one sensor in a ring of primitive arrays, so the
+ * stream can be sampled at any time stamp it still holds without allocating.
+ * A stream can be sampled at the nearest sample or linearly interpolated
+ * between the two samples around a time stamp.
+ * 
+ * The delivery latency (the time from the sensor time stamp to the listener)
+ * and the jitter (the difference between each sample interval and the mean
+ * interval) of the stream are recorded in microseconds.
+ * 
+ * Not thread safe, a stream must be used on the thread its sensor events are
+ * delivered on.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class SensorStream
+{
+	// Anything slower than a minute is clamped.
+	private final static long HIGHEST_TRACKABLE_MICROS = 60 * 1000 * 1000;
+
+	// Sensor timestamps further than this from System.nanoTime() are assumed
+	// to be on a different clock.
+	private final static long MAX_CLOCK_SKEW_NANOS = 10 * 1000000000L;
+
+	// The smoothing factor of the mean sample interval
+	private final static double INTERVAL_ALPHA = 1.0 / 64;
+
+	private final String name;
+
+	private final int sensorType;
+	private final int axes;
+
+	// The capacity of the ring is a power of two
+	private final int mask;
+
+	private final long[] timestamps;
+	private final float[] values;
+
+	// The number of samples added since the stream was reset
+	private long count;
+
+	private long outOfOrderCount;
+
+	private boolean sensorClockMismatch = false;
+
+	// The mean sample interval in nanoseconds
+	private double meanInterval;
+
+	private LatencyHistogram latency;
+	private LatencyHistogram jitter;
+
+	/**
+	 * Initialize a new SensorStream.
+	 * 
+	 * @param name
+	 *            The name of the stream in reports.
+	 * @param sensorType
+	 *            The Sensor type of the stream.
+	 * @param axes
+	 *            The number of values of a sample.
+	 * @param capacity
+	 *            The number of samples kept, rounded up to a power of two.
+	 */
+	public SensorStream(String name, int sensorType, int axes, int capacity)
+	{
+		this.name = name;
+		this.sensorType = sensorType;
+		this.axes = axes;
+
+		int size = 1;
+
+		while (size < capacity)
+		{
+			size <<= 1;
+		}
+
+		mask = size - 1;
+
+		timestamps = new long[size];
+		values = new float[size * axes];
+
+		latency = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+		jitter = new LatencyHistogram(HIGHEST_TRACKABLE_MICROS);
+	}
+
+	/**
+	 * Add a sample. A sample older than the newest sample is dropped.
+	 * 
+	 * @param timestamp
+	 *            The sensor time stamp of the sample in nanoseconds.
+	 * @param sample
+	 *            The values of the sample.
+	 * @param receivedTime
+	 *            The System.nanoTime() the sample was received at.
+	 * @return True if the sample was added.
+	 */
+	public boolean add(long timestamp, float[] sample, long receivedTime)
+	{
+		if (count > 0)
+		{
+			long interval = timestamp - getNewestTimestamp();
+
+			if (interval < 0)
+			{
+				outOfOrderCount++;
+
+				return false;
+			}
+
+			if (count == 1)
+			{
+				meanInterval = interval;
+			}
+			else
+			{
+				jitter.recordValue((long) Math.abs(interval - meanInterval) / 1000);
+
+				meanInterval += INTERVAL_ALPHA * (interval - meanInterval);
+			}
+		}
+
+		long skew = receivedTime - timestamp;
+
+		if (skew < 0 || skew > MAX_CLOCK_SKEW_NANOS)
+		{
+			sensorClockMismatch = true;
+		}
+		else
+		{
+			latency.recordValue(skew / 1000);
+		}
+
+		int slot = (int) (count & mask);
+
+		timestamps[slot] = timestamp;
+		System.arraycopy(sample, 0, values, slot * axes, axes);
+
+		count++;
+
+		return true;
+	}
+
+	/**
+	 * Forget the samples and the recorded latencies.
+	 */
+	public void reset()
+	{
+		count = 0;
+		outOfOrderCount = 0;
+		meanInterval = 0;
+
+		sensorClockMismatch = false;
+
+		latency.reset();
+		jitter.reset();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getSensorType()
+	{
+		return sensorType;
+	}
+
+	public int getAxisCount()
+	{
+		return axes;
+	}
+
+	public int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	/**
+	 * Get the number of samples added since the stream was reset. The sample
+	 * with sequence number n is kept until sample n + capacity is added.
+	 * 
+	 * @return The number of samples.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Get the time stamp of a sample that is still kept.
+	 * 
+	 * @param sequence
+	 *            The sequence number of the sample.
+	 * @return The time stamp in nanoseconds.
+	 */
+	public long getTimestamp(long sequence)
+	{
+		return timestamps[(int) (sequence & mask)];
+	}
+
+	/**
+	 * Copy the values of a sample that is still kept.
+	 * 
+	 * @param sequence
+	 *            The sequence number of the sample.
+	 * @param out
+	 *            The array to copy to.
+	 * @param offset
+	 *            The index of the first value in out.
+	 */
+	public void getValues(long sequence, float[] out, int offset)
+	{
+		System.arraycopy(values, (int) (sequence & mask) * axes, out, offset,
+				axes);
+	}
+
+	/**
+	 * Get the time stamp of the newest sample.
+	 * 
+	 * @return The time stamp in nanoseconds or Long.MIN_VALUE if there are no
+	 *         samples.
+	 */
+	public long getNewestTimestamp()
+	{
+		return (count > 0) ? getTimestamp(count - 1) : Long.MIN_VALUE;
+	}
+
+	/**
+	 * Sample the stream at a time stamp. A time stamp outside of the kept
+	 * samples gets the oldest or newest sample.
+	 * 
+	 * @param timestamp
+	 *            The time stamp in nanoseconds.
+	 * @param interpolate
+	 *            Interpolate between the samples around the time stamp if
+	 *            true, use the nearest sample if false.
+	 * @param out
+	 *            The array to write the values to.
+	 * @param offset
+	 *            The index of the first value in out.
+	 * @return False if there are no samples, out is filled with NaN.
+	 */
+	public boolean sample(long timestamp, boolean interpolate, float[] out,
+			int offset)
+	{
+		if (count == 0)
+		{
+			for (int i = 0; i < axes; i++)
+			{
+				out[offset + i] = Float.NaN;
+			}
+
+			return false;
+		}
+
+		long oldest = Math.max(0, count - (mask + 1));
+
+		// Find the last sample at or before the time stamp.
+		long low = oldest;
+		long high = count - 1;
+
+		if (timestamp < getTimestamp(low))
+		{
+			getValues(low, out, offset);
+
+			return true;
+		}
+
+		while (low < high)
+		{
+			long middle = (low + high + 1) >>> 1;
+
+			if (getTimestamp(middle) <= timestamp)
+			{
+				low = middle;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		if (low == count - 1)
+		{
+			getValues(low, out, offset);
+
+			return true;
+		}
+
+		long t0 = getTimestamp(low);
+		long t1 = getTimestamp(low + 1);
+
+		int i0 = (int) (low & mask) * axes;
+		int i1 = (int) ((low + 1) & mask) * axes;
+
+		if (!interpolate || t1 == t0)
+		{
+			int nearest = (timestamp - t0 <= t1 - timestamp) ? i0 : i1;
+
+			System.arraycopy(values, nearest, out, offset, axes);
+
+			return true;
+		}
+
+		float fraction = (float) (timestamp - t0) / (t1 - t0);
+
+		for (int i = 0; i < axes; i++)
+		{
+			out[offset + i] = values[i0 + i] + fraction
+					* (values[i1 + i] - values[i0 + i]);
+		}
+
+		return true;
+	}
+
+	public LatencyHistogram getLatency()
+	{
+		return latency;
+	}
+
+	public LatencyHistogram getJitter()
+	{
+		return jitter;
+	}
+
+	/**
+	 * Write the latency and jitter of the stream, in the format of the
+	 * LatencyTracker report.
+	 * 
+	 * @param report
+	 *            The report to append to.
+	 */
+	public void writeReport(StringBuilder report)
+	{
+		LatencyTracker.appendHistogram(report, name + " latency", latency);
+		LatencyTracker.appendHistogram(report, name + " jitter", jitter);
+
+		if (outOfOrderCount > 0)
+		{
+			report.append(name);
+			report.append(": ");
+			report.append(outOfOrderCount);
+			report.append(" samples out of order");
+			report.append('\n');
+		}
+
+		if (sensorClockMismatch)
+		{
+			report.append(name);
+			report.append(" clock differs from System.nanoTime(), ");
+			report.append("latency not recorded.");
+			report.append('\n');
+		}
+	}
+}
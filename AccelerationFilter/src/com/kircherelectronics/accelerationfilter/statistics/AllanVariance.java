@@ -0,0 +1,247 @@
+package com.kircherelectronics.accelerationfilter.statistics;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Computes the overlapping Allan variance of a sample stream online, for
+ * cluster sizes of 1, 2, 4, ... samples. The running sum of the samples (the
+ * phase) is kept in a ring buffer that spans twice the largest cluster, so
+ * every new sample adds one overlapping term to every cluster size:
+ * 
+ * <pre>
+ * (x[n] - 2 x[n - m] + x[n - 2m])^2
+ * </pre>
+ * 
+ * An update is O(log m) for the largest cluster size m and the memory is fixed
+ * when the engine is created. The variance of cluster size m is the sum of its
+ * terms divided by 2 m^2 times the number of terms.
+ * 
+ * The first sample is subtracted from every sample so the running sum does not
+ * lose precision to the constant part of the signal, such as gravity.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class AllanVariance
+{
+	private final int levels;
+
+	// The running sums, indexed by sample count
+	private final double[] phase;
+	private final int mask;
+
+	// The sum of the squared second differences and their number per level
+	private final double[] sums;
+	private final long[] terms;
+
+	private double offset;
+	private double runningSum;
+
+	private long count;
+
+	// The time stamps of the first and last sample in nanoseconds
+	private long firstTimestamp;
+	private long lastTimestamp;
+
+	/**
+	 * Initialize a new AllanVariance.
+	 * 
+	 * @param levels
+	 *            The number of cluster sizes, the largest is 2^(levels - 1)
+	 *            samples.
+	 */
+	public AllanVariance(int levels)
+	{
+		this.levels = levels;
+
+		// Must hold the sums of the last 2m + 1 samples for the largest m.
+		phase = new double[1 << (levels + 1)];
+		mask = phase.length - 1;
+
+		sums = new double[levels];
+		terms = new long[levels];
+
+		reset();
+	}
+
+	/**
+	 * Add a sample.
+	 * 
+	 * @param timestamp
+	 *            The time stamp of the sample in nanoseconds.
+	 * @param value
+	 *            The sample.
+	 */
+	public void add(long timestamp, double value)
+	{
+		if (count == 0)
+		{
+			offset = value;
+			firstTimestamp = timestamp;
+		}
+
+		lastTimestamp = timestamp;
+
+		runningSum += value - offset;
+
+		count++;
+
+		int n = (int) (count & mask);
+
+		phase[n] = runningSum;
+
+		double current = runningSum;
+
+		for (int level = 0; level < levels; level++)
+		{
+			int m = 1 << level;
+
+			// Larger clusters do not have enough samples either.
+			if (count < 2 * m)
+			{
+				break;
+			}
+
+			double difference = current - 2 * phase[(n - m) & mask]
+					+ phase[(n - 2 * m) & mask];
+
+			sums[level] += difference * difference;
+			terms[level]++;
+		}
+	}
+
+	/**
+	 * Forget every sample.
+	 */
+	public void reset()
+	{
+		count = 0;
+		runningSum = 0;
+
+		phase[0] = 0;
+
+		for (int i = 0; i < levels; i++)
+		{
+			sums[i] = 0;
+			terms[i] = 0;
+		}
+	}
+
+	/**
+	 * Get the number of cluster sizes.
+	 * 
+	 * @return The number of levels.
+	 */
+	public int getLevelCount()
+	{
+		return levels;
+	}
+
+	/**
+	 * Get the cluster size of a level.
+	 * 
+	 * @param level
+	 *            The level.
+	 * @return The number of samples in a cluster.
+	 */
+	public static int getClusterSize(int level)
+	{
+		return 1 << level;
+	}
+
+	/**
+	 * Get the number of samples added.
+	 * 
+	 * @return The count.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Get the number of overlapping terms of a level.
+	 * 
+	 * @param level
+	 *            The level.
+	 * @return The number of terms, 0 until the level has 2m + 1 samples.
+	 */
+	public long getTermCount(int level)
+	{
+		return terms[level];
+	}
+
+	/**
+	 * Get the average time between two samples.
+	 * 
+	 * @return The sample period in seconds or 0 until there are two samples.
+	 */
+	public double getSamplePeriod()
+	{
+		if (count < 2)
+		{
+			return 0;
+		}
+
+		return (lastTimestamp - firstTimestamp) / 1000000000.0 / (count - 1);
+	}
+
+	/**
+	 * Get the averaging time of a level.
+	 * 
+	 * @param level
+	 *            The level.
+	 * @return The averaging time in seconds.
+	 */
+	public double getTau(int level)
+	{
+		return getClusterSize(level) * getSamplePeriod();
+	}
+
+	/**
+	 * Get the Allan variance of a level.
+	 * 
+	 * @param level
+	 *            The level.
+	 * @return The variance or NaN if the level has no terms yet.
+	 */
+	public double getVariance(int level)
+	{
+		if (terms[level] == 0)
+		{
+			return Double.NaN;
+		}
+
+		double m = getClusterSize(level);
+
+		return sums[level] / (2 * m * m * terms[level]);
+	}
+
+	/**
+	 * Get the Allan deviation of a level.
+	 * 
+	 * @param level
+	 *            The level.
+	 * @return The deviation or NaN if the level has no terms yet.
+	 */
+	public double getDeviation(int level)
+	{
+		return Math.sqrt(getVariance(level));
+	}
+}
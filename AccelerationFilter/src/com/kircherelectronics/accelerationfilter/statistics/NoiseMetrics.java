@@ -0,0 +1,441 @@
+package com.kircherelectronics.accelerationfilter.statistics;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Measures the noise of every axis of a number of stages, such as the raw
+ * sensor and each filter, over a sliding window of samples. For each axis the
+ * RMS amplitude of the noise (the standard deviation over the window), the
+ * peak-to-peak amplitude and the crest factor (the largest distance from the
+ * mean over the RMS amplitude) are kept.
+ * 
+ * The samples of a stage are kept once in a shared ring buffer and each sample
+ * updates every axis of the stage in one pass. The sums for the RMS amplitude
+ * are updated as samples enter and leave the window and are summed again from
+ * the ring buffer once per window, so rounding errors can not accumulate. The
+ * smallest and largest values in the window are kept in monotonic queues, so
+ * each sample costs a constant amount of work on average whatever the size of
+ * the window.
+ * 
+ * The metrics are not split into frequency bands. The stages already measure
+ * the raw signal and the output of each filter, which shows how much noise
+ * every filter removes. A band split would need a filter bank tuned to the
+ * sample rate, which changes with the selected sensor delay and the device.
+ * 
+ * The metrics are read with getSnapshot(), which copies them into a Snapshot
+ * the consumer owns. Not thread safe, samples must be added and snapshots
+ * taken on the same thread.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class NoiseMetrics
+{
+	/**
+	 * The metrics of every axis of every stage at one time. The metrics of an
+	 * axis are at index stage * axes + axis.
+	 */
+	public static class Snapshot
+	{
+		public final int stages;
+		public final int axes;
+
+		// The number of samples each stage is measured over
+		public final int[] sampleCount;
+
+		public final double[] rms;
+		public final double[] peakToPeak;
+		public final double[] crestFactor;
+
+		/**
+		 * Initialize a new Snapshot.
+		 * 
+		 * @param stages
+		 *            The number of stages.
+		 * @param axes
+		 *            The number of axes of each stage.
+		 */
+		public Snapshot(int stages, int axes)
+		{
+			this.stages = stages;
+			this.axes = axes;
+
+			sampleCount = new int[stages];
+
+			rms = new double[stages * axes];
+			peakToPeak = new double[stages * axes];
+			crestFactor = new double[stages * axes];
+		}
+	}
+
+	private final int stages;
+	private final int axes;
+	private final int window;
+
+	// The samples of each stage, axes values per sample
+	private final float[][] samples;
+
+	// The number of samples added to each stage since it was reset
+	private final long[] count;
+
+	// Values are summed relative to the first value of the axis
+	private final double[] offset;
+	private final double[] sum;
+	private final double[] sumSquares;
+
+	// The sample numbers of the candidate largest and smallest values of each
+	// axis, oldest first
+	private final long[][] maxQueue;
+	private final int[] maxHead;
+	private final int[] maxSize;
+
+	private final long[][] minQueue;
+	private final int[] minHead;
+	private final int[] minSize;
+
+	/**
+	 * Initialize a new NoiseMetrics.
+	 * 
+	 * @param stages
+	 *            The number of stages.
+	 * @param axes
+	 *            The number of axes of each stage.
+	 * @param window
+	 *            The number of samples the metrics are measured over.
+	 */
+	public NoiseMetrics(int stages, int axes, int window)
+	{
+		this.stages = stages;
+		this.axes = axes;
+		this.window = Math.max(2, window);
+
+		int channels = stages * axes;
+
+		samples = new float[stages][this.window * axes];
+		count = new long[stages];
+
+		offset = new double[channels];
+		sum = new double[channels];
+		sumSquares = new double[channels];
+
+		maxQueue = new long[channels][this.window];
+		maxHead = new int[channels];
+		maxSize = new int[channels];
+
+		minQueue = new long[channels][this.window];
+		minHead = new int[channels];
+		minSize = new int[channels];
+	}
+
+	/**
+	 * Create a Snapshot that fits the stages and axes of these metrics.
+	 * 
+	 * @return A new Snapshot.
+	 */
+	public Snapshot createSnapshot()
+	{
+		return new Snapshot(stages, axes);
+	}
+
+	/**
+	 * Add a sample of a stage.
+	 * 
+	 * @param stage
+	 *            The index of the stage.
+	 * @param values
+	 *            The value of each axis.
+	 */
+	public void add(int stage, float[] values)
+	{
+		float[] ring = samples[stage];
+
+		long n = count[stage];
+
+		int slot = (int) (n % window) * axes;
+
+		boolean full = n >= window;
+
+		for (int axis = 0; axis < axes; axis++)
+		{
+			int channel = stage * axes + axis;
+
+			if (n == 0)
+			{
+				offset[channel] = values[axis];
+			}
+
+			if (full)
+			{
+				double old = ring[slot + axis] - offset[channel];
+
+				sum[channel] -= old;
+				sumSquares[channel] -= old * old;
+			}
+
+			double value = values[axis] - offset[channel];
+
+			sum[channel] += value;
+			sumSquares[channel] += value * value;
+
+			ring[slot + axis] = values[axis];
+
+			push(ring, axis, channel, n, maxQueue, maxHead, maxSize, true);
+			push(ring, axis, channel, n, minQueue, minHead, minSize, false);
+		}
+
+		count[stage] = n + 1;
+
+		if (full && count[stage] % window == 0)
+		{
+			resum(stage);
+		}
+	}
+
+	/**
+	 * Forget the samples of a stage.
+	 * 
+	 * @param stage
+	 *            The index of the stage.
+	 */
+	public void reset(int stage)
+	{
+		count[stage] = 0;
+
+		for (int axis = 0; axis < axes; axis++)
+		{
+			int channel = stage * axes + axis;
+
+			sum[channel] = 0;
+			sumSquares[channel] = 0;
+
+			maxHead[channel] = 0;
+			maxSize[channel] = 0;
+			minHead[channel] = 0;
+			minSize[channel] = 0;
+		}
+	}
+
+	/**
+	 * Forget the samples of every stage.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < stages; i++)
+		{
+			reset(i);
+		}
+	}
+
+	/**
+	 * Get the number of samples a stage is measured over.
+	 * 
+	 * @param stage
+	 *            The index of the stage.
+	 * @return The number of samples in the window.
+	 */
+	public int getSampleCount(int stage)
+	{
+		return (int) Math.min(count[stage], window);
+	}
+
+	/**
+	 * Get the RMS amplitude of the noise of an axis, the standard deviation of
+	 * the samples in the window.
+	 * 
+	 * @param stage
+	 *            The index of the stage.
+	 * @param axis
+	 *            The index of the axis.
+	 * @return The RMS amplitude or 0 if the stage has no samples.
+	 */
+	public double getRms(int stage, int axis)
+	{
+		int n = getSampleCount(stage);
+
+		if (n == 0)
+		{
+			return 0;
+		}
+
+		int channel = stage * axes + axis;
+
+		double mean = sum[channel] / n;
+
+		return Math.sqrt(Math.max(0, sumSquares[channel] / n - mean * mean));
+	}
+
+	/**
+	 * Get the peak-to-peak amplitude of the noise of an axis.
+	 * 
+	 * @param stage
+	 *            The index of the stage.
+	 * @param axis
+	 *            The index of the axis.
+	 * @return The peak-to-peak amplitude or 0 if the stage has no samples.
+	 */
+	public double getPeakToPeak(int stage, int axis)
+	{
+		if (count[stage] == 0)
+		{
+			return 0;
+		}
+
+		return getMax(stage, axis) - getMin(stage, axis);
+	}
+
+	/**
+	 * Get the crest factor of the noise of an axis, the largest distance from
+	 * the mean over the RMS amplitude.
+	 * 
+	 * @param stage
+	 *            The index of the stage.
+	 * @param axis
+	 *            The index of the axis.
+	 * @return The crest factor or 0 if the axis has no noise.
+	 */
+	public double getCrestFactor(int stage, int axis)
+	{
+		double rms = getRms(stage, axis);
+
+		if (rms <= 0)
+		{
+			return 0;
+		}
+
+		int channel = stage * axes + axis;
+
+		double mean = offset[channel] + sum[channel] / getSampleCount(stage);
+
+		double peak = Math.max(getMax(stage, axis) - mean,
+				mean - getMin(stage, axis));
+
+		return peak / rms;
+	}
+
+	/**
+	 * Copy the metrics of every axis of every stage.
+	 * 
+	 * @param snapshot
+	 *            The snapshot to fill, from createSnapshot().
+	 */
+	public void getSnapshot(Snapshot snapshot)
+	{
+		for (int stage = 0; stage < stages; stage++)
+		{
+			snapshot.sampleCount[stage] = getSampleCount(stage);
+
+			for (int axis = 0; axis < axes; axis++)
+			{
+				int channel = stage * axes + axis;
+
+				snapshot.rms[channel] = getRms(stage, axis);
+				snapshot.peakToPeak[channel] = getPeakToPeak(stage, axis);
+				snapshot.crestFactor[channel] = getCrestFactor(stage, axis);
+			}
+		}
+	}
+
+	private double getMax(int stage, int axis)
+	{
+		int channel = stage * axes + axis;
+
+		return getValue(stage, axis, maxQueue[channel][maxHead[channel]]);
+	}
+
+	private double getMin(int stage, int axis)
+	{
+		int channel = stage * axes + axis;
+
+		return getValue(stage, axis, minQueue[channel][minHead[channel]]);
+	}
+
+	private float getValue(int stage, int axis, long sample)
+	{
+		return samples[stage][(int) (sample % window) * axes + axis];
+	}
+
+	/**
+	 * Add sample n to a monotonic queue of an axis. Samples that left the
+	 * window are removed from the front and samples that can no longer be the
+	 * largest (or smallest) value are removed from the back.
+	 */
+	private void push(float[] ring, int axis, int channel, long n,
+			long[][] queues, int[] heads, int[] sizes, boolean max)
+	{
+		long[] queue = queues[channel];
+
+		int head = heads[channel];
+		int size = sizes[channel];
+
+		while (size > 0 && queue[head] <= n - window)
+		{
+			head = (head + 1) % window;
+			size--;
+		}
+
+		float value = ring[(int) (n % window) * axes + axis];
+
+		while (size > 0)
+		{
+			long last = queue[(head + size - 1) % window];
+
+			float lastValue = ring[(int) (last % window) * axes + axis];
+
+			if ((max) ? lastValue > value : lastValue < value)
+			{
+				break;
+			}
+
+			size--;
+		}
+
+		queue[(head + size) % window] = n;
+
+		heads[channel] = head;
+		sizes[channel] = size + 1;
+	}
+
+	/**
+	 * Sum the samples of a stage again to drop the rounding errors of the
+	 * running sums.
+	 */
+	private void resum(int stage)
+	{
+		float[] ring = samples[stage];
+
+		for (int axis = 0; axis < axes; axis++)
+		{
+			int channel = stage * axes + axis;
+
+			double s = 0;
+			double squares = 0;
+
+			for (int i = 0; i < window; i++)
+			{
+				double value = ring[i * axes + axis] - offset[channel];
+
+				s += value;
+				squares += value * value;
+			}
+
+			sum[channel] = s;
+			sumSquares[channel] = squares;
+		}
+	}
+}
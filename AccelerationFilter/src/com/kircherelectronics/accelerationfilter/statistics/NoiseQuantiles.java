@@ -0,0 +1,167 @@
+package com.kircherelectronics.accelerationfilter.statistics;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Streaming quantiles of the noise of a signal. The noise of a value is its
+ * distance from an exponential moving average of the signal, so a slow change
+ * of the signal is not counted as noise.
+ * 
+ * The quantiles are estimated over a sliding window in fixed memory with two
+ * generations of P2Quantile estimators. Each generation is restarted every
+ * window, half a window apart, and the quantiles are read from the older one.
+ * The reported quantiles cover the last half to full window of values, and an
+ * outlier is forgotten within a window.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class NoiseQuantiles
+{
+	private final double[] quantiles;
+
+	// The smoothing factor of the moving average
+	private final double alpha;
+
+	// The number of values a generation sees before it is restarted
+	private final int window;
+
+	private final P2Quantile[][] generations;
+
+	private double baseline;
+
+	private long count;
+
+	/**
+	 * Initialize a new NoiseQuantiles.
+	 * 
+	 * @param quantiles
+	 *            The quantiles to estimate, between 0 and 1.
+	 * @param alpha
+	 *            The smoothing factor of the moving average the noise is
+	 *            measured from, between 0 and 1.
+	 * @param window
+	 *            The number of values in the window.
+	 */
+	public NoiseQuantiles(double[] quantiles, double alpha, int window)
+	{
+		this.quantiles = quantiles.clone();
+		this.alpha = alpha;
+		this.window = Math.max(2, window);
+
+		generations = new P2Quantile[2][quantiles.length];
+
+		for (int i = 0; i < generations.length; i++)
+		{
+			for (int j = 0; j < quantiles.length; j++)
+			{
+				generations[i][j] = new P2Quantile(quantiles[j]);
+			}
+		}
+	}
+
+	/**
+	 * Add a value of the signal.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	public void add(double value)
+	{
+		if (count == 0)
+		{
+			baseline = value;
+		}
+		else
+		{
+			baseline += alpha * (value - baseline);
+		}
+
+		double noise = Math.abs(value - baseline);
+
+		// Restart a generation every window, half a window apart.
+		long phase = count % window;
+
+		if (phase == 0)
+		{
+			reset(generations[0]);
+		}
+		else if (phase == window / 2)
+		{
+			reset(generations[1]);
+		}
+
+		for (int i = 0; i < generations.length; i++)
+		{
+			for (int j = 0; j < quantiles.length; j++)
+			{
+				generations[i][j].add(noise);
+			}
+		}
+
+		count++;
+	}
+
+	/**
+	 * Get the estimate of a quantile.
+	 * 
+	 * @param index
+	 *            The index of the quantile in the array it was created with.
+	 * @return The quantile of the noise.
+	 */
+	public double getQuantile(int index)
+	{
+		P2Quantile first = generations[0][index];
+		P2Quantile second = generations[1][index];
+
+		return (first.getCount() >= second.getCount()) ? first.getQuantile()
+				: second.getQuantile();
+	}
+
+	/**
+	 * Get the number of quantiles.
+	 * 
+	 * @return The number of quantiles.
+	 */
+	public int getQuantileCount()
+	{
+		return quantiles.length;
+	}
+
+	/**
+	 * Forget every value.
+	 */
+	public void reset()
+	{
+		count = 0;
+
+		for (int i = 0; i < generations.length; i++)
+		{
+			reset(generations[i]);
+		}
+	}
+
+	private static void reset(P2Quantile[] generation)
+	{
+		for (int i = 0; i < generation.length; i++)
+		{
+			generation[i].reset();
+		}
+	}
+}
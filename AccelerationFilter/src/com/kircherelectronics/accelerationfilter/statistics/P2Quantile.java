@@ -0,0 +1,225 @@
+package com.kircherelectronics.accelerationfilter.statistics;
+
+import java.util.Arrays;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Estimates one quantile of a stream with the P-Square algorithm of Jain and
+ * Chlamtac. Only five markers are kept, the minimum, the maximum, the quantile
+ * and the two quantiles half way to them. Each value moves the markers by at
+ * most one position and adjusts their heights with a parabolic prediction, so
+ * an update is O(1) and never sorts or allocates.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ * @see http://www.cse.wustl.edu/~jain/papers/ftp/psqr.pdf
+ */
+public class P2Quantile
+{
+	private static final int MARKERS = 5;
+
+	private final double quantile;
+
+	// The heights of the markers
+	private final double[] heights = new double[MARKERS];
+
+	// The actual and desired positions of the markers, 0 based
+	private final int[] positions = new int[MARKERS];
+	private final double[] desired = new double[MARKERS];
+
+	// How far the desired positions move with each value
+	private final double[] increments;
+
+	// Used to sort the first values
+	private final double[] sorted = new double[MARKERS];
+
+	private long count;
+
+	/**
+	 * Initialize a new P2Quantile.
+	 * 
+	 * @param quantile
+	 *            The quantile, between 0 and 1.
+	 */
+	public P2Quantile(double quantile)
+	{
+		this.quantile = quantile;
+
+		increments = new double[]
+		{ 0, quantile / 2, quantile, (1 + quantile) / 2, 1 };
+
+		reset();
+	}
+
+	/**
+	 * Add a value.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	public void add(double value)
+	{
+		if (count < MARKERS)
+		{
+			heights[(int) count] = value;
+
+			count++;
+
+			if (count == MARKERS)
+			{
+				Arrays.sort(heights);
+			}
+
+			return;
+		}
+
+		count++;
+
+		// Find the cell of the value, extending the extremes.
+		int cell;
+
+		if (value < heights[0])
+		{
+			heights[0] = value;
+			cell = 0;
+		}
+		else if (value >= heights[MARKERS - 1])
+		{
+			heights[MARKERS - 1] = value;
+			cell = MARKERS - 2;
+		}
+		else
+		{
+			cell = 0;
+
+			while (value >= heights[cell + 1])
+			{
+				cell++;
+			}
+		}
+
+		for (int i = cell + 1; i < MARKERS; i++)
+		{
+			positions[i]++;
+		}
+
+		for (int i = 0; i < MARKERS; i++)
+		{
+			desired[i] += increments[i];
+		}
+
+		// Move the middle markers that are off their desired position.
+		for (int i = 1; i < MARKERS - 1; i++)
+		{
+			double offset = desired[i] - positions[i];
+
+			if ((offset >= 1 && positions[i + 1] - positions[i] > 1)
+					|| (offset <= -1 && positions[i - 1] - positions[i] < -1))
+			{
+				int step = (offset > 0) ? 1 : -1;
+
+				double height = parabolic(i, step);
+
+				if (heights[i - 1] < height && height < heights[i + 1])
+				{
+					heights[i] = height;
+				}
+				else
+				{
+					heights[i] = linear(i, step);
+				}
+
+				positions[i] += step;
+			}
+		}
+	}
+
+	/**
+	 * Get the estimate of the quantile.
+	 * 
+	 * @return The quantile or 0 if no value was added.
+	 */
+	public double getQuantile()
+	{
+		if (count == 0)
+		{
+			return 0;
+		}
+
+		if (count < MARKERS)
+		{
+			int n = (int) count;
+
+			System.arraycopy(heights, 0, sorted, 0, n);
+			Arrays.sort(sorted, 0, n);
+
+			return sorted[(int) Math.round(quantile * (n - 1))];
+		}
+
+		return heights[2];
+	}
+
+	/**
+	 * Get the number of values added.
+	 * 
+	 * @return The count.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Forget every value.
+	 */
+	public void reset()
+	{
+		count = 0;
+
+		for (int i = 0; i < MARKERS; i++)
+		{
+			positions[i] = i;
+		}
+
+		desired[0] = 0;
+		desired[1] = 2 * quantile;
+		desired[2] = 4 * quantile;
+		desired[3] = 2 + 2 * quantile;
+		desired[4] = 4;
+	}
+
+	private double parabolic(int i, int step)
+	{
+		double below = positions[i] - positions[i - 1];
+		double above = positions[i + 1] - positions[i];
+
+		return heights[i]
+				+ step
+				/ (double) (positions[i + 1] - positions[i - 1])
+				* ((below + step) * (heights[i + 1] - heights[i]) / above + (above - step)
+						* (heights[i] - heights[i - 1]) / below);
+	}
+
+	private double linear(int i, int step)
+	{
+		return heights[i] + step * (heights[i + step] - heights[i])
+				/ (positions[i + step] - positions[i]);
+	}
+}
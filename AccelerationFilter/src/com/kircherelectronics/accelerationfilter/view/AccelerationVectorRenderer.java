@@ -0,0 +1,516 @@
+package com.kircherelectronics.accelerationfilter.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Path.FillType;
+import android.graphics.RectF;
+import android.hardware.SensorManager;
+import android.util.Log;
+import android.view.View.MeasureSpec;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Draws the acceleration vector gauge onto a Canvas. The gauge background and
+ * axes are drawn once per size into a cached bitmap, only the measurements are
+ * drawn on every frame. Used by AccelerationVectorSurfaceView, which draws on
+ * its own render thread.
+ * 
+ * The geometry is converted to pixels when the size changes, so a frame does
+ * not touch the canvas matrix. The arrowhead is a template in the frame of the
+ * vector that is scaled by the vector itself, so a frame needs no square root
+ * or trigonometry either.
+ * 
+ * A VectorTrail and a VectorHeatmap can be drawn under the vector. Both are
+ * off until they are enabled, and only collect samples while enabled.
+ * 
+ * A renderer is not thread safe, it must only be used by the thread that draws,
+ * except for addSample(), clearHistory() and the methods that enable the trail
+ * and the heatmap, which can be called from any thread.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class AccelerationVectorRenderer
+{
+	/*
+	 * Developer Note: In the interest of keeping everything as fast as
+	 * possible, only the measurements are redrawn, the gauge background and
+	 * display information are drawn once per device orientation and then cached
+	 * so they can be reused. All allocation and reclaiming of memory should
+	 * occur before and after the handler is posted to the thread, but never
+	 * while the thread is running. Allocation and reclamation of memory while
+	 * the handler is posted to the thread will cause the GC to run, resulting
+	 * in long delays (up to 600ms) while the GC cleans up memory. The frame
+	 * rate to drop dramatically if the GC is running often, so try to keep it
+	 * happy and out of the way.
+	 * 
+	 * Avoid iterators, Set or Map collections (use SparseArray), + to
+	 * concatenate Strings (use StringBuffers) and above all else boxed
+	 * primitives (Integer, Double, Float, etc).
+	 */
+
+	private static final String tag = AccelerationVectorRenderer.class
+			.getSimpleName();
+
+	// The stroke width of the measurements, in gauge units
+	private static final float STROKE_WIDTH = 0.01f;
+
+	// The ends of the arrowhead barbs as (along, across) pairs in the frame of
+	// the vector. The barbs are 0.05 gauge units long at full scale and the
+	// full scale vector is 0.4 gauge units, so their length grows with the
+	// vector without normalizing it.
+	private static final float[] ARROW_TEMPLATE = new float[]
+	{ -0.05f * 2.5f, 0.05f * 2.5f, -0.05f * 2.5f, -0.05f * 2.5f };
+
+	// The length of the trail in nanoseconds
+	private static final long TRAIL_DURATION = 2 * 1000000000L;
+
+	// The points kept for the trail, enough for the duration at the fastest
+	// sensor rates
+	private static final int TRAIL_CAPACITY = 1024;
+
+	// holds the cached static part
+	private Bitmap background;
+
+	private Paint backgroundPaint;
+	private Paint axisPaint;
+
+	private Paint yAxisLengthPaint;
+	private Paint xAxisLengthPaint;
+
+	private Paint vectorPaint;
+
+	private RectF rimRect;
+
+	// The size of the gauge in pixels
+	private int width;
+	private int height;
+
+	// The gauge units to pixels scale and the center of the gauge in pixels
+	private float scale;
+	private float centerX;
+	private float centerY;
+
+	// The vector and arrowhead lines, reused every frame
+	private final float[] vectorLines = new float[12];
+
+	private VectorTrail trail;
+	private VectorHeatmap heatmap;
+
+	private volatile boolean trailEnabled = false;
+	private volatile boolean heatmapEnabled = false;
+
+	/**
+	 * Initialize a new AccelerationVectorRenderer.
+	 */
+	public AccelerationVectorRenderer()
+	{
+		initDrawingTools();
+
+		trail = new VectorTrail(TRAIL_DURATION, TRAIL_CAPACITY, Color.YELLOW);
+		heatmap = new VectorHeatmap();
+	}
+
+	/**
+	 * Bound an acceleration to +/- the gravity of earth and scale it to the
+	 * length of an axis of the gauge.
+	 * 
+	 * @param acceleration
+	 *            The acceleration in m/s^2.
+	 * @return The length of the vector along the axis.
+	 */
+	public static float normalize(float acceleration)
+	{
+		// Bound the axis to +/- the gravity of earth
+		if (acceleration > SensorManager.GRAVITY_EARTH)
+		{
+			acceleration = SensorManager.GRAVITY_EARTH;
+		}
+		if (acceleration < -SensorManager.GRAVITY_EARTH)
+		{
+			acceleration = -SensorManager.GRAVITY_EARTH;
+		}
+
+		// Normalize to 1 and then scale to half the length of the axis.
+		return (acceleration / SensorManager.GRAVITY_EARTH) * 0.4f;
+	}
+
+	/**
+	 * Choose the size of the square gauge from the measure specs of its view.
+	 * 
+	 * @param widthMeasureSpec
+	 * @param heightMeasureSpec
+	 * @return The width and height of the gauge.
+	 */
+	public static int measure(int widthMeasureSpec, int heightMeasureSpec)
+	{
+		int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+		int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+
+		int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+		int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+		int chosenWidth = chooseDimension(widthMode, widthSize);
+		int chosenHeight = chooseDimension(heightMode, heightSize);
+
+		return Math.min(chosenWidth, chosenHeight);
+	}
+
+	/**
+	 * Indicate the desired canvas dimension.
+	 * 
+	 * @param mode
+	 * @param size
+	 * @return
+	 */
+	private static int chooseDimension(int mode, int size)
+	{
+		if (mode == MeasureSpec.AT_MOST || mode == MeasureSpec.EXACTLY)
+		{
+			return size;
+		}
+		else
+		{ // (mode == MeasureSpec.UNSPECIFIED)
+			return getPreferredSize();
+		}
+	}
+
+	/**
+	 * In case there is no size specified.
+	 * 
+	 * @return default preferred size.
+	 */
+	private static int getPreferredSize()
+	{
+		return 300;
+	}
+
+	/**
+	 * Change the size of the gauge. The background is regenerated, so this
+	 * should only be called when the size of the screen has changed.
+	 * 
+	 * @param width
+	 *            The width in pixels.
+	 * @param height
+	 *            The height in pixels.
+	 */
+	public void setSize(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+
+		scale = (float) width;
+		centerX = rimRect.centerX() * scale;
+		centerY = rimRect.centerY() * scale;
+
+		// The measurements are drawn in pixels.
+		vectorPaint.setStrokeWidth(STROKE_WIDTH * scale);
+		yAxisLengthPaint.setStrokeWidth(STROKE_WIDTH * scale);
+		xAxisLengthPaint.setStrokeWidth(STROKE_WIDTH * scale);
+
+		trail.setSize(width, height, scale, centerX, centerY, STROKE_WIDTH
+				* scale);
+
+		heatmap.setBounds(centerX - 0.4f * scale, centerY - 0.4f * scale,
+				centerX + 0.4f * scale, centerY + 0.4f * scale);
+
+		regenerateBackground();
+	}
+
+	/**
+	 * Add a sample to the trail and the heatmap, if they are enabled. Can be
+	 * called from any thread.
+	 * 
+	 * @param x
+	 *            The normalized x-axis.
+	 * @param y
+	 *            The normalized y-axis.
+	 */
+	public void addSample(float x, float y)
+	{
+		if (trailEnabled)
+		{
+			trail.add(System.nanoTime(), x, y);
+		}
+
+		if (heatmapEnabled)
+		{
+			heatmap.add(x, y);
+		}
+	}
+
+	/**
+	 * Clear the trail and the heatmap. Can be called from any thread.
+	 */
+	public void clearHistory()
+	{
+		trail.clear();
+		heatmap.clear();
+	}
+
+	/**
+	 * Show or hide the trail. A hidden trail is cleared.
+	 * 
+	 * @param trailEnabled
+	 */
+	public void setTrailEnabled(boolean trailEnabled)
+	{
+		if (!trailEnabled)
+		{
+			trail.clear();
+		}
+
+		this.trailEnabled = trailEnabled;
+	}
+
+	/**
+	 * Show or hide the heatmap. A hidden heatmap keeps its counts until it is
+	 * cleared.
+	 * 
+	 * @param heatmapEnabled
+	 */
+	public void setHeatmapEnabled(boolean heatmapEnabled)
+	{
+		this.heatmapEnabled = heatmapEnabled;
+	}
+
+	/**
+	 * Draw the gauge.
+	 * 
+	 * @param canvas
+	 *            The canvas to draw on.
+	 * @param x
+	 *            The normalized x-axis.
+	 * @param y
+	 *            The normalized y-axis.
+	 */
+	public void draw(Canvas canvas, float x, float y)
+	{
+		drawBackground(canvas);
+
+		if (heatmapEnabled)
+		{
+			heatmap.draw(canvas);
+		}
+
+		if (trailEnabled)
+		{
+			trail.draw(canvas, System.nanoTime());
+		}
+
+		// The vector in pixels, the x-axis points left on the gauge.
+		float dx = -x * scale;
+		float dy = y * scale;
+
+		drawAxisLength(canvas, dx, dy);
+		drawVectorLength(canvas, dx, dy);
+	}
+
+	/**
+	 * Free the cached bitmaps.
+	 */
+	public void release()
+	{
+		releaseBackground();
+
+		trail.release();
+		heatmap.release();
+	}
+
+	/**
+	 * Initialize the drawing related members of the instance.
+	 */
+	private void initDrawingTools()
+	{
+		// Leave a little bit of space between the side of the screen and the
+		// rectangle...
+		rimRect = new RectF(0.1f, 0.1f, 0.9f, 0.9f);
+
+		// the linear gradient is a bit skewed for realism
+		axisPaint = new Paint();
+		axisPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		axisPaint.setStrokeWidth(0.01f);
+		axisPaint.setColor(Color.WHITE);
+		axisPaint.setStyle(Paint.Style.STROKE);
+
+		// the linear gradient is a bit skewed for realism
+		vectorPaint = new Paint();
+		vectorPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		vectorPaint.setStrokeWidth(STROKE_WIDTH);
+		vectorPaint.setColor(Color.RED);
+		vectorPaint.setStyle(Paint.Style.STROKE);
+
+		// the linear gradient is a bit skewed for realism
+		yAxisLengthPaint = new Paint();
+		yAxisLengthPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		yAxisLengthPaint.setStrokeWidth(STROKE_WIDTH);
+		yAxisLengthPaint.setColor(Color.GREEN);
+		yAxisLengthPaint.setStyle(Paint.Style.STROKE);
+
+		// the linear gradient is a bit skewed for realism
+		xAxisLengthPaint = new Paint();
+		xAxisLengthPaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		xAxisLengthPaint.setStrokeWidth(STROKE_WIDTH);
+		xAxisLengthPaint.setColor(Color.BLUE);
+		xAxisLengthPaint.setStyle(Paint.Style.STROKE);
+
+		backgroundPaint = new Paint();
+		backgroundPaint.setFilterBitmap(true);
+	}
+
+	/**
+	 * Draw the gauge.
+	 * 
+	 * @param canvas
+	 */
+	private void drawAxis(Canvas canvas)
+	{
+		// Draw the Y axis
+		canvas.drawLine(rimRect.centerX(), rimRect.top, rimRect.centerX(),
+				rimRect.bottom, axisPaint);
+
+		// Draw the X axis
+		canvas.drawLine(rimRect.left, rimRect.centerY(), rimRect.right,
+				rimRect.centerY(), axisPaint);
+
+		// Draw the Y axis arrow
+		Path yArrowPath = new Path();
+		yArrowPath.setFillType(FillType.EVEN_ODD);
+
+		yArrowPath.moveTo(rimRect.centerX() - 0.002f, rimRect.top);
+		yArrowPath.lineTo(rimRect.centerX() + 0.05f, rimRect.top + 0.05f);
+		yArrowPath.moveTo(rimRect.centerX() + 0.002f, rimRect.top);
+		yArrowPath.lineTo(rimRect.centerX() - 0.05f, rimRect.top + 0.05f);
+
+		canvas.drawPath(yArrowPath, axisPaint);
+
+		// Draw the Y axis arrow
+		Path xArrowPath = new Path();
+		xArrowPath.setFillType(FillType.EVEN_ODD);
+
+		xArrowPath.moveTo(rimRect.right, rimRect.centerY() + 0.002f);
+		xArrowPath.lineTo(rimRect.right - 0.05f, rimRect.centerY() - 0.05f);
+
+		xArrowPath.moveTo(rimRect.right, rimRect.centerY() - 0.002f);
+		xArrowPath.lineTo(rimRect.right - 0.05f, rimRect.centerY() + 0.05f);
+
+		canvas.drawPath(xArrowPath, axisPaint);
+
+	}
+
+	/**
+	 * Draw the background of the canvas.
+	 * 
+	 * @param canvas
+	 */
+	private void drawBackground(Canvas canvas)
+	{
+		// Use the cached background bitmap.
+		if (background == null)
+		{
+			Log.w(tag, "Background not created");
+		}
+		else
+		{
+			canvas.drawBitmap(background, 0, 0, backgroundPaint);
+		}
+	}
+
+	/**
+	 * Draw the vector and its arrowhead in one call.
+	 * 
+	 * @param canvas
+	 * @param dx
+	 *            The vector along the x-axis in pixels.
+	 * @param dy
+	 *            The vector along the y-axis in pixels.
+	 */
+	private void drawVectorLength(Canvas canvas, float dx, float dy)
+	{
+		float tipX = centerX + dx;
+		float tipY = centerY + dy;
+
+		// The vector.
+		vectorLines[0] = centerX;
+		vectorLines[1] = centerY;
+		vectorLines[2] = tipX;
+		vectorLines[3] = tipY;
+
+		// The barbs, the template is scaled along the vector and across it,
+		// (-dy, dx) is the vector turned by 90 degrees.
+		for (int i = 0, j = 4; i < ARROW_TEMPLATE.length; i += 2, j += 4)
+		{
+			float along = ARROW_TEMPLATE[i];
+			float across = ARROW_TEMPLATE[i + 1];
+
+			vectorLines[j] = tipX;
+			vectorLines[j + 1] = tipY;
+			vectorLines[j + 2] = tipX + along * dx - across * dy;
+			vectorLines[j + 3] = tipY + along * dy + across * dx;
+		}
+
+		canvas.drawLines(vectorLines, vectorPaint);
+	}
+
+	private void drawAxisLength(Canvas canvas, float dx, float dy)
+	{
+		// Draw the Y axis
+		canvas.drawLine(centerX, centerY, centerX, centerY + dy,
+				yAxisLengthPaint);
+
+		// Draw the X axis
+		canvas.drawLine(centerX, centerY, centerX + dx, centerY,
+				xAxisLengthPaint);
+	}
+
+	/**
+	 * Regenerate the background image. This should only be called when the size
+	 * of the screen has changed. The background will be cached and can be
+	 * reused without needing to redraw it.
+	 */
+	private void regenerateBackground()
+	{
+		// free the old bitmap
+		releaseBackground();
+
+		if (width <= 0 || height <= 0)
+		{
+			return;
+		}
+
+		background = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		Canvas backgroundCanvas = new Canvas(background);
+		backgroundCanvas.scale(scale, scale);
+
+		drawAxis(backgroundCanvas);
+	}
+
+	private void releaseBackground()
+	{
+		if (background != null)
+		{
+			background.recycle();
+			background = null;
+		}
+	}
+}
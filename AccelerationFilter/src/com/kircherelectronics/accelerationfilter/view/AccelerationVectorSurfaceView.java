@@ -0,0 +1,377 @@
+package com.kircherelectronics.accelerationfilter.view;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import com.kircherelectronics.accelerationfilter.plot.ChoreographerFrameClock;
+import com.kircherelectronics.accelerationfilter.plot.FrameClock;
+import com.kircherelectronics.accelerationfilter.plot.HandlerFrameClock;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Draws the acceleration vector gauge on a SurfaceView from its own render
+ * thread, so the gauge keeps its frame rate while the UI thread is busy with
+ * dialogs and layout.
+ * 
+ * updatePoint() only publishes the latest sample and asks the render thread
+ * for a frame. The render thread draws at most once per vsync, using a
+ * Choreographer on Jelly Bean and up and a Handler on older devices, and only
+ * the newest sample is drawn, samples that arrive between two frames are
+ * skipped. The sample is packed into one volatile long so the x and y axes are
+ * always published together.
+ * 
+ * The gauge background is cached by the AccelerationVectorRenderer.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ * @see http://developer.android.com/reference/android/view/SurfaceView.html
+ */
+public final class AccelerationVectorSurfaceView extends SurfaceView implements
+		SurfaceHolder.Callback, FrameClock.Callback
+{
+	private static final String tag = AccelerationVectorSurfaceView.class
+			.getSimpleName();
+
+	// The color the surface is cleared to before each frame
+	private static final int BACKGROUND_COLOR = Color.BLACK;
+
+	// Only used by the render thread
+	private AccelerationVectorRenderer renderer;
+
+	// The latest sample, the x-axis in the high and the y-axis in the low bits
+	private volatile long sample;
+
+	// The sample on the surface, only used by the render thread
+	private long drawnSample;
+
+	// Set when the surface must be drawn even if the sample did not change
+	private volatile boolean redraw;
+
+	// Set while a frame has been asked for and not drawn yet
+	private final AtomicBoolean framePending = new AtomicBoolean();
+
+	private HandlerThread renderThread;
+	private volatile Handler renderHandler;
+
+	// Created on the render thread
+	private FrameClock clock;
+
+	private Runnable postFrame = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			clock.postFrameCallback(AccelerationVectorSurfaceView.this, 0);
+		}
+	};
+
+	/**
+	 * Create a new instance.
+	 * 
+	 * @param context
+	 */
+	public AccelerationVectorSurfaceView(Context context)
+	{
+		super(context);
+		init();
+	}
+
+	/**
+	 * Create a new instance.
+	 * 
+	 * @param context
+	 * @param attrs
+	 */
+	public AccelerationVectorSurfaceView(Context context, AttributeSet attrs)
+	{
+		super(context, attrs);
+		init();
+	}
+
+	/**
+	 * Create a new instance.
+	 * 
+	 * @param context
+	 * @param attrs
+	 * @param defStyle
+	 */
+	public AccelerationVectorSurfaceView(Context context, AttributeSet attrs,
+			int defStyle)
+	{
+		super(context, attrs, defStyle);
+		init();
+	}
+
+	/**
+	 * Update the measurements for the point. Can be called from any thread.
+	 * 
+	 * @param x
+	 *            the x-axis
+	 * @param y
+	 *            the y-axis
+	 */
+	public void updatePoint(float x, float y)
+	{
+		x = AccelerationVectorRenderer.normalize(x);
+		y = AccelerationVectorRenderer.normalize(y);
+
+		renderer.addSample(x, y);
+
+		sample = pack(x, y);
+
+		requestFrame();
+	}
+
+	/**
+	 * Show or hide the fading trail of the vector.
+	 * 
+	 * @param trailEnabled
+	 */
+	public void setTrailEnabled(boolean trailEnabled)
+	{
+		renderer.setTrailEnabled(trailEnabled);
+	}
+
+	/**
+	 * Show or hide the heatmap of where the vector has spent its time.
+	 * 
+	 * @param heatmapEnabled
+	 */
+	public void setHeatmapEnabled(boolean heatmapEnabled)
+	{
+		renderer.setHeatmapEnabled(heatmapEnabled);
+	}
+
+	/**
+	 * Clear the trail and the heatmap.
+	 */
+	public void clearHistory()
+	{
+		renderer.clearHistory();
+
+		redraw = true;
+
+		requestFrame();
+	}
+
+	@Override
+	public void surfaceCreated(SurfaceHolder holder)
+	{
+		renderThread = new HandlerThread("VectorRender");
+		renderThread.start();
+
+		Handler handler = new Handler(renderThread.getLooper());
+
+		// The Choreographer of the render thread can only be had on it.
+		handler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				clock = createFrameClock();
+			}
+		});
+
+		// A requestFrame() that raced with surfaceDestroyed() can leave the
+		// flag set with its frame posted to the old looper, so it is cleared
+		// before new frames can be asked for.
+		framePending.set(false);
+
+		renderHandler = handler;
+	}
+
+	@Override
+	public void surfaceChanged(SurfaceHolder holder, int format,
+			final int width, final int height)
+	{
+		Log.d(tag, "Surface changed to " + width + "x" + height);
+
+		renderHandler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				renderer.setSize(width, height);
+
+				redraw = true;
+
+				requestFrame();
+			}
+		});
+	}
+
+	@Override
+	public void surfaceDestroyed(SurfaceHolder holder)
+	{
+		Handler handler = renderHandler;
+
+		// No new frames can be asked for.
+		renderHandler = null;
+
+		// The surface must not be drawn on after this returns, so wait for the
+		// render thread to finish.
+		handler.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				clock.removeFrameCallback(AccelerationVectorSurfaceView.this);
+
+				renderer.release();
+
+				Looper.myLooper().quit();
+			}
+		});
+
+		boolean interrupted = false;
+
+		while (renderThread.isAlive())
+		{
+			try
+			{
+				renderThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		renderThread = null;
+	}
+
+	/**
+	 * Draw the newest sample, called by the FrameClock on the render thread.
+	 */
+	@Override
+	public void doFrame(long frameTimeNanos)
+	{
+		// Cleared before the sample is read, so a sample published while
+		// drawing asks for the next frame.
+		framePending.set(false);
+
+		long sample = this.sample;
+
+		if (sample == drawnSample && !redraw)
+		{
+			return;
+		}
+
+		SurfaceHolder holder = getHolder();
+
+		Canvas canvas = holder.lockCanvas();
+
+		if (canvas == null)
+		{
+			return;
+		}
+
+		try
+		{
+			canvas.drawColor(BACKGROUND_COLOR);
+
+			renderer.draw(canvas, unpackX(sample), unpackY(sample));
+		}
+		finally
+		{
+			holder.unlockCanvasAndPost(canvas);
+		}
+
+		drawnSample = sample;
+		redraw = false;
+	}
+
+	/**
+	 * Measure the device screen size to scale the canvas correctly.
+	 */
+	@Override
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec)
+	{
+		int chosenDimension = AccelerationVectorRenderer.measure(
+				widthMeasureSpec, heightMeasureSpec);
+
+		setMeasuredDimension(chosenDimension, chosenDimension);
+	}
+
+	/**
+	 * Initialize the members of the instance.
+	 */
+	private void init()
+	{
+		renderer = new AccelerationVectorRenderer();
+
+		getHolder().addCallback(this);
+	}
+
+	/**
+	 * Ask the render thread for a frame unless one is already pending.
+	 */
+	private void requestFrame()
+	{
+		Handler handler = renderHandler;
+
+		if (handler != null && framePending.compareAndSet(false, true))
+		{
+			handler.post(postFrame);
+		}
+	}
+
+	private static FrameClock createFrameClock()
+	{
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+		{
+			return new ChoreographerFrameClock();
+		}
+
+		return new HandlerFrameClock(new Handler());
+	}
+
+	private static long pack(float x, float y)
+	{
+		return ((long) Float.floatToRawIntBits(x) << 32)
+				| (Float.floatToRawIntBits(y) & 0xffffffffL);
+	}
+
+	private static float unpackX(long sample)
+	{
+		return Float.intBitsToFloat((int) (sample >>> 32));
+	}
+
+	private static float unpackY(long sample)
+	{
+		return Float.intBitsToFloat((int) sample);
+	}
+}
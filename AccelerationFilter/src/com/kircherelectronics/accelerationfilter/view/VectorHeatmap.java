@@ -0,0 +1,280 @@
+package com.kircherelectronics.accelerationfilter.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A cumulative 2D histogram of where the acceleration vector has spent its
+ * time, drawn as a heatmap over the gauge. Every sample adds one to the cell of
+ * a fixed size grid of primitives. The heatmap is a bitmap with one pixel per
+ * cell, only the pixels of the cells that changed since the last frame are
+ * recolored. Every cell is recolored only when the largest count passes the
+ * next power of two, which is the count drawn with the hottest color.
+ * 
+ * add() and clear() can be called from any thread, the other methods must be
+ * called by the thread that draws.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class VectorHeatmap
+{
+	// The number of cells on each side of the grid
+	public static final int GRID_SIZE = 64;
+
+	// The normalized vector reaches this far from the center of the gauge
+	private static final float EXTENT = 0.4f;
+
+	// The counts of the cells, guarded by this
+	private final int[] counts = new int[GRID_SIZE * GRID_SIZE];
+	private int maxCount;
+
+	// The cells changed since the last frame, guarded by this
+	private final int[] dirtyCells = new int[GRID_SIZE * GRID_SIZE];
+	private final boolean[] cellDirty = new boolean[GRID_SIZE * GRID_SIZE];
+	private int dirtyCount;
+
+	private boolean cleared;
+
+	// The counts as drawn, only used by the thread that draws
+	private final int[] drawnCounts = new int[GRID_SIZE * GRID_SIZE];
+	private final int[] changedCells = new int[GRID_SIZE * GRID_SIZE];
+
+	// The count drawn with the hottest color
+	private int saturation;
+
+	// The colors from cold to hot
+	private final int[] palette = new int[256];
+
+	private Bitmap bitmap;
+
+	private Paint paint;
+
+	// Where the grid is drawn in pixels
+	private RectF bounds = new RectF();
+
+	/**
+	 * Initialize a new VectorHeatmap.
+	 */
+	public VectorHeatmap()
+	{
+		paint = new Paint();
+		paint.setFilterBitmap(true);
+
+		// Transparent blue through red to opaque yellow.
+		for (int i = 0; i < palette.length; i++)
+		{
+			int alpha = 64 + i * 191 / 255;
+
+			if (i < 128)
+			{
+				palette[i] = Color.argb(alpha, i * 2, 0, 255 - i * 2);
+			}
+			else
+			{
+				palette[i] = Color.argb(alpha, 255, (i - 128) * 2, 0);
+			}
+		}
+	}
+
+	/**
+	 * Count a sample.
+	 * 
+	 * @param x
+	 *            The normalized x-axis.
+	 * @param y
+	 *            The normalized y-axis.
+	 */
+	public synchronized void add(float x, float y)
+	{
+		// The x-axis points left on the gauge.
+		int column = toCell(-x);
+		int row = toCell(y);
+
+		int cell = row * GRID_SIZE + column;
+
+		int count = ++counts[cell];
+
+		if (count > maxCount)
+		{
+			maxCount = count;
+		}
+
+		if (!cellDirty[cell])
+		{
+			cellDirty[cell] = true;
+
+			dirtyCells[dirtyCount++] = cell;
+		}
+	}
+
+	/**
+	 * Remove every sample.
+	 */
+	public synchronized void clear()
+	{
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] = 0;
+			cellDirty[i] = false;
+		}
+
+		maxCount = 0;
+		dirtyCount = 0;
+
+		cleared = true;
+	}
+
+	/**
+	 * Change where the grid is drawn.
+	 * 
+	 * @param left
+	 * @param top
+	 * @param right
+	 * @param bottom
+	 */
+	public void setBounds(float left, float top, float right, float bottom)
+	{
+		bounds.set(left, top, right, bottom);
+	}
+
+	/**
+	 * Bring the heatmap up to date and draw it.
+	 * 
+	 * @param canvas
+	 *            The canvas to draw on.
+	 */
+	public void draw(Canvas canvas)
+	{
+		boolean rebuild = bitmap == null;
+
+		if (rebuild)
+		{
+			bitmap = Bitmap.createBitmap(GRID_SIZE, GRID_SIZE,
+					Bitmap.Config.ARGB_8888);
+		}
+
+		boolean erase;
+		int changed;
+		int max;
+
+		synchronized (this)
+		{
+			erase = cleared;
+			cleared = false;
+
+			if (rebuild)
+			{
+				// A new bitmap needs every cell.
+				System.arraycopy(counts, 0, drawnCounts, 0, counts.length);
+			}
+
+			changed = dirtyCount;
+
+			for (int i = 0; i < changed; i++)
+			{
+				int cell = dirtyCells[i];
+
+				changedCells[i] = cell;
+				drawnCounts[cell] = counts[cell];
+				cellDirty[cell] = false;
+			}
+
+			dirtyCount = 0;
+
+			max = maxCount;
+		}
+
+		if (erase)
+		{
+			bitmap.eraseColor(Color.TRANSPARENT);
+
+			saturation = 0;
+
+			for (int i = 0; i < drawnCounts.length; i++)
+			{
+				drawnCounts[i] = 0;
+			}
+		}
+
+		if (rebuild || max > saturation)
+		{
+			saturation = Integer.highestOneBit(max) << 1;
+
+			// The scale changed, recolor every cell.
+			for (int i = 0; i < drawnCounts.length; i++)
+			{
+				recolor(i);
+			}
+		}
+		else
+		{
+			for (int i = 0; i < changed; i++)
+			{
+				recolor(changedCells[i]);
+			}
+		}
+
+		canvas.drawBitmap(bitmap, null, bounds, paint);
+	}
+
+	/**
+	 * Free the bitmap.
+	 */
+	public void release()
+	{
+		if (bitmap != null)
+		{
+			bitmap.recycle();
+			bitmap = null;
+		}
+	}
+
+	private void recolor(int cell)
+	{
+		int count = drawnCounts[cell];
+
+		int color = (count == 0) ? Color.TRANSPARENT : palette[(int) ((long) count
+				* (palette.length - 1) / saturation)];
+
+		bitmap.setPixel(cell % GRID_SIZE, cell / GRID_SIZE, color);
+	}
+
+	private static int toCell(float value)
+	{
+		int cell = (int) ((value + EXTENT) / (2 * EXTENT) * GRID_SIZE);
+
+		if (cell < 0)
+		{
+			return 0;
+		}
+
+		if (cell >= GRID_SIZE)
+		{
+			return GRID_SIZE - 1;
+		}
+
+		return cell;
+	}
+}
@@ -0,0 +1,373 @@
+package com.kircherelectronics.accelerationfilter.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+/*
+ * Acceleration Filter
+ * Copyright (C) 2013, Kaleb Kircher - Boki Software, Kircher Engineering, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A fading trail of the last points of the acceleration vector. The points are
+ * kept in a fixed size ring buffer of primitives and drawn incrementally into
+ * an offscreen bitmap: a frame fades the bitmap a little and draws only the
+ * segments added since the last frame, so the history is never redrawn.
+ * 
+ * add() and clear() can be called from any thread, the other methods must be
+ * called by the thread that draws.
+ * 
+ * @author Kaleb
+ * @version %I%, %G%
+ */
+public class VectorTrail
+{
+	// The trail is faded to about 5% of its opacity after its duration
+	private static final float FADE_RATE = 3;
+
+	// Smaller fades are lost to the rounding of 8 bit alpha, so fades are
+	// accumulated until they reach this alpha
+	private static final int MIN_FADE_ALPHA = 16;
+
+	private final long duration;
+
+	private final int color;
+
+	// The ring buffer of normalized points, guarded by this
+	private final float[] xs;
+	private final float[] ys;
+	private final long[] timestamps;
+
+	// The index of the oldest point
+	private int head;
+	private int size;
+
+	// The number of points ever added
+	private long added;
+
+	private boolean cleared;
+
+	// The number of points added that have been drawn
+	private long drawn;
+
+	private Bitmap bitmap;
+	private Canvas bitmapCanvas;
+
+	private Paint linePaint;
+	private Paint fadePaint;
+
+	// The gauge units to pixels scale and the center of the gauge in pixels
+	private float scale;
+	private float centerX;
+	private float centerY;
+
+	// The last point drawn in pixels
+	private boolean hasLast;
+	private float lastX;
+	private float lastY;
+
+	// The new segments of a frame, reused every frame
+	private final float[] segments;
+
+	private long lastFade;
+	private float pendingFade;
+
+	/**
+	 * Initialize a new VectorTrail.
+	 * 
+	 * @param duration
+	 *            The length of the trail in nanoseconds.
+	 * @param capacity
+	 *            The number of points kept.
+	 * @param color
+	 *            The color of the trail.
+	 */
+	public VectorTrail(long duration, int capacity, int color)
+	{
+		this.duration = duration;
+		this.color = color;
+
+		xs = new float[capacity];
+		ys = new float[capacity];
+		timestamps = new long[capacity];
+
+		segments = new float[capacity * 4];
+
+		linePaint = new Paint();
+		linePaint.setFlags(Paint.ANTI_ALIAS_FLAG);
+		linePaint.setColor(color);
+		linePaint.setStyle(Paint.Style.STROKE);
+		linePaint.setStrokeCap(Paint.Cap.ROUND);
+
+		// Removes alpha from what is already drawn
+		fadePaint = new Paint();
+		fadePaint.setColor(Color.BLACK);
+		fadePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+	}
+
+	/**
+	 * Add a point, replacing the oldest point if the trail is full.
+	 * 
+	 * @param timestamp
+	 *            The time stamp of the point in nanoseconds.
+	 * @param x
+	 *            The normalized x-axis.
+	 * @param y
+	 *            The normalized y-axis.
+	 */
+	public synchronized void add(long timestamp, float x, float y)
+	{
+		int index;
+
+		if (size < xs.length)
+		{
+			index = (head + size) % xs.length;
+
+			size++;
+		}
+		else
+		{
+			index = head;
+
+			head = (head + 1) % xs.length;
+		}
+
+		xs[index] = x;
+		ys[index] = y;
+		timestamps[index] = timestamp;
+
+		added++;
+	}
+
+	/**
+	 * Remove every point.
+	 */
+	public synchronized void clear()
+	{
+		head = 0;
+		size = 0;
+
+		cleared = true;
+	}
+
+	/**
+	 * Change the size of the trail. The bitmap is recreated and the points
+	 * that are still within the duration are drawn again.
+	 * 
+	 * @param width
+	 *            The width in pixels.
+	 * @param height
+	 *            The height in pixels.
+	 * @param scale
+	 *            The gauge units to pixels scale.
+	 * @param centerX
+	 *            The center of the gauge in pixels.
+	 * @param centerY
+	 *            The center of the gauge in pixels.
+	 * @param strokeWidth
+	 *            The width of the trail in pixels.
+	 */
+	public void setSize(int width, int height, float scale, float centerX,
+			float centerY, float strokeWidth)
+	{
+		release();
+
+		this.scale = scale;
+		this.centerX = centerX;
+		this.centerY = centerY;
+
+		linePaint.setStrokeWidth(strokeWidth);
+
+		if (width <= 0 || height <= 0)
+		{
+			return;
+		}
+
+		bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		bitmapCanvas = new Canvas(bitmap);
+
+		redraw(System.nanoTime());
+	}
+
+	/**
+	 * Bring the trail up to date and draw it.
+	 * 
+	 * @param canvas
+	 *            The canvas to draw on.
+	 * @param now
+	 *            The time of the frame in nanoseconds.
+	 */
+	public void draw(Canvas canvas, long now)
+	{
+		if (bitmap == null)
+		{
+			return;
+		}
+
+		int lines = collect();
+
+		fade(now);
+
+		if (lines > 0)
+		{
+			bitmapCanvas.drawLines(segments, 0, lines * 4, linePaint);
+		}
+
+		canvas.drawBitmap(bitmap, 0, 0, null);
+	}
+
+	/**
+	 * Free the bitmap.
+	 */
+	public void release()
+	{
+		if (bitmap != null)
+		{
+			bitmap.recycle();
+			bitmap = null;
+			bitmapCanvas = null;
+		}
+	}
+
+	/**
+	 * Copy the segments added since the last frame, in pixels.
+	 * 
+	 * @return The number of segments.
+	 */
+	private int collect()
+	{
+		boolean erase;
+		int lines = 0;
+
+		synchronized (this)
+		{
+			erase = cleared;
+			cleared = false;
+
+			if (erase)
+			{
+				hasLast = false;
+			}
+
+			long pending = added - drawn;
+
+			// The trail fell behind by more than the ring buffer.
+			if (pending > size)
+			{
+				hasLast = false;
+
+				pending = size;
+			}
+
+			for (int i = size - (int) pending; i < size; i++)
+			{
+				int index = (head + i) % xs.length;
+
+				float px = centerX - xs[index] * scale;
+				float py = centerY + ys[index] * scale;
+
+				if (hasLast)
+				{
+					segments[lines * 4] = lastX;
+					segments[lines * 4 + 1] = lastY;
+					segments[lines * 4 + 2] = px;
+					segments[lines * 4 + 3] = py;
+
+					lines++;
+				}
+
+				lastX = px;
+				lastY = py;
+				hasLast = true;
+			}
+
+			drawn = added;
+		}
+
+		if (erase)
+		{
+			bitmap.eraseColor(Color.TRANSPARENT);
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Fade what is already drawn by the time since the last fade.
+	 */
+	private void fade(long now)
+	{
+		if (lastFade != 0)
+		{
+			pendingFade += FADE_RATE * (now - lastFade) / (float) duration;
+		}
+
+		lastFade = now;
+
+		int alpha = (int) (Math.min(pendingFade, 1) * 255);
+
+		if (alpha < MIN_FADE_ALPHA)
+		{
+			return;
+		}
+
+		pendingFade = 0;
+
+		fadePaint.setAlpha(alpha);
+		bitmapCanvas.drawPaint(fadePaint);
+	}
+
+	/**
+	 * Draw the points that are still within the duration, older segments more
+	 * transparent. Only used when the bitmap is recreated.
+	 */
+	private synchronized void redraw(long now)
+	{
+		hasLast = false;
+
+		for (int i = 0; i < size; i++)
+		{
+			int index = (head + i) % xs.length;
+
+			long age = now - timestamps[index];
+
+			float px = centerX - xs[index] * scale;
+			float py = centerY + ys[index] * scale;
+
+			if (hasLast && age < duration)
+			{
+				linePaint.setAlpha((int) (255 * (duration - age) / duration));
+
+				bitmapCanvas.drawLine(lastX, lastY, px, py, linePaint);
+			}
+
+			lastX = px;
+			lastY = py;
+			hasLast = true;
+		}
+
+		linePaint.setColor(color);
+
+		drawn = added;
+		cleared = false;
+		lastFade = now;
+		pendingFade = 0;
+	}
+}